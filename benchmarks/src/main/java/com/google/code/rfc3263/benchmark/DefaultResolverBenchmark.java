@@ -0,0 +1,114 @@
+package com.google.code.rfc3263.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.sip.SipFactory;
+import javax.sip.address.Hop;
+import javax.sip.address.SipURI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SimpleResolver;
+
+import com.google.code.rfc3263.Locator;
+import com.google.code.rfc3263.dns.DefaultResolver;
+import com.google.code.rfc3263.dns.StubDnsServer;
+
+/**
+ * Benchmarks {@link DefaultResolver} end to end, over real sockets to a
+ * {@link StubDnsServer} on the loopback interface, so that the cost of dnsjava
+ * and the wire format is measured along with the router.
+ * <p>
+ * Caching is disabled, so every lookup goes to the server.  With
+ * <code>transport=TCP</code>, every UDP answer is truncated and each lookup
+ * is retried over TCP, as with a large record set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultResolverBenchmark {
+	/**
+	 * How answers reach the client.
+	 */
+	public enum Transport {
+		/** Every answer fits in a UDP datagram. */
+		UDP,
+		/** Every UDP answer is truncated, so the lookup is retried over TCP. */
+		TCP
+	}
+
+	@Param
+	public Transport transport;
+
+	/**
+	 * The delay before each answer, in microseconds.
+	 */
+	@Param({"0", "200"})
+	public long delay;
+
+	private StubDnsServer server;
+	private DefaultResolver resolver;
+	private Locator locator;
+	private Name target;
+	private SipURI uri;
+
+	@Setup
+	public void setUp() throws Exception {
+		final Name domain = Records.name("example.org");
+		final Name udp = Records.child("_sip._udp", domain);
+		target = Records.child("sip0", domain);
+		final List<Record> records = new ArrayList<Record>();
+		records.add(Records.naptr(domain, 50, 50, "SIP+D2U", udp));
+		records.add(Records.srv(udp, 0, 10, 5060, target));
+		Records.addresses(records, target, 0, 2, true);
+
+		server = new StubDnsServer(records);
+		server.setTruncate(transport == Transport.TCP);
+		server.setDelay(delay, TimeUnit.MICROSECONDS);
+		final SimpleResolver stub = server.getResolver();
+		stub.setTimeout(5);
+		resolver = new DefaultResolver(stub, null);
+
+		locator = new Locator(Arrays.asList("UDP"), resolver);
+		uri = SipFactory.getInstance().createAddressFactory().createSipURI(null, "example.org");
+		if (locator.locate(uri).isEmpty()) {
+			throw new IllegalStateException("No hops for " + uri);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		server.close();
+	}
+
+	@Benchmark
+	public Set<ARecord> lookupA() {
+		return resolver.lookupARecords(target);
+	}
+
+	@Benchmark
+	public Queue<Hop> locate() throws Exception {
+		return locator.locate(uri);
+	}
+}
@@ -0,0 +1,145 @@
+package com.google.code.rfc3263.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class describes the distribution of the time a DNS server takes to
+ * answer a query.
+ * <p>
+ * Real resolution times are far from uniform: most answers come from a nearby
+ * cache in well under a millisecond, while a cache miss costs one or more
+ * round trips to authoritative servers.  A log-normal distribution is a good
+ * fit for either case, and a {@link #mixture(double, LatencyDistribution, LatencyDistribution) mixture}
+ * of two of them models a cache with a given hit rate.
+ */
+public abstract class LatencyDistribution {
+	/**
+	 * Returns a latency drawn from this distribution.
+	 *
+	 * @param random the source of randomness.
+	 * @return the latency in nanoseconds, never negative.
+	 */
+	public abstract long nextNanos(Random random);
+
+	/**
+	 * Returns a distribution which always gives the same latency.
+	 *
+	 * @param latency the latency.
+	 * @param unit the unit of the latency.
+	 * @return the distribution.
+	 */
+	public static LatencyDistribution constant(long latency, TimeUnit unit) {
+		final long nanos = unit.toNanos(latency);
+		checkNotNegative(nanos);
+		return new LatencyDistribution() {
+			@Override
+			public long nextNanos(Random random) {
+				return nanos;
+			}
+
+			@Override
+			public String toString() {
+				return "constant(" + nanos + "ns)";
+			}
+		};
+	}
+
+	/**
+	 * Returns a distribution which is uniform between two latencies.
+	 *
+	 * @param min the lowest latency.
+	 * @param max the highest latency.
+	 * @param unit the unit of the latencies.
+	 * @return the distribution.
+	 */
+	public static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+		final long minNanos = unit.toNanos(min);
+		final long maxNanos = unit.toNanos(max);
+		checkNotNegative(minNanos);
+		if (maxNanos < minNanos) {
+			throw new IllegalArgumentException("Maximum is below minimum: " + max + " < " + min);
+		}
+		return new LatencyDistribution() {
+			@Override
+			public long nextNanos(Random random) {
+				return minNanos + (long) (random.nextDouble() * (maxNanos - minNanos));
+			}
+
+			@Override
+			public String toString() {
+				return "uniform(" + minNanos + "ns, " + maxNanos + "ns)";
+			}
+		};
+	}
+
+	/**
+	 * Returns a log-normal distribution.
+	 * <p>
+	 * The median is e<sup>&mu;</sup> and the shape parameter is &sigma;.  With
+	 * &sigma; = 0.5, the 99th percentile is about three times the median; with
+	 * &sigma; = 1, about ten times.
+	 *
+	 * @param median the median latency.
+	 * @param unit the unit of the median.
+	 * @param sigma the standard deviation of the logarithm of the latency.
+	 * @return the distribution.
+	 */
+	public static LatencyDistribution logNormal(long median, TimeUnit unit, final double sigma) {
+		final long medianNanos = unit.toNanos(median);
+		checkNotNegative(medianNanos);
+		if (sigma < 0) {
+			throw new IllegalArgumentException("Sigma is negative: " + sigma);
+		}
+		return new LatencyDistribution() {
+			@Override
+			public long nextNanos(Random random) {
+				return (long) (medianNanos * Math.exp(sigma * random.nextGaussian()));
+			}
+
+			@Override
+			public String toString() {
+				return "logNormal(" + medianNanos + "ns, " + sigma + ")";
+			}
+		};
+	}
+
+	/**
+	 * Returns a distribution which draws from the first distribution with the
+	 * given probability, and from the second otherwise.
+	 *
+	 * @param probability the probability of drawing from the first distribution.
+	 * @param first the first distribution, such as cache hits.
+	 * @param second the second distribution, such as cache misses.
+	 * @return the distribution.
+	 */
+	public static LatencyDistribution mixture(final double probability, final LatencyDistribution first, final LatencyDistribution second) {
+		checkProbability(probability);
+		if (first == null || second == null) {
+			throw new NullPointerException();
+		}
+		return new LatencyDistribution() {
+			@Override
+			public long nextNanos(Random random) {
+				return random.nextDouble() < probability ? first.nextNanos(random) : second.nextNanos(random);
+			}
+
+			@Override
+			public String toString() {
+				return "mixture(" + probability + ", " + first + ", " + second + ")";
+			}
+		};
+	}
+
+	static void checkProbability(double probability) {
+		if (probability < 0 || probability > 1) {
+			throw new IllegalArgumentException("Probability is not between 0 and 1: " + probability);
+		}
+	}
+
+	private static void checkNotNegative(long nanos) {
+		if (nanos < 0) {
+			throw new IllegalArgumentException("Latency is negative: " + nanos);
+		}
+	}
+}
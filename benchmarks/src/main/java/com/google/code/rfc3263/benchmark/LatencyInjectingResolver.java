@@ -0,0 +1,205 @@
+package com.google.code.rfc3263.benchmark;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.SRVRecord;
+
+import com.google.code.rfc3263.dns.Resolver;
+
+/**
+ * This class is a resolver which delays, fails and times out the queries made
+ * to another resolver, according to a {@link QueryProfile} for each type of
+ * query.  Combined with an {@link com.google.code.rfc3263.dns.InMemoryResolver},
+ * it simulates a DNS server with realistic tail behaviour on a machine with no
+ * network.
+ * <p>
+ * The outcome of each query is drawn from a random sequence determined by the
+ * seed: the <i>n</i>th query made through this resolver always has the same
+ * outcome.  A single-threaded run is therefore exactly reproducible, and a
+ * multi-threaded run sees the same outcomes, though threads may pick them up
+ * in a different order.
+ * <p>
+ * Delays block the calling thread, as a real lookup would.
+ */
+public final class LatencyInjectingResolver implements Resolver {
+	/**
+	 * The types of query made by the locator.
+	 */
+	public enum QueryType {
+		NAPTR, SRV, A, AAAA
+	}
+
+	private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+		@Override
+		protected Random initialValue() {
+			return new Random();
+		}
+	};
+
+	private final Resolver resolver;
+	private final long seed;
+	private final Map<QueryType, QueryProfile> profiles;
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+
+	/**
+	 * Creates a new resolver which uses the same profile for every type of query.
+	 *
+	 * @param resolver the resolver which answers the queries.
+	 * @param seed the seed for the random sequence of outcomes.
+	 * @param profile the profile for all queries.
+	 */
+	public LatencyInjectingResolver(Resolver resolver, long seed, QueryProfile profile) {
+		this(resolver, seed, profile, profile, profile, profile);
+	}
+
+	/**
+	 * Creates a new resolver.
+	 *
+	 * @param resolver the resolver which answers the queries.
+	 * @param seed the seed for the random sequence of outcomes.
+	 * @param naptr the profile for NAPTR queries.
+	 * @param srv the profile for SRV queries.
+	 * @param a the profile for A queries.
+	 * @param aaaa the profile for AAAA queries.
+	 */
+	public LatencyInjectingResolver(Resolver resolver, long seed, QueryProfile naptr, QueryProfile srv, QueryProfile a, QueryProfile aaaa) {
+		if (resolver == null || naptr == null || srv == null || a == null || aaaa == null) {
+			throw new NullPointerException();
+		}
+		this.resolver = resolver;
+		this.seed = seed;
+		final Map<QueryType, QueryProfile> map = new EnumMap<QueryType, QueryProfile>(QueryType.class);
+		map.put(QueryType.NAPTR, naptr);
+		map.put(QueryType.SRV, srv);
+		map.put(QueryType.A, a);
+		map.put(QueryType.AAAA, aaaa);
+		this.profiles = Collections.unmodifiableMap(map);
+	}
+
+	public List<NAPTRRecord> lookupNAPTRRecords(Name domain) {
+		if (inject(QueryType.NAPTR)) {
+			return Collections.emptyList();
+		}
+		return resolver.lookupNAPTRRecords(domain);
+	}
+
+	public List<SRVRecord> lookupSRVRecords(Name domain) {
+		if (inject(QueryType.SRV)) {
+			return Collections.emptyList();
+		}
+		return resolver.lookupSRVRecords(domain);
+	}
+
+	public Set<ARecord> lookupARecords(Name domain) {
+		if (inject(QueryType.A)) {
+			return Collections.emptySet();
+		}
+		return resolver.lookupARecords(domain);
+	}
+
+	public Set<AAAARecord> lookupAAAARecords(Name domain) {
+		if (inject(QueryType.AAAA)) {
+			return Collections.emptySet();
+		}
+		return resolver.lookupAAAARecords(domain);
+	}
+
+	/**
+	 * Returns the profile for the given type of query.
+	 *
+	 * @param type the type of query.
+	 * @return the profile.
+	 */
+	public QueryProfile getProfile(QueryType type) {
+		return profiles.get(type);
+	}
+
+	/**
+	 * Returns the number of queries made so far.
+	 *
+	 * @return the number of queries.
+	 */
+	public long getQueries() {
+		return sequence.get();
+	}
+
+	/**
+	 * Returns the number of queries which have failed so far.
+	 *
+	 * @return the number of failed queries.
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * Returns the number of queries which have timed out so far.
+	 *
+	 * @return the number of timed out queries.
+	 */
+	public long getTimeouts() {
+		return timeouts.get();
+	}
+
+	/**
+	 * Blocks for the time drawn for the next query, and returns <code>true</code>
+	 * if the query should return no records.
+	 */
+	private boolean inject(QueryType type) {
+		final QueryProfile profile = profiles.get(type);
+		final Random random = RANDOM.get();
+		random.setSeed(mix(seed + sequence.getAndIncrement() * 0x9E3779B97F4A7C15L));
+
+		final double outcome = random.nextDouble();
+		if (outcome < profile.getTimeoutRate()) {
+			timeouts.incrementAndGet();
+			sleep(profile.getTimeoutNanos());
+			return true;
+		}
+		sleep(profile.getLatency().nextNanos(random));
+		if (outcome < profile.getTimeoutRate() + profile.getFailureRate()) {
+			failures.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Scrambles the bits of a sequence value, so that neighbouring queries get
+	 * unrelated seeds.  This is the finalizer of MurmurHash3.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+		z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return z ^ (z >>> 33);
+	}
+
+	private static void sleep(long nanos) {
+		if (nanos > 0) {
+			final long deadline = System.nanoTime() + nanos;
+			long remaining = nanos;
+			while (remaining > 0) {
+				LockSupport.parkNanos(remaining);
+				remaining = deadline - System.nanoTime();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyInjectingResolver[seed=" + seed + ", profiles=" + profiles + "]";
+	}
+}
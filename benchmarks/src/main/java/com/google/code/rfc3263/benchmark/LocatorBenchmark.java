@@ -0,0 +1,142 @@
+package com.google.code.rfc3263.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import javax.sip.SipFactory;
+import javax.sip.address.Hop;
+import javax.sip.address.SipURI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+
+import com.google.code.rfc3263.Locator;
+import com.google.code.rfc3263.dns.InMemoryResolver;
+
+/**
+ * Benchmarks {@link Locator#locate(SipURI)} for each resolution path of RFC 3263,
+ * against an {@link InMemoryResolver}, so that only the cost of the router
+ * itself is measured.
+ * <p>
+ * The number of threads is set on the command line, for example
+ * <code>java -jar target/benchmarks.jar LocatorBenchmark -t 8</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocatorBenchmark {
+	/**
+	 * The resolution paths of RFC 3263.
+	 */
+	public enum Path {
+		/** Numeric host: no lookups at all. */
+		NUMERIC,
+		/** Explicit port: A and AAAA lookups of the host. */
+		EXPLICIT_PORT,
+		/** NAPTR lookup, then SRV and A/AAAA lookups. */
+		NAPTR_SRV,
+		/** Failed NAPTR lookup, then SRV and A/AAAA lookups. */
+		SRV,
+		/** Failed NAPTR and SRV lookups, then A/AAAA lookups of the host. */
+		A_FALLBACK
+	}
+
+	@Param
+	public Path path;
+
+	/**
+	 * The number of SRV targets for each transport.
+	 */
+	@Param({"1", "4", "16"})
+	public int targets;
+
+	/**
+	 * The number of addresses of each family for each host.
+	 */
+	@Param({"1", "4"})
+	public int addresses;
+
+	private Locator locator;
+	private SipURI uri;
+
+	@Setup
+	public void setUp() throws Exception {
+		final Name domain = Records.name("example.org");
+		final List<Record> records = new ArrayList<Record>();
+
+		switch (path) {
+		case NAPTR_SRV:
+			records.add(Records.naptr(domain, 50, 50, "SIP+D2U", Records.name("_sip._udp.example.org")));
+			records.add(Records.naptr(domain, 90, 50, "SIP+D2T", Records.name("_sip._tcp.example.org")));
+			addServices(records, "_sip._udp.example.org");
+			addServices(records, "_sip._tcp.example.org");
+			addHosts(records);
+			break;
+		case SRV:
+			addServices(records, "_sip._udp.example.org");
+			addServices(records, "_sip._tcp.example.org");
+			addHosts(records);
+			break;
+		case EXPLICIT_PORT:
+		case A_FALLBACK:
+			Records.addresses(records, domain, 0, addresses, true);
+			break;
+		default:
+			break;
+		}
+
+		locator = new Locator(Arrays.asList("UDP", "TCP"), new InMemoryResolver(records));
+		final String host = path == Path.NUMERIC ? "192.0.2.1" : "example.org";
+		uri = SipFactory.getInstance().createAddressFactory().createSipURI(null, host);
+		if (path == Path.EXPLICIT_PORT) {
+			uri.setPort(5060);
+		}
+		if (locator.locate(uri).isEmpty()) {
+			throw new IllegalStateException("No hops for " + path);
+		}
+	}
+
+	/**
+	 * Adds an SRV record set naming each of the hosts.  Both transports name the
+	 * same hosts, as is usual.
+	 */
+	private void addServices(List<Record> records, String serviceId) {
+		final Name name = Records.name(serviceId);
+		for (int i = 0; i < targets; i++) {
+			// Two priorities, so priority grouping is exercised.
+			records.add(Records.srv(name, i % 2, 10 * (i + 1), 5060, host(i)));
+		}
+	}
+
+	private void addHosts(List<Record> records) {
+		for (int i = 0; i < targets; i++) {
+			Records.addresses(records, host(i), i * addresses, addresses, true);
+		}
+	}
+
+	private static Name host(int i) {
+		return Records.name("host" + i + ".example.org");
+	}
+
+	@Benchmark
+	public Queue<Hop> locate() throws Exception {
+		return locator.locate(uri);
+	}
+}
@@ -0,0 +1,65 @@
+package com.google.code.rfc3263.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+
+import com.google.code.rfc3263.benchmark.SelectorBenchmark.Priorities;
+import com.google.code.rfc3263.dns.PointerRecordSelector;
+
+/**
+ * Benchmarks the NAPTR record selector over record sets of increasing size.
+ * <p>
+ * Run with the GC profiler to see the allocation per operation, for example
+ * <code>java -jar target/benchmarks.jar PointerSelectorBenchmark -prof gc</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointerSelectorBenchmark {
+	@Param({"1", "4", "16", "64", "256"})
+	public int size;
+
+	@Param
+	public Priorities orders;
+
+	private List<NAPTRRecord> pointers;
+
+	@Setup
+	public void setUp() {
+		final Random random = new Random(size);
+		final Name domain = Records.name("example.org");
+		final Name serviceId = Records.name("_sip._udp.example.org");
+
+		pointers = new ArrayList<NAPTRRecord>(size);
+		for (int i = 0; i < size; i++) {
+			pointers.add(Records.naptr(domain, SelectorBenchmark.priority(orders, i), random.nextInt(100), i % 2 == 0 ? "SIP+D2U" : "SIP+D2T", serviceId));
+		}
+		// DNS answers are in no particular order
+		Collections.shuffle(pointers, random);
+	}
+
+	@Benchmark
+	public List<NAPTRRecord> selectPointers() {
+		return new PointerRecordSelector(pointers).select();
+	}
+}
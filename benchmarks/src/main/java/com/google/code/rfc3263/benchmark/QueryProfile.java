@@ -0,0 +1,95 @@
+package com.google.code.rfc3263.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class describes how a simulated DNS server answers one type of query:
+ * how long it takes, and how often it fails or times out.
+ * <p>
+ * A failed query, such as one answered with SERVFAIL, takes the usual time
+ * and returns no records.  A query which times out blocks for the timeout and
+ * returns no records, as {@link org.xbill.DNS.Lookup} does.
+ */
+public final class QueryProfile {
+	private final LatencyDistribution latency;
+	private final double failureRate;
+	private final double timeoutRate;
+	private final long timeoutNanos;
+
+	/**
+	 * Creates a profile in which every query succeeds.
+	 *
+	 * @param latency the distribution of answer times.
+	 */
+	public QueryProfile(LatencyDistribution latency) {
+		this(latency, 0, 0, 0, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Creates a new profile.
+	 *
+	 * @param latency the distribution of answer times.
+	 * @param failureRate the probability that a query fails.
+	 * @param timeoutRate the probability that a query times out.
+	 * @param timeout the time a query which times out blocks for.
+	 * @param unit the unit of the timeout.
+	 */
+	public QueryProfile(LatencyDistribution latency, double failureRate, double timeoutRate, long timeout, TimeUnit unit) {
+		if (latency == null) {
+			throw new NullPointerException();
+		}
+		LatencyDistribution.checkProbability(failureRate);
+		LatencyDistribution.checkProbability(timeoutRate);
+		if (failureRate + timeoutRate > 1) {
+			throw new IllegalArgumentException("Failure and timeout rates exceed 1: " + failureRate + " + " + timeoutRate);
+		}
+		if (timeout < 0) {
+			throw new IllegalArgumentException("Timeout is negative: " + timeout);
+		}
+		this.latency = latency;
+		this.failureRate = failureRate;
+		this.timeoutRate = timeoutRate;
+		this.timeoutNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * Returns the distribution of answer times.
+	 *
+	 * @return the distribution of answer times.
+	 */
+	public LatencyDistribution getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Returns the probability that a query fails.
+	 *
+	 * @return the failure rate.
+	 */
+	public double getFailureRate() {
+		return failureRate;
+	}
+
+	/**
+	 * Returns the probability that a query times out.
+	 *
+	 * @return the timeout rate.
+	 */
+	public double getTimeoutRate() {
+		return timeoutRate;
+	}
+
+	/**
+	 * Returns the time a query which times out blocks for.
+	 *
+	 * @return the timeout in nanoseconds.
+	 */
+	public long getTimeoutNanos() {
+		return timeoutNanos;
+	}
+
+	@Override
+	public String toString() {
+		return latency + " failures=" + failureRate + " timeouts=" + timeoutRate + " timeout=" + timeoutNanos + "ns";
+	}
+}
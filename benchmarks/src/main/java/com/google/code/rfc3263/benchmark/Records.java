@@ -0,0 +1,90 @@
+package com.google.code.rfc3263.benchmark;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.NameTooLongException;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.TextParseException;
+
+/**
+ * This class builds the DNS records used by the benchmarks.
+ */
+final class Records {
+	static final long TTL = 3600L;
+
+	private Records() {}
+
+	static Name name(String name) {
+		try {
+			return Name.fromString(name, Name.root);
+		} catch (TextParseException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	static Name child(String label, Name parent) {
+		try {
+			return Name.concatenate(name(label).relativize(Name.root), parent);
+		} catch (NameTooLongException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	static NAPTRRecord naptr(Name domain, int order, int preference, String service, Name replacement) {
+		return new NAPTRRecord(domain, DClass.IN, TTL, order, preference, "s", service, "", replacement);
+	}
+
+	static SRVRecord srv(Name serviceId, int priority, int weight, int port, Name target) {
+		return new SRVRecord(serviceId, DClass.IN, TTL, priority, weight, port, target);
+	}
+
+	/**
+	 * Adds the A records 10.x.y.z, and if <code>dualStack</code> the AAAA records
+	 * fd00::x:y:z, for the given host.
+	 */
+	static void addresses(List<Record> records, Name host, int first, int count, boolean dualStack) {
+		for (int i = first; i < first + count; i++) {
+			records.add(a(host, i));
+			if (dualStack) {
+				records.add(aaaa(host, i));
+			}
+		}
+	}
+
+	static ARecord a(Name host, int i) {
+		return new ARecord(host, DClass.IN, TTL, ipv4(i));
+	}
+
+	static AAAARecord aaaa(Name host, int i) {
+		return new AAAARecord(host, DClass.IN, TTL, ipv6(i));
+	}
+
+	static InetAddress ipv4(int i) {
+		return address(new byte[] {10, (byte) (i >>> 16), (byte) (i >>> 8), (byte) i});
+	}
+
+	static InetAddress ipv6(int i) {
+		final byte[] bytes = new byte[16];
+		bytes[0] = (byte) 0xfd;
+		bytes[13] = (byte) (i >>> 16);
+		bytes[14] = (byte) (i >>> 8);
+		bytes[15] = (byte) i;
+		return address(bytes);
+	}
+
+	private static InetAddress address(byte[] bytes) {
+		try {
+			return InetAddress.getByAddress(bytes);
+		} catch (UnknownHostException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+}
@@ -0,0 +1,266 @@
+package com.google.code.rfc3263.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sip.SipFactory;
+import javax.sip.SipStack;
+import javax.sip.address.Address;
+import javax.sip.address.AddressFactory;
+import javax.sip.address.Hop;
+import javax.sip.address.Router;
+import javax.sip.address.SipURI;
+import javax.sip.header.CSeqHeader;
+import javax.sip.header.CallIdHeader;
+import javax.sip.header.FromHeader;
+import javax.sip.header.HeaderFactory;
+import javax.sip.header.MaxForwardsHeader;
+import javax.sip.header.ToHeader;
+import javax.sip.header.ViaHeader;
+import javax.sip.message.MessageFactory;
+import javax.sip.message.Request;
+
+import com.google.code.rfc3263.DefaultRouter;
+import com.google.code.rfc3263.dns.Resolver;
+import com.google.code.rfc3263.util.LatencyHistogram;
+import com.google.code.rfc3263.util.AddressFamily;
+
+/**
+ * This class drives {@link DefaultRouter#getNextHop(Request)} from several
+ * threads with a mix of synthetic requests, and reports the throughput and
+ * the latency distribution.
+ * <p>
+ * Requests are built with the JAIN-SIP message factory and cover plain SIP and
+ * SIPS Request-URIs, loose and strict Route sets, maddr parameters and numeric
+ * hosts.  Lookups are answered from a zone built by {@link ZoneGenerator},
+ * after a configurable delay.
+ * <p>
+ * Options are given as <code>name=value</code> arguments:
+ * <dl>
+ * <dt>threads</dt><dd>the number of calling threads (default 4)</dd>
+ * <dt>seconds</dt><dd>the length of the measurement (default 10), after a warm-up of the same length</dd>
+ * <dt>latency</dt><dd>the delay before each lookup, in microseconds (default 0)</dd>
+ * <dt>domains</dt><dd>the number of distinct domains (default 1000)</dd>
+ * </dl>
+ * For example:
+ * <pre>
+ * java -cp target/benchmarks.jar com.google.code.rfc3263.benchmark.RouterLoadGenerator threads=16 latency=200
+ * </pre>
+ */
+public final class RouterLoadGenerator {
+	private static final int REQUESTS_PER_THREAD = 1024;
+
+	private final int threads;
+	private final int seconds;
+	private final long latencyNanos;
+	private final int domains;
+
+	private final AddressFactory addressFactory;
+	private final HeaderFactory headerFactory;
+	private final MessageFactory messageFactory;
+	private final SipStack stack;
+	private final Router router;
+
+	private RouterLoadGenerator(Map<String, String> options) throws Exception {
+		threads = Integer.parseInt(option(options, "threads", "4"));
+		seconds = Integer.parseInt(option(options, "seconds", "10"));
+		latencyNanos = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(option(options, "latency", "0")));
+		domains = Integer.parseInt(option(options, "domains", "1000"));
+		if (options.isEmpty() == false) {
+			throw new IllegalArgumentException("Unknown options: " + options.keySet());
+		}
+
+		final SipFactory factory = SipFactory.getInstance();
+		addressFactory = factory.createAddressFactory();
+		headerFactory = factory.createHeaderFactory();
+		messageFactory = factory.createMessageFactory();
+
+		final Properties properties = new Properties();
+		properties.put("javax.sip.STACK_NAME", "RouterLoadGenerator");
+		stack = factory.createSipStack(properties);
+		final Resolver resolver = new LatencyInjectingResolver(new ZoneGenerator(1L).generateResolver(domains), 0L, new QueryProfile(LatencyDistribution.constant(latencyNanos, TimeUnit.NANOSECONDS)));
+		// Stand in for the listening points, so no sockets are needed.
+		router = new DefaultRouter(stack, null, resolver) {
+			@Override
+			protected List<String> getSupportedTransports() {
+				return Arrays.asList("UDP", "TCP", "TLS");
+			}
+
+			@Override
+			protected Set<AddressFamily> getSupportedAddressFamilies() {
+				return EnumSet.allOf(AddressFamily.class);
+			}
+		};
+	}
+
+	public static void main(String[] args) throws Exception {
+		final Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			final int equals = arg.indexOf('=');
+			if (equals == -1) {
+				throw new IllegalArgumentException("Expected name=value: " + arg);
+			}
+			options.put(arg.substring(0, equals), arg.substring(equals + 1));
+		}
+		final RouterLoadGenerator generator = new RouterLoadGenerator(options);
+		try {
+			generator.run();
+		} finally {
+			generator.stack.stop();
+		}
+	}
+
+	private static String option(Map<String, String> options, String name, String defaultValue) {
+		final String value = options.remove(name);
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * Creates a request of the given kind for the given domain.
+	 */
+	private Request createRequest(int kind, int domain, Random random) throws Exception {
+		final String host = ZoneGenerator.domain(domain);
+		final SipURI requestUri = addressFactory.createSipURI("bob", host);
+		switch (kind) {
+		case 0:
+			// Plain SIP Request-URI
+			break;
+		case 1:
+			requestUri.setSecure(true);
+			break;
+		case 2:
+			requestUri.setMAddrParam("192.0.2." + (1 + random.nextInt(254)));
+			break;
+		case 3:
+			requestUri.setHost("198.51.100." + (1 + random.nextInt(254)));
+			requestUri.setPort(5070);
+			break;
+		default:
+			break;
+		}
+		final String method = "INVITE";
+		final CallIdHeader callId = headerFactory.createCallIdHeader(Long.toHexString(random.nextLong()));
+		final CSeqHeader cSeq = headerFactory.createCSeqHeader(1L, method);
+		final Address fromAddress = addressFactory.createAddress(addressFactory.createSipURI("alice", "example.org"));
+		final FromHeader from = headerFactory.createFromHeader(fromAddress, Long.toHexString(random.nextLong()));
+		final ToHeader to = headerFactory.createToHeader(addressFactory.createAddress(requestUri), null);
+		final List<ViaHeader> vias = new ArrayList<ViaHeader>();
+		final MaxForwardsHeader maxForwards = headerFactory.createMaxForwardsHeader(70);
+		final Request request = messageFactory.createRequest(requestUri, method, callId, cSeq, from, to, vias, maxForwards);
+
+		if (kind == 4 || kind == 5) {
+			// Loose (lr) or strict route through another domain
+			final SipURI routeUri = addressFactory.createSipURI(null, ZoneGenerator.domain(random.nextInt(domains)));
+			if (kind == 4) {
+				routeUri.setLrParam();
+			}
+			request.addHeader(headerFactory.createRouteHeader(addressFactory.createAddress(routeUri)));
+		}
+		return request;
+	}
+
+	private void run() throws Exception {
+		System.out.println("threads=" + threads + " seconds=" + seconds + " latency=" + TimeUnit.NANOSECONDS.toMicros(latencyNanos) + "us domains=" + domains);
+
+		final Worker[] workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) {
+			final Random random = new Random(i);
+			final Request[] requests = new Request[REQUESTS_PER_THREAD];
+			for (int j = 0; j < requests.length; j++) {
+				requests[j] = createRequest(j % 6, random.nextInt(domains), random);
+			}
+			workers[i] = new Worker(requests);
+		}
+
+		System.out.println("Warming up for " + seconds + "s");
+		measure(workers);
+		System.out.println("Measuring for " + seconds + "s");
+		final long elapsed = measure(workers);
+
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (Worker worker : workers) {
+			histogram.add(worker.histogram);
+		}
+		final double throughput = histogram.getCount() / (elapsed / 1e9);
+		System.out.printf("calls=%d throughput=%.0f/s nulls=%d%n", histogram.getCount(), throughput, sum(workers));
+		for (String percentile : new String[] {"50", "90", "99", "99.9", "99.99"}) {
+			System.out.printf("p%-6s %10.1f us%n", percentile, histogram.getPercentile(Double.parseDouble(percentile)) / 1e3);
+		}
+		System.out.printf("max     %10.1f us%n", histogram.getMax() / 1e3);
+	}
+
+	private static long sum(Worker[] workers) {
+		long nulls = 0;
+		for (Worker worker : workers) {
+			nulls += worker.nulls;
+		}
+		return nulls;
+	}
+
+	/**
+	 * Runs the workers for the configured time, returning the elapsed time in nanoseconds.
+	 */
+	private long measure(Worker[] workers) throws InterruptedException {
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final CountDownLatch done = new CountDownLatch(workers.length);
+		for (Worker worker : workers) {
+			worker.reset(running, done);
+		}
+		final long start = System.nanoTime();
+		for (Worker worker : workers) {
+			new Thread(worker).start();
+		}
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		running.set(false);
+		done.await();
+		return System.nanoTime() - start;
+	}
+
+	private final class Worker implements Runnable {
+		private final Request[] requests;
+		private LatencyHistogram histogram;
+		private long nulls;
+		private AtomicBoolean running;
+		private CountDownLatch done;
+
+		private Worker(Request[] requests) {
+			this.requests = requests;
+		}
+
+		private void reset(AtomicBoolean running, CountDownLatch done) {
+			this.histogram = new LatencyHistogram();
+			this.nulls = 0;
+			this.running = running;
+			this.done = done;
+		}
+
+		public void run() {
+			try {
+				int i = 0;
+				while (running.get()) {
+					final Request request = requests[i++ & (requests.length - 1)];
+					final long start = System.nanoTime();
+					final Hop hop = router.getNextHop(request);
+					histogram.record(System.nanoTime() - start);
+					if (hop == null) {
+						nulls++;
+					}
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+			} finally {
+				done.countDown();
+			}
+		}
+	}
+}
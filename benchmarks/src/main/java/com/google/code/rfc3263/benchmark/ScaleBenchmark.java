@@ -0,0 +1,78 @@
+package com.google.code.rfc3263.benchmark;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.sip.SipFactory;
+import javax.sip.address.AddressFactory;
+import javax.sip.address.Hop;
+import javax.sip.address.SipURI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.rfc3263.Locator;
+
+/**
+ * Benchmarks {@link Locator#locate(SipURI)} across a large zone built by
+ * {@link ZoneGenerator}, so that the per-domain state of the router, such as
+ * its name caches, is exercised at the scale of real interconnect traffic.
+ * <p>
+ * Each call locates a domain chosen uniformly at random.  To keep the heap
+ * small, URIs are built up front for a fixed sample of the domains.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ScaleBenchmark {
+	private static final int URIS = 1 << 16;
+
+	@Param({"1000", "100000", "300000"})
+	public int domains;
+
+	private Locator locator;
+	private SipURI[] uris;
+
+	@Setup
+	public void setUp() throws Exception {
+		locator = new Locator(Arrays.asList("UDP", "TCP", "TLS"), new ZoneGenerator(1L).generateResolver(domains));
+
+		final AddressFactory factory = SipFactory.getInstance().createAddressFactory();
+		final Random random = new Random(2L);
+		uris = new SipURI[URIS];
+		for (int i = 0; i < uris.length; i++) {
+			uris[i] = factory.createSipURI(null, ZoneGenerator.domain(random.nextInt(domains)));
+		}
+	}
+
+	/**
+	 * Holds each thread's position in the sample of URIs.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next = new Random().nextInt(URIS);
+
+		SipURI next(SipURI[] uris) {
+			return uris[next++ & (URIS - 1)];
+		}
+	}
+
+	@Benchmark
+	public Queue<Hop> locate(Cursor cursor) throws Exception {
+		return locator.locate(cursor.next(uris));
+	}
+}
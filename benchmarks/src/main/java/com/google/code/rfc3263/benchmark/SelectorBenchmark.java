@@ -0,0 +1,153 @@
+package com.google.code.rfc3263.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.SRVRecord;
+
+import com.google.code.rfc3263.dns.ServiceRecordDeterministicComparator;
+import com.google.code.rfc3263.dns.ServiceRecordSelector;
+import com.google.code.rfc3263.dns.sorter.ServiceRecordDeterministicWeightSorter;
+import com.google.code.rfc3263.dns.sorter.ServiceRecordLoadBalanceWeightSorter;
+import com.google.code.rfc3263.dns.sorter.ServiceRecordWeightSorter;
+
+/**
+ * Benchmarks the SRV record selector and the SRV weight sorters over record
+ * sets of increasing size.  See {@link PointerSelectorBenchmark} for NAPTR.
+ * <p>
+ * Run with the GC profiler to see the allocation per operation, for example
+ * <code>java -jar target/benchmarks.jar SelectorBenchmark -prof gc</code>.
+ * <p>
+ * The sorters reorder the list they are given, so each invocation sorts a fresh
+ * copy of the record set; the copy is included in the measurements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectorBenchmark {
+	/**
+	 * How records are spread across SRV priorities or NAPTR orders.
+	 */
+	public enum Priorities {
+		/** Every record has the same priority. */
+		SINGLE,
+		/** Records are spread across four priorities. */
+		FEW,
+		/** Every record has its own priority. */
+		UNIQUE
+	}
+
+	/**
+	 * How SRV weights are distributed.
+	 */
+	public enum Weights {
+		/** Every record has the same weight. */
+		EQUAL,
+		/** A few records carry most of the weight. */
+		SKEWED,
+		/** Every record has a weight of 0. */
+		ZERO
+	}
+
+	@Param({"1", "4", "16", "64", "256"})
+	public int size;
+
+	@Param
+	public Priorities priorities;
+
+	@Param
+	public Weights weights;
+
+	private List<SRVRecord> services;
+	private List<SRVRecord> samePriorityServices;
+	private ServiceRecordWeightSorter deterministicSorter;
+	private ServiceRecordWeightSorter loadBalanceSorter;
+
+	@Setup
+	public void setUp() {
+		final Random random = new Random(size);
+		final Name serviceId = Records.name("_sip._udp.example.org");
+
+		services = new ArrayList<SRVRecord>(size);
+		samePriorityServices = new ArrayList<SRVRecord>(size);
+		for (int i = 0; i < size; i++) {
+			final Name target = Records.name("host" + i + ".example.org");
+			final int weight = weight(i, random);
+			services.add(Records.srv(serviceId, priority(i), weight, 5060, target));
+			samePriorityServices.add(Records.srv(serviceId, 0, weight, 5060, target));
+		}
+		// DNS answers are in no particular order
+		Collections.shuffle(services, random);
+
+		deterministicSorter = new ServiceRecordDeterministicWeightSorter(new ServiceRecordDeterministicComparator());
+		loadBalanceSorter = new ServiceRecordLoadBalanceWeightSorter();
+	}
+
+	private int priority(int i) {
+		return priority(priorities, i);
+	}
+
+	static int priority(Priorities priorities, int i) {
+		switch (priorities) {
+		case FEW:
+			return i % 4;
+		case UNIQUE:
+			return i;
+		default:
+			return 0;
+		}
+	}
+
+	private int weight(int i, Random random) {
+		switch (weights) {
+		case SKEWED:
+			return i < 2 ? 1000 : 1 + random.nextInt(10);
+		case ZERO:
+			return 0;
+		default:
+			return 10;
+		}
+	}
+
+	@Benchmark
+	public List<SRVRecord> selectServicesDeterministic() {
+		return new ServiceRecordSelector(services, deterministicSorter).select();
+	}
+
+	@Benchmark
+	public List<SRVRecord> selectServicesLoadBalance() {
+		return new ServiceRecordSelector(services, loadBalanceSorter).select();
+	}
+
+	@Benchmark
+	public List<SRVRecord> sortDeterministic() {
+		final List<SRVRecord> copy = new ArrayList<SRVRecord>(samePriorityServices);
+		deterministicSorter.sort(copy);
+		return copy;
+	}
+
+	@Benchmark
+	public List<SRVRecord> sortLoadBalance() {
+		final List<SRVRecord> copy = new ArrayList<SRVRecord>(samePriorityServices);
+		loadBalanceSorter.sort(copy);
+		return copy;
+	}
+}
@@ -0,0 +1,132 @@
+package com.google.code.rfc3263.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import javax.sip.SipFactory;
+import javax.sip.address.Hop;
+import javax.sip.address.SipURI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+
+import com.google.code.rfc3263.Locator;
+import com.google.code.rfc3263.dns.InMemoryResolver;
+import com.google.code.rfc3263.dns.Resolver;
+
+/**
+ * Measures the distribution of {@link Locator#locate(SipURI)} times when the
+ * DNS server is slow, unreliable or both, as simulated by a
+ * {@link LatencyInjectingResolver}.
+ * <p>
+ * The domain has NAPTR records for UDP and TCP, two SRV targets for each, and
+ * an A and AAAA record for each target, so a single slow query delays the whole
+ * locate.  JMH reports the percentiles of the sampled times, for example:
+ * <pre>
+ * java -jar target/benchmarks.jar TailLatencyBenchmark -p scenario=LOSSY -t 4
+ * </pre>
+ * Use the same seed to compare changes to the locator under identical conditions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TailLatencyBenchmark {
+	/**
+	 * The simulated DNS conditions.
+	 */
+	public enum Scenario {
+		/** A resolver on the local network with everything cached. */
+		CACHED {
+			@Override
+			Resolver wrap(Resolver resolver, long seed) {
+				return new LatencyInjectingResolver(resolver, seed, new QueryProfile(HIT));
+			}
+		},
+		/** A resolver with a 90% hit rate; misses go to the authoritative servers. */
+		MISSES {
+			@Override
+			Resolver wrap(Resolver resolver, long seed) {
+				return new LatencyInjectingResolver(resolver, seed, new QueryProfile(HIT_OR_MISS));
+			}
+		},
+		/** As {@link #MISSES}, with 1% of queries timing out and 0.5% failing. */
+		LOSSY {
+			@Override
+			Resolver wrap(Resolver resolver, long seed) {
+				return new LatencyInjectingResolver(resolver, seed, new QueryProfile(HIT_OR_MISS, 0.005, 0.01, 100, TimeUnit.MILLISECONDS));
+			}
+		},
+		/**
+		 * As {@link #MISSES}, but AAAA queries are slow and 5% of them time
+		 * out, as with a middlebox which mishandles them.
+		 */
+		BROKEN_AAAA {
+			@Override
+			Resolver wrap(Resolver resolver, long seed) {
+				final QueryProfile profile = new QueryProfile(HIT_OR_MISS);
+				final QueryProfile aaaa = new QueryProfile(LatencyDistribution.logNormal(5, TimeUnit.MILLISECONDS, 0.5), 0, 0.05, 100, TimeUnit.MILLISECONDS);
+				return new LatencyInjectingResolver(resolver, seed, profile, profile, profile, aaaa);
+			}
+		};
+
+		private static final LatencyDistribution HIT = LatencyDistribution.logNormal(200, TimeUnit.MICROSECONDS, 0.3);
+		private static final LatencyDistribution MISS = LatencyDistribution.logNormal(15, TimeUnit.MILLISECONDS, 0.7);
+		private static final LatencyDistribution HIT_OR_MISS = LatencyDistribution.mixture(0.9, HIT, MISS);
+
+		abstract Resolver wrap(Resolver resolver, long seed);
+	}
+
+	@Param
+	public Scenario scenario;
+
+	@Param({"1"})
+	public long seed;
+
+	private Locator locator;
+	private SipURI uri;
+
+	@Setup
+	public void setUp() throws Exception {
+		final Name domain = Records.name("example.org");
+		final List<Record> records = new ArrayList<Record>();
+		int address = 0;
+		for (String service : Arrays.asList("SIP+D2U", "SIP+D2T")) {
+			final Name serviceId = Records.child(service.equals("SIP+D2U") ? "_sip._udp" : "_sip._tcp", domain);
+			records.add(Records.naptr(domain, records.size(), 50, service, serviceId));
+			for (int i = 0; i < 2; i++) {
+				final Name target = Records.child("sip" + i + service.charAt(service.length() - 1), domain);
+				records.add(Records.srv(serviceId, i, 10, 5060, target));
+				Records.addresses(records, target, address++, 1, true);
+			}
+		}
+		final InMemoryResolver zone = new InMemoryResolver(records);
+
+		locator = new Locator(Arrays.asList("UDP", "TCP"), scenario.wrap(zone, seed));
+		uri = SipFactory.getInstance().createAddressFactory().createSipURI(null, "example.org");
+		if (new Locator(Arrays.asList("UDP", "TCP"), zone).locate(uri).isEmpty()) {
+			throw new IllegalStateException("No hops for " + uri);
+		}
+	}
+
+	@Benchmark
+	public Queue<Hop> locate() throws Exception {
+		return locator.locate(uri);
+	}
+}
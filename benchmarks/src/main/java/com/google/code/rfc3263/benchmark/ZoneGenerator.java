@@ -0,0 +1,147 @@
+package com.google.code.rfc3263.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+
+import com.google.code.rfc3263.dns.InMemoryResolver;
+
+/**
+ * This class generates synthetic DNS data for large numbers of SIP domains,
+ * with the mix of shapes seen across interconnect peers.
+ * <p>
+ * Domain <i>i</i> is named <code>d<i>i</i>.example</code>, and is given one of
+ * the following shapes:
+ * <ul>
+ * <li>40%: NAPTR records for TLS, TCP and UDP, each leading to SRV records;</li>
+ * <li>10%: a single NAPTR record for TLS, leading to SRV records;</li>
+ * <li>30%: SRV records for each transport, but no NAPTR records;</li>
+ * <li>20%: no NAPTR or SRV records, only addresses for the domain itself.</li>
+ * </ul>
+ * Each SRV record set has between one and four targets, spread over one or
+ * two priorities with random weights.  A quarter of the domains use targets
+ * from a small set of shared provider pools rather than their own.  Each host
+ * has between one and four addresses: 60% of hosts are dual-stack, 35% have
+ * IPv4 addresses only, and 5% have IPv6 addresses only.
+ * <p>
+ * The same seed always generates the same records.
+ */
+public final class ZoneGenerator {
+	private static final int PROVIDERS = 32;
+	private static final int PROVIDER_HOSTS = 8;
+
+	private final long seed;
+
+	/**
+	 * Creates a new generator.
+	 *
+	 * @param seed the seed for the random choices.
+	 */
+	public ZoneGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the name of the given domain.
+	 *
+	 * @param i the index of the domain.
+	 * @return the domain name, such as <code>d42.example</code>.
+	 */
+	public static String domain(int i) {
+		return "d" + i + ".example";
+	}
+
+	/**
+	 * Generates the records for the given number of domains.
+	 *
+	 * @param domains the number of domains.
+	 * @return the records.
+	 */
+	public List<Record> generate(int domains) {
+		final Random random = new Random(seed);
+		final List<Record> records = new ArrayList<Record>(domains * 16);
+		int address = 0;
+
+		for (int provider = 0; provider < PROVIDERS; provider++) {
+			for (int host = 0; host < PROVIDER_HOSTS; host++) {
+				address = addAddresses(records, providerHost(provider, host), address, random);
+			}
+		}
+
+		for (int i = 0; i < domains; i++) {
+			final Name domain = Records.name(domain(i));
+			final int shape = random.nextInt(10);
+			if (shape < 2) {
+				address = addAddresses(records, domain, address, random);
+				continue;
+			}
+			final Name udp = Records.child("_sip._udp", domain);
+			final Name tcp = Records.child("_sip._tcp", domain);
+			final Name tls = Records.child("_sips._tcp", domain);
+			if (shape < 6) {
+				records.add(Records.naptr(domain, 50, 50, "SIPS+D2T", tls));
+				records.add(Records.naptr(domain, 90, 50, "SIP+D2T", tcp));
+				records.add(Records.naptr(domain, 100, 50, "SIP+D2U", udp));
+			} else if (shape < 7) {
+				records.add(Records.naptr(domain, 50, 50, "SIPS+D2T", tls));
+			}
+
+			final int targets = 1 + random.nextInt(4);
+			final int priorities = 1 + random.nextInt(2);
+			final int provider = random.nextInt(4) == 0 ? random.nextInt(PROVIDERS) : -1;
+			for (int j = 0; j < targets; j++) {
+				final Name target;
+				if (provider == -1) {
+					target = Records.child("sip" + j, domain);
+					address = addAddresses(records, target, address, random);
+				} else {
+					target = providerHost(provider, j);
+				}
+				final int priority = 10 * (j % priorities);
+				final int weight = random.nextInt(100);
+				records.add(Records.srv(tls, priority, weight, 5061, target));
+				if (shape != 6) {
+					records.add(Records.srv(tcp, priority, weight, 5060, target));
+					records.add(Records.srv(udp, priority, weight, 5060, target));
+				}
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * Generates the records for the given number of domains, and returns a
+	 * resolver which serves them.
+	 *
+	 * @param domains the number of domains.
+	 * @return the resolver.
+	 */
+	public InMemoryResolver generateResolver(int domains) {
+		return new InMemoryResolver(generate(domains));
+	}
+
+	private static Name providerHost(int provider, int host) {
+		return Records.name("sbc" + host + ".provider" + provider + ".example");
+	}
+
+	/**
+	 * Adds between one and four addresses for the host, and returns the next
+	 * free address index.
+	 */
+	private static int addAddresses(List<Record> records, Name host, int first, Random random) {
+		final int count = 1 + random.nextInt(4);
+		final int family = random.nextInt(20);
+		for (int i = first; i < first + count; i++) {
+			if (family != 0) {
+				records.add(Records.a(host, i));
+			}
+			if (family < 13) {
+				records.add(Records.aaaa(host, i));
+			}
+		}
+		return first + count;
+	}
+}
@@ -3,11 +3,13 @@ package com.google.code.rfc3263;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Queue;
+import java.util.Set;
 
 import javax.sip.ListeningPoint;
 import javax.sip.SipException;
@@ -24,6 +26,14 @@ import net.jcip.annotations.ThreadSafe;
 
 import org.apache.log4j.Logger;
 
+import com.google.code.rfc3263.dns.DefaultResolver;
+import com.google.code.rfc3263.dns.Resolver;
+import com.google.code.rfc3263.dns.ServiceRecordDeterministicComparator;
+import com.google.code.rfc3263.dns.sorter.ServiceRecordDeterministicWeightSorter;
+import com.google.code.rfc3263.dns.sorter.ServiceRecordWeightSorter;
+import com.google.code.rfc3263.sorter.HopSorter;
+import com.google.code.rfc3263.util.AddressFamily;
+
 /**
  * JAIN-SIP router implementation that uses the procedures laid out in RFC 3261
  * and RFC 3263 to locate the hop to which a given request should be routed.
@@ -42,8 +52,11 @@ import org.apache.log4j.Logger;
 @ThreadSafe
 public class DefaultRouter implements Router {
 	private static final Logger LOGGER = Logger.getLogger(DefaultRouter.class);
+	private static final Resolver RESOLVER = new DefaultResolver();
+	private static final ServiceRecordWeightSorter WEIGHTING_SORTER = new ServiceRecordDeterministicWeightSorter(new ServiceRecordDeterministicComparator());
 	private final Hop outboundProxy;
 	private final SipStack sipStack;
+	private final Resolver resolver;
 
 	/**
 	 * Creates a new instance of this class.
@@ -52,11 +65,26 @@ public class DefaultRouter implements Router {
 	 * @param outboundProxy the outbound proxy specified by the user.
 	 */
 	public DefaultRouter(SipStack sipStack, String outboundProxy) {
+		this(sipStack, outboundProxy, RESOLVER);
+	}
+
+	/**
+	 * Creates a new instance of this class which uses the given resolver.
+	 * 
+	 * @param sipStack the SipStack to use.
+	 * @param outboundProxy the outbound proxy specified by the user.
+	 * @param resolver the resolver to use for DNS lookups.
+	 */
+	public DefaultRouter(SipStack sipStack, String outboundProxy, Resolver resolver) {
+		if (resolver == null) {
+			throw new NullPointerException();
+		}
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("Router instantiated for " + sipStack);
 		}
 
 		this.sipStack = sipStack;
+		this.resolver = resolver;
 		if (outboundProxy == null) {
 			this.outboundProxy = null;
 		} else {
@@ -87,8 +115,7 @@ public class DefaultRouter implements Router {
 		
 		final SipURI destination = selectDestination(request);
 		try {
-			Locator locator = new Locator(getSupportedTransports());
-			Queue<Hop> hops = locator.locate(destination);
+			Queue<Hop> hops = createLocator(getWeightingSorter(request)).locate(destination);
 			Hop top = null;
 			// Take a peek at the first hop.  There's no good reason to poll 
 			// it in this situation.
@@ -130,26 +157,137 @@ public class DefaultRouter implements Router {
 		return outboundProxy;
 	}
 
+	/**
+	 * Returns a new locator configured from the stack and the hooks of this
+	 * router, which orders SRV records of the same priority deterministically.
+	 *
+	 * @return the locator.
+	 */
+	Locator createLocator() {
+		return createLocator(WEIGHTING_SORTER);
+	}
+
+	/**
+	 * Returns a new locator configured from the stack and the hooks of this router.
+	 *
+	 * @param weightingSorter the sorter for SRV records of the same priority.
+	 * @return the locator.
+	 */
+	Locator createLocator(ServiceRecordWeightSorter weightingSorter) {
+		return new Locator(getSupportedTransports(), resolver, weightingSorter, getHopSorter(), getSupportedAddressFamilies(), getLocateListener());
+	}
+
+	/**
+	 * Returns the sorter used to order the SRV records of the same priority
+	 * when routing the given request.  By default, records are ordered
+	 * deterministically, by weight and then by target.
+	 * <p>
+	 * Subclasses may, for example, keep the requests of a dialog or a user on
+	 * the same server by returning a
+	 * {@link com.google.code.rfc3263.dns.sorter.ServiceRecordRendezvousWeightSorter}
+	 * keyed on the request's Call-ID or To URI:
+	 * <pre>
+	 * CallIdHeader callId = (CallIdHeader) request.getHeader(CallIdHeader.NAME);
+	 * return new ServiceRecordRendezvousWeightSorter(callId.getCallId());
+	 * </pre>
+	 *
+	 * @param request the request being routed.
+	 * @return the SRV weight sorter.
+	 */
+	protected ServiceRecordWeightSorter getWeightingSorter(Request request) {
+		return WEIGHTING_SORTER;
+	}
+
 	protected List<String> getSupportedTransports() {
 		LOGGER.debug("Determining transports supported by stack");
 		final List<String> supportedTransports = new ArrayList<String>();
 
+		for (ListeningPoint endpoint : getListeningPoints()) {
+			final String transport = endpoint.getTransport().toUpperCase();
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Found ListeningPoint " + endpoint.getIPAddress() + ":" + endpoint.getPort() + "/" + endpoint.getTransport());
+			}
+			supportedTransports.add(transport);
+		}
+		
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Supported transports: " + supportedTransports);
+		}
+		return supportedTransports;
+	}
+
+	/**
+	 * Returns the sorter used to reorder the hops of each SRV priority, or null
+	 * to keep the DNS order, which is the default.
+	 * <p>
+	 * Subclasses may, for example, return a
+	 * {@link com.google.code.rfc3263.sorter.DestinationAddressHopSorter} built
+	 * from {@link #getListeningPoints()}.
+	 *
+	 * @return the hop sorter, or null.
+	 */
+	protected HopSorter getHopSorter() {
+		return null;
+	}
+
+	/**
+	 * Returns the listener notified each time a destination is located, or
+	 * null for none, which is the default.
+	 * <p>
+	 * Subclasses may, for example, return a shared {@link LocateStatistics},
+	 * and pass a {@link com.google.code.rfc3263.dns.MetricsResolver} to the
+	 * constructor, to see how much routing time is spent in DNS.
+	 *
+	 * @return the listener, or null.
+	 */
+	protected LocateListener getLocateListener() {
+		return null;
+	}
+
+	/**
+	 * Returns the listening points of all providers of the stack.
+	 * <p>
+	 * The default supported transports and address families are derived from
+	 * these listening points.
+	 *
+	 * @return the listening points.
+	 */
+	protected List<ListeningPoint> getListeningPoints() {
+		final List<ListeningPoint> listeningPoints = new ArrayList<ListeningPoint>();
+
 		final Iterator<?> providers = sipStack.getSipProviders();
 		while (providers.hasNext()) {
 			final SipProvider provider = (SipProvider) providers.next();
 			for (ListeningPoint endpoint : provider.getListeningPoints()) {
-				final String transport = endpoint.getTransport().toUpperCase();
-				if (LOGGER.isDebugEnabled()) {
-					LOGGER.debug("Found ListeningPoint " + endpoint.getIPAddress() + ":" + endpoint.getPort() + "/" + endpoint.getTransport());
-				}
-				supportedTransports.add(transport);
+				listeningPoints.add(endpoint);
 			}
 		}
-		
+		return listeningPoints;
+	}
+
+	/**
+	 * Returns the address families the stack can use, based on the IP addresses
+	 * of its listening points.
+	 * <p>
+	 * If the stack has no listening points, all address families are returned.
+	 *
+	 * @return the supported address families.
+	 */
+	protected Set<AddressFamily> getSupportedAddressFamilies() {
+		LOGGER.debug("Determining address families supported by stack");
+		final Set<AddressFamily> addressFamilies = EnumSet.noneOf(AddressFamily.class);
+
+		for (ListeningPoint endpoint : getListeningPoints()) {
+			addressFamilies.addAll(AddressFamily.fromLocalAddress(endpoint.getIPAddress()));
+		}
+		if (addressFamilies.isEmpty()) {
+			addressFamilies.addAll(EnumSet.allOf(AddressFamily.class));
+		}
+
 		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("Supported transports: " + supportedTransports);
+			LOGGER.debug("Supported address families: " + addressFamilies);
 		}
-		return supportedTransports;
+		return addressFamilies;
 	}
 
 	public static SipURI selectDestination(Request request) {
@@ -0,0 +1,86 @@
+package com.google.code.rfc3263;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.sip.address.Hop;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * This is a queue of hops which ignores hops it already contains.
+ * <p>
+ * Hops are kept in insertion order, and membership is checked by hash, so
+ * both adding and testing for a hop take constant time.  Adding a hop which is
+ * already queued leaves the queue unchanged and returns <code>false</code>.
+ */
+@NotThreadSafe
+class DistinctHopQueue extends AbstractQueue<Hop> {
+	private final Set<Hop> hops = new LinkedHashSet<Hop>();
+
+	/**
+	 * Adds the given hop, unless it is already queued.
+	 *
+	 * @return <code>true</code> if the hop was added, <code>false</code> otherwise.
+	 */
+	@Override
+	public boolean add(Hop hop) {
+		return offer(hop);
+	}
+
+	/**
+	 * Adds the given hop, unless it is already queued.
+	 *
+	 * @return <code>true</code> if the hop was added, <code>false</code> otherwise.
+	 */
+	public boolean offer(Hop hop) {
+		if (hop == null) {
+			throw new NullPointerException();
+		}
+		return hops.add(hop);
+	}
+
+	public Hop poll() {
+		if (hops.isEmpty()) {
+			return null;
+		}
+		final Iterator<Hop> iter = hops.iterator();
+		final Hop hop = iter.next();
+		iter.remove();
+		return hop;
+	}
+
+	public Hop peek() {
+		if (hops.isEmpty()) {
+			return null;
+		}
+		return hops.iterator().next();
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return hops.contains(o);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return hops.remove(o);
+	}
+
+	@Override
+	public void clear() {
+		hops.clear();
+	}
+
+	@Override
+	public Iterator<Hop> iterator() {
+		return hops.iterator();
+	}
+
+	@Override
+	public int size() {
+		return hops.size();
+	}
+}
@@ -7,6 +7,7 @@ import javax.sip.address.Hop;
 import net.jcip.annotations.Immutable;
 
 import com.google.code.rfc3263.util.LocatorUtils;
+import com.google.code.rfc3263.util.Transport;
 
 /**
  * This is an implementation of the Hop interface.
@@ -26,6 +27,21 @@ public class HopImpl implements Hop {
 			this.transport= transport;
 		}
 	}
+
+	/**
+	 * Returns a new hop for the given transport.
+	 * <p>
+	 * This is not a constructor overload, so that <code>new HopImpl(host, port, null)</code>
+	 * remains unambiguous.
+	 *
+	 * @param host the host.
+	 * @param port the port.
+	 * @param transport the transport.
+	 * @return the hop.
+	 */
+	static HopImpl of(String host, int port, Transport transport) {
+		return new HopImpl(host, port, transport.toString());
+	}
 	
 	/**
 	 * {@inheritDoc}
@@ -140,8 +156,8 @@ public class HopImpl implements Hop {
 		}
 		
 		// Check the transport
-		final String transport = hop.substring(transportSlash + 1);
-		if (LocatorUtils.isKnownTransport(transport) == false) {
+		final Transport transport = Transport.fromString(hop.substring(transportSlash + 1));
+		if (transport == null) {
 			throw new ParseException("Invalid transport", transportSlash);
 		}
 		
@@ -151,9 +167,9 @@ public class HopImpl implements Hop {
 		}
 		
 		if (LocatorUtils.isIPv6Reference(address)) {
-			return new HopImpl(address.substring(1, address.length() - 1), portNum, transport);
+			return of(address.substring(1, address.length() - 1), portNum, transport);
 		} else {
-			return new HopImpl(address, portNum, transport);
+			return of(address, portNum, transport);
 		}
 	}
 }
\ No newline at end of file
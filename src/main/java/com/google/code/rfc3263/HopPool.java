@@ -0,0 +1,106 @@
+package com.google.code.rfc3263;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.xbill.DNS.Name;
+
+import com.google.code.rfc3263.util.Transport;
+
+/**
+ * This is a bounded pool of canonical resolved hops.
+ * <p>
+ * The same addresses are resolved again and again for a fixed set of peers, so
+ * rather than formatting the address and building a new hop for every record,
+ * the pool hands out a shared {@link ResolvedHop} for each address, port and
+ * transport.
+ * <p>
+ * The TTL and target are not part of the key: the TTL of a cached record counts
+ * down, and the same address is often reached through several SRV targets.
+ * The pooled hop is returned as long as its target matches and the TTL asked
+ * for is no more than {@value #TTL_TOLERANCE_PERCENT}% below its own, so a
+ * TTL counting down replaces the hop a few times over its lifetime rather than
+ * on every locate.  Otherwise, a copy carrying the new TTL and target replaces
+ * it, reusing the formatted strings of the pooled hop.
+ * <p>
+ * The pool is direct-mapped: each slot holds a single hop, and a hop which
+ * hashes to an occupied slot replaces the hop in that slot.  A lookup is
+ * therefore a single array read, and the pool never grows beyond its size.
+ */
+@ThreadSafe
+final class HopPool {
+	/**
+	 * The default number of slots in the pool.
+	 */
+	public static final int DEFAULT_SIZE = 256;
+	/**
+	 * How far below the TTL of a pooled hop the TTL asked for may be, as a
+	 * percentage, for the pooled hop to be returned.
+	 */
+	public static final int TTL_TOLERANCE_PERCENT = 10;
+
+	private final AtomicReferenceArray<ResolvedHop> hops;
+	private final int mask;
+
+	/**
+	 * Creates a new pool with {@value #DEFAULT_SIZE} slots.
+	 */
+	public HopPool() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * Creates a new pool.
+	 *
+	 * @param size the number of slots, which must be a power of two.
+	 */
+	public HopPool(int size) {
+		if (size < 1 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("Size must be a power of two: " + size);
+		}
+		this.hops = new AtomicReferenceArray<ResolvedHop>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Returns the canonical hop for the given address, port and transport.
+	 *
+	 * @param address the resolved address.
+	 * @param port the port.
+	 * @param transport the transport.
+	 * @param ttl the TTL of the record the address was taken from.
+	 * @param target the name the address was resolved from.
+	 * @return the hop.
+	 */
+	public ResolvedHop getHop(InetAddress address, int port, Transport transport, long ttl, Name target) {
+		final byte[] bytes = address.getAddress();
+		final int index = hash(bytes, port, transport) & mask;
+
+		ResolvedHop hop = hops.get(index);
+		if (hop != null && hop.matches(bytes, port, transport)) {
+			if (hop.hasTarget(target) && isWithinTolerance(hop.getTTL(), ttl)) {
+				return hop;
+			}
+			hop = hop.withTtlAndTarget(ttl, target);
+		} else {
+			hop = new ResolvedHop(address, bytes, port, transport, ttl, target);
+		}
+		hops.set(index, hop);
+		return hop;
+	}
+
+	private static boolean isWithinTolerance(long pooledTtl, long ttl) {
+		return ttl <= pooledTtl && (pooledTtl - ttl) * 100 <= pooledTtl * TTL_TOLERANCE_PERCENT;
+	}
+
+	private static int hash(byte[] bytes, int port, Transport transport) {
+		int h = Arrays.hashCode(bytes);
+		h = 31 * h + port;
+		h = 31 * h + transport.ordinal();
+		// Spread the high bits into the index, as for HashMap.
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,35 @@
+package com.google.code.rfc3263;
+
+import javax.sip.address.SipURI;
+
+/**
+ * This interface is notified each time a {@link Locator} locates a URI.
+ * <p>
+ * Implementations are called on the locating thread, so they must be
+ * thread-safe and quick.
+ *
+ * @see LocateStatistics
+ */
+public interface LocateListener {
+	/**
+	 * Called when a URI has been located.  This is not called when locating
+	 * fails with an exception: {@link #locateFailed} is called instead.
+	 *
+	 * @param uri the URI.
+	 * @param path the route taken to locate the URI.
+	 * @param hops the number of hops found.
+	 * @param nanos the time taken, in nanoseconds.
+	 */
+	public void locateCompleted(SipURI uri, LocatePath path, int hops, long nanos);
+
+	/**
+	 * Called when locating a URI fails with an exception, before the
+	 * exception is thrown to the caller.
+	 *
+	 * @param uri the URI.
+	 * @param path the route taken before the failure, or null if none was.
+	 * @param cause the exception.
+	 * @param nanos the time taken until the failure, in nanoseconds.
+	 */
+	public void locateFailed(SipURI uri, LocatePath path, Exception cause, long nanos);
+}
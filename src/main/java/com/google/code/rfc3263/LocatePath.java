@@ -0,0 +1,17 @@
+package com.google.code.rfc3263;
+
+/**
+ * This enum describes the route taken through RFC 3263 to locate a URI.
+ */
+public enum LocatePath {
+	/** The target is a numeric address, so no lookups were made. */
+	NUMERIC,
+	/** The URI has a port, so the target's addresses were looked up directly. */
+	EXPLICIT_PORT,
+	/** NAPTR records led to SRV records. */
+	NAPTR_SRV,
+	/** SRV records were found without NAPTR records. */
+	SRV,
+	/** No usable NAPTR or SRV records were found, so the target's addresses were looked up. */
+	A_FALLBACK
+}
@@ -0,0 +1,81 @@
+package com.google.code.rfc3263;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+import javax.sip.address.Hop;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * This class holds the hops located for a URI, along with the time at which
+ * they expire.
+ * <p>
+ * The expiry time is derived from the smallest TTL of the NAPTR, SRV, A and
+ * AAAA records used to locate the hops, so a result may be reused until it
+ * expires without breaking DNS caching rules.  Hops for a numeric URI never
+ * expire, while a result for a non-numeric URI which used no records at all
+ * expires immediately, as the time for which the absence of records may be
+ * cached is not known.
+ */
+@Immutable
+public final class LocateResult {
+	/**
+	 * The expiry time of a result which never expires.
+	 */
+	public static final long NEVER = Long.MAX_VALUE;
+
+	private final List<Hop> hops;
+	private final long expires;
+
+	/**
+	 * Creates a new result.
+	 *
+	 * @param hops the located hops, in order.
+	 * @param expires the expiry time, in milliseconds since the epoch.
+	 */
+	public LocateResult(Queue<Hop> hops, long expires) {
+		this.hops = Collections.unmodifiableList(new ArrayList<Hop>(hops));
+		this.expires = expires;
+	}
+
+	/**
+	 * Returns a new queue holding the located hops.
+	 * <p>
+	 * Each call returns a new queue, so the caller may consume it while the result
+	 * itself is cached.
+	 *
+	 * @return the hop queue.
+	 */
+	public Queue<Hop> getHops() {
+		final Queue<Hop> queue = new DistinctHopQueue();
+		queue.addAll(hops);
+		return queue;
+	}
+
+	/**
+	 * Returns the time at which this result expires.
+	 *
+	 * @return the expiry time, in milliseconds since the epoch, or {@link #NEVER}.
+	 */
+	public long getExpires() {
+		return expires;
+	}
+
+	/**
+	 * Returns <code>true</code> if this result has expired at the given time.
+	 *
+	 * @param now the current time, in milliseconds since the epoch.
+	 * @return <code>true</code> if this result has expired, <code>false</code> otherwise.
+	 */
+	public boolean isExpired(long now) {
+		return now >= expires;
+	}
+
+	@Override
+	public String toString() {
+		return hops + " (expires " + (expires == NEVER ? "never" : String.valueOf(expires)) + ")";
+	}
+}
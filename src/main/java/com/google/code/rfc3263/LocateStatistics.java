@@ -0,0 +1,142 @@
+package com.google.code.rfc3263;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sip.address.SipURI;
+
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.code.rfc3263.util.LatencyHistogram;
+
+/**
+ * This class is a listener which keeps statistics about the URIs located:
+ * how many, by which path, how many hops were found and how long it took.
+ * Failed locates are counted, and their time is recorded, along with the
+ * others; a locate which failed before taking any path is only recorded in
+ * the overall histogram.
+ * <p>
+ * Together with a {@link com.google.code.rfc3263.dns.MetricsResolver}, this
+ * shows how much of the time taken to route a request is spent in DNS.
+ * Counters and histograms are lock-free, so this class can be left on in
+ * production.
+ */
+@ThreadSafe
+public class LocateStatistics implements LocateListener {
+	private final Map<LocatePath, LatencyHistogram> latencies = new EnumMap<LocatePath, LatencyHistogram>(LocatePath.class);
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final AtomicLong hops = new AtomicLong();
+	private final AtomicLong emptyLocates = new AtomicLong();
+	private final AtomicLong failedLocates = new AtomicLong();
+
+	/**
+	 * Creates a new instance with no statistics.
+	 */
+	public LocateStatistics() {
+		for (LocatePath path : LocatePath.values()) {
+			latencies.put(path, new LatencyHistogram());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void locateCompleted(SipURI uri, LocatePath path, int hops, long nanos) {
+		latency.record(nanos);
+		latencies.get(path).record(nanos);
+		this.hops.addAndGet(hops);
+		if (hops == 0) {
+			emptyLocates.incrementAndGet();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void locateFailed(SipURI uri, LocatePath path, Exception cause, long nanos) {
+		latency.record(nanos);
+		if (path != null) {
+			latencies.get(path).record(nanos);
+		}
+		failedLocates.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of URIs located, including failed locates.
+	 *
+	 * @return the number of locates.
+	 */
+	public long getLocates() {
+		return latency.getCount();
+	}
+
+	/**
+	 * Returns the number of URIs located by the given path, including failed locates.
+	 *
+	 * @param path the path.
+	 * @return the number of locates.
+	 */
+	public long getLocates(LocatePath path) {
+		return latencies.get(path).getCount();
+	}
+
+	/**
+	 * Returns the number of URIs for which no hops were found.
+	 *
+	 * @return the number of empty locates.
+	 */
+	public long getEmptyLocates() {
+		return emptyLocates.get();
+	}
+
+	/**
+	 * Returns the number of URIs for which locating failed with an exception.
+	 *
+	 * @return the number of failed locates.
+	 */
+	public long getFailedLocates() {
+		return failedLocates.get();
+	}
+
+	/**
+	 * Returns the total number of hops found.
+	 *
+	 * @return the number of hops.
+	 */
+	public long getHops() {
+		return hops.get();
+	}
+
+	/**
+	 * Returns the histogram of the time taken to locate each URI.
+	 *
+	 * @return the histogram.
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Returns the histogram of the time taken to locate each URI by the given path.
+	 *
+	 * @param path the path.
+	 * @return the histogram.
+	 */
+	public LatencyHistogram getLatency(LocatePath path) {
+		return latencies.get(path);
+	}
+
+	/**
+	 * Discards all statistics recorded so far.
+	 */
+	public void reset() {
+		latency.reset();
+		for (LatencyHistogram histogram : latencies.values()) {
+			histogram.reset();
+		}
+		hops.set(0);
+		emptyLocates.set(0);
+		failedLocates.set(0);
+	}
+}
@@ -1,21 +1,15 @@
 package com.google.code.rfc3263;
 
-import static com.google.code.rfc3263.util.LocatorUtils.getDefaultPortForTransport;
-import static com.google.code.rfc3263.util.LocatorUtils.getDefaultTransportForScheme;
-import static com.google.code.rfc3263.util.LocatorUtils.getServiceIdentifier;
 import static com.google.code.rfc3263.util.LocatorUtils.getTarget;
-import static com.google.code.rfc3263.util.LocatorUtils.getTransportForService;
 import static com.google.code.rfc3263.util.LocatorUtils.isIPv6Reference;
 import static com.google.code.rfc3263.util.LocatorUtils.isNumeric;
-import static com.google.code.rfc3263.util.LocatorUtils.upgradeTransport;
-import static javax.sip.ListeningPoint.SCTP;
-import static javax.sip.ListeningPoint.TCP;
-import static javax.sip.ListeningPoint.TLS;
-import static javax.sip.ListeningPoint.UDP;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -35,6 +29,7 @@ import org.xbill.DNS.AAAARecord;
 import org.xbill.DNS.ARecord;
 import org.xbill.DNS.NAPTRRecord;
 import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
 import org.xbill.DNS.SRVRecord;
 
 import com.google.code.rfc3263.dns.DefaultResolver;
@@ -44,6 +39,10 @@ import com.google.code.rfc3263.dns.ServiceRecordSelector;
 import com.google.code.rfc3263.dns.Resolver;
 import com.google.code.rfc3263.dns.sorter.ServiceRecordDeterministicWeightSorter;
 import com.google.code.rfc3263.dns.sorter.ServiceRecordWeightSorter;
+import com.google.code.rfc3263.sorter.HopSorter;
+import com.google.code.rfc3263.util.AddressFamily;
+import com.google.code.rfc3263.util.NameCache;
+import com.google.code.rfc3263.util.Transport;
 
 /**
  * This class provides the mechanism defined by RFC 3263 for ascertaining the hops to try
@@ -56,47 +55,51 @@ public class Locator {
 	private final static Logger LOGGER = Logger.getLogger(Locator.class);
 	public static final String JAVA_NET_PREFER_IPV_4_STACK = "java.net.preferIPv4Stack";
 	public static final String JAVA_NET_PREFER_IPV_6_ADDRESSES = "java.net.preferIPv6Addresses";
+	/**
+	 * Names shared by all locators, as locators are often created per request.
+	 */
+	private static final NameCache NAME_CACHE = new NameCache();
+	/**
+	 * Resolved hops shared by all locators, for the same reason.
+	 */
+	private static final HopPool HOP_POOL = new HopPool();
 
 	/**
 	 * Class to use for DNS lookups.
 	 */
 	private final Resolver resolver;
 	/**
-	 * Preferred transports.
+	 * Preferred transports, in order of preference.
 	 */
-	private final List<String> prefTransports;
+	private final List<Transport> prefTransports;
+	/**
+	 * Preferred transports, for fast membership tests.
+	 */
+	private final Set<Transport> supportedTransports;
 	/**
 	 * Sorter for sorting prioritised SRV records.
 	 */
 	private final ServiceRecordWeightSorter weightingSorter;
-	// SIP Table of Mappings From Service Field Values to Transport Protocols
-	//
-	// Services Field        Protocol  Reference
-	// --------------------  --------  ---------
-	// SIP+D2T               TCP       [RFC3263]
-	// SIPS+D2T              TCP       [RFC3263]
-	// SIP+D2U               UDP       [RFC3263]
-	// SIP+D2S               SCTP      [RFC3263]
-	// SIPS+D2S              SCTP      [RFC4168]
-	private final Map<String, String> serviceTransportMap = new HashMap<String, String>();
-	{
-		serviceTransportMap.put("SIP+D2T", TCP);
-		serviceTransportMap.put("SIPS+D2T", TLS);
-		serviceTransportMap.put("SIP+D2U", UDP);
-		serviceTransportMap.put("SIP+D2S", SCTP);
-		serviceTransportMap.put("SIPS+D2S", "TLS-SCTP");
-	}
+	/**
+	 * Sorter for reordering resolved hops within a priority, or null.
+	 */
+	private final HopSorter hopSorter;
 
 	/**
-	 * Flag based on java.net.preferIPv4Stack
+	 * Address families the stack can use, restricted by java.net.preferIPv4Stack
 	 */
-	private final boolean ipv4only;
+	private final Set<AddressFamily> addressFamilies;
 
 	/**
 	 * Flag based on java.net.preferIPv6Addresses
 	 */
 	private final boolean ipv6first;
 
+	/**
+	 * Listener notified of each locate, or null.
+	 */
+	private final LocateListener listener;
+
 	/**
 	 * Constructs a new instance of the <code>Locator</code> class using
 	 * the {@link DefaultResolver} and the given list of transports.
@@ -153,11 +156,56 @@ public class Locator {
 	 * @param weightingSorter the sorter used to sort SRV records
 	 */
 	public Locator(List<String> transports, Resolver resolver, ServiceRecordWeightSorter weightingSorter) {
+		this(transports, resolver, weightingSorter, null, null, null);
+	}
+
+	/**
+	 * Constructs a new instance of the <code>Locator</code> class using
+	 * the given {@link Resolver}, the list of transports, the given
+	 * SRV weighting algorithm, the given hop sorter, the given address families
+	 * and the given listener.
+	 * <p>
+	 * The hop sorter is applied to the hops resolved from each SRV priority
+	 * in turn, so it can never move a hop across a priority boundary.  A and
+	 * AAAA records are only looked up for the given address families.
+	 *
+	 * @param transports the transports to use.
+	 * @param resolver the resolver to use.
+	 * @param weightingSorter the sorter used to sort SRV records
+	 * @param hopSorter the sorter used to reorder resolved hops, or null to keep the DNS order.
+	 * @param addressFamilies the address families to resolve, or null for all of them.
+	 * @param listener the listener to notify of each locate, or null.
+	 * @throws IllegalArgumentException if no usable address family is provided.
+	 */
+	public Locator(List<String> transports, Resolver resolver, ServiceRecordWeightSorter weightingSorter, HopSorter hopSorter, Set<AddressFamily> addressFamilies, LocateListener listener) {
 		this.resolver = resolver;
-		this.prefTransports = transports;
+		this.prefTransports = new ArrayList<Transport>();
+		for (String transport : transports) {
+			final Transport known = Transport.fromString(transport);
+			if (known == null) {
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("Ignoring unknown transport " + transport);
+				}
+			} else if (prefTransports.contains(known) == false) {
+				prefTransports.add(known);
+			}
+		}
+		this.supportedTransports = prefTransports.isEmpty() ? EnumSet.noneOf(Transport.class) : EnumSet.copyOf(prefTransports);
 		this.weightingSorter = weightingSorter;
-		this.ipv4only = Boolean.getBoolean(JAVA_NET_PREFER_IPV_4_STACK);
+		this.hopSorter = hopSorter;
+		if (addressFamilies == null) {
+			this.addressFamilies = EnumSet.allOf(AddressFamily.class);
+		} else {
+			this.addressFamilies = addressFamilies.isEmpty() ? EnumSet.noneOf(AddressFamily.class) : EnumSet.copyOf(addressFamilies);
+		}
+		if (Boolean.getBoolean(JAVA_NET_PREFER_IPV_4_STACK)) {
+			this.addressFamilies.remove(AddressFamily.IPV6);
+		}
+		if (this.addressFamilies.isEmpty()) {
+			throw new IllegalArgumentException("No usable address family in " + addressFamilies);
+		}
 		this.ipv6first = Boolean.getBoolean(JAVA_NET_PREFER_IPV_6_ADDRESSES);
+		this.listener = listener;
 	}
 
 	/**
@@ -175,7 +223,7 @@ public class Locator {
 
 		final String hopAddress;
 		final int hopPort;
-		final String hopTransport;
+		final Transport hopTransport;
 
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("Selecting transport for " + uri);
@@ -187,16 +235,17 @@ public class Locator {
 			//
 			// If the URI specifies a transport protocol in the transport parameter,
 			// that transport protocol SHOULD be used.
-			if (isSecure) {
-				try {
-					hopTransport = upgradeTransport(transportParam);
-				} catch (IllegalArgumentException e) {
-
+			hopTransport = selectTransport(transportParam, isSecure);
+			if (hopTransport == null) {
+				if (isSecure) {
 					// User is trying to use secure UDP
 					return null;
 				}
-			} else {
-				hopTransport = transportParam.toUpperCase();
+				// Any other transport, such as WS, is passed through as is, but
+				// has no default port.
+				checkOtherTransport(transportParam, port);
+				final String address = isIPv6Reference(domain) ? domain.substring(1, domain.length() - 1) : domain;
+				return new HopImpl(address, port, transportParam);
 			}
 		} else {
 			LOGGER.debug("No transport parameter found, so using scheme default transport");
@@ -205,7 +254,7 @@ public class Locator {
 			// Otherwise, if no transport protocol is specified, but the TARGET is a
 			// numeric IP address, the client SHOULD use UDP for a SIP URI, and TCP
 			// for a SIPS URI.
-			hopTransport = getDefaultTransportForScheme(uri.getScheme());
+			hopTransport = Transport.fromScheme(uri.getScheme());
 		}
 
 		if (LOGGER.isDebugEnabled()) {
@@ -227,25 +276,28 @@ public class Locator {
 		if (port != -1) {
 			hopPort = port;
 		} else {
-			hopPort = getDefaultPortForTransport(hopTransport);
+			hopPort = hopTransport.getDefaultPort();
 		}
 
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("Determined IP address and port for " + uri + ": " + hopAddress + ":" + hopPort);
 		}
 
-		return new HopImpl(hopAddress, hopPort, hopTransport);
+		return HopImpl.of(hopAddress, hopPort, hopTransport);
 	}
 
-	private Queue<UnresolvedHop> locateNonNumeric(SipURI uri) throws IOException {
+	private Queue<UnresolvedHop> locateNonNumeric(SipURI uri, LocateContext context) throws IOException {
 		final Queue<UnresolvedHop> hops = new LinkedList<UnresolvedHop>();
 
 		final String transportParam = getTransportParam(uri);
 		final boolean isSecure = isSecure(uri);
 		final int port = uri.getPort();
-		final Name domain = Name.concatenate(new Name(getTarget(uri)), Name.root);
+		// Set before the first lookup, so a failure is reported with a path.
+		context.setPath(port != -1 ? LocatePath.EXPLICIT_PORT : LocatePath.A_FALLBACK);
+		final Name domain = NAME_CACHE.getName(getTarget(uri));
 
-		String hopTransport = null;
+		Transport hopTransport = null;
+		String otherTransport = null;
 
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("Selecting transport for " + uri);
@@ -257,16 +309,17 @@ public class Locator {
 			//
 			// If the URI specifies a transport protocol in the transport parameter,
 			// that transport protocol SHOULD be used.
-			if (isSecure) {
-				try {
-					hopTransport = upgradeTransport(transportParam);
-				} catch (IllegalArgumentException e) {
-					LOGGER.error("No known transport for secure UDP.", e);
+			hopTransport = selectTransport(transportParam, isSecure);
+			if (hopTransport == null) {
+				if (isSecure) {
+					LOGGER.error("No known transport for secure " + transportParam);
 					// User is trying to use secure UDP
 					return hops;
 				}
-			} else {
-				hopTransport = transportParam.toUpperCase();
+				// Any other transport, such as WS, is passed through as is, but
+				// has no default port or SRV service identifier.
+				checkOtherTransport(transportParam, port);
+				otherTransport = transportParam;
 			}
 		} else if (port != -1) {
 			LOGGER.debug("No transport parameter found, so using scheme default transport");
@@ -275,7 +328,7 @@ public class Locator {
 			// ... if no transport protocol is specified, and the TARGET is not
 			// numeric, but an explicit port is provided, the client SHOULD use
 			// UDP for a SIP URI, and TCP for a SIPS URI.
-			hopTransport = getDefaultTransportForScheme(uri.getScheme());
+			hopTransport = Transport.fromScheme(uri.getScheme());
 		} else {
 			LOGGER.debug("No transport parameter or port was specified.");
 			// 4.1 Para 4
@@ -287,6 +340,7 @@ public class Locator {
 				LOGGER.debug("Looking up NAPTR records for " + domain);
 			}
 			final List<NAPTRRecord> pointers = resolver.lookupNAPTRRecords(domain);
+			context.addRecords(pointers);
 			discardInvalidPointers(pointers, isSecure);
 
 			if (pointers.size() > 0) {
@@ -308,19 +362,16 @@ public class Locator {
 						LOGGER.debug("Looking up SRV records for " + serviceId);
 					}
 					final List<SRVRecord> services = resolver.lookupSRVRecords(serviceId);
+					context.addRecords(services);
 					if (isValid(services)) {
 						if (LOGGER.isDebugEnabled()) {
 							LOGGER.debug("Found " + services.size() + " SRV record(s)");
 						}
 						final List<SRVRecord> sortedServices = sortServiceRecords(services);
 
-						hopTransport = getTransportForService(pointer.getService());
-						for (SRVRecord service : sortedServices) {
-							if (LOGGER.isDebugEnabled()) {
-								LOGGER.debug("Processing SRV record: " + service);
-							}
-							hops.add(new UnresolvedHop(service.getTarget(), service.getPort(), hopTransport));
-						}
+						hopTransport = Transport.fromService(pointer.getService());
+						addServiceHops(hops, sortedServices, hopTransport);
+						context.setPath(LocatePath.NAPTR_SRV);
 					}
 				}
 			} else {
@@ -334,23 +385,20 @@ public class Locator {
 				// Queries are done using the service identifier "_sip" for SIP URIs and
 				// "_sips" for SIPS URIs.  A particular transport is supported if the
 				// query is successful.
-				final List<String> filteredTransports = filterTransports(isSecure);
-				for (String prefTransport : filteredTransports) {
-					final Name serviceId = getServiceIdentifier(prefTransport, domain);
+				final List<Transport> filteredTransports = filterTransports(isSecure);
+				for (Transport prefTransport : filteredTransports) {
+					final Name serviceId = NAME_CACHE.getServiceIdentifier(prefTransport, domain);
 					if (LOGGER.isDebugEnabled()) {
 						LOGGER.debug("Looking up SRV records for " + serviceId);
 					}
 					final List<SRVRecord> services = resolver.lookupSRVRecords(serviceId);
+					context.addRecords(services);
 					if (isValid(services)) {
 						LOGGER.debug("Found " + services.size() + " SRV record(s) for " + serviceId);
 						final List<SRVRecord> sortedServices = sortServiceRecords(services);
 						hopTransport = prefTransport;
-						for (SRVRecord service : sortedServices) {
-							if (LOGGER.isDebugEnabled()) {
-								LOGGER.debug("Processing SRV record: " + service);
-							}
-							hops.add(new UnresolvedHop(service.getTarget(), service.getPort(), hopTransport));
-						}
+						addServiceHops(hops, sortedServices, hopTransport);
+						context.setPath(LocatePath.SRV);
 					} else if (LOGGER.isDebugEnabled()) {
 						LOGGER.debug("No valid SRV records for " + serviceId);
 					}
@@ -365,7 +413,7 @@ public class Locator {
 				//
 				// If no SRV records are found, the client SHOULD use TCP for a SIPS
 				// URI, and UDP for a SIP URI.
-				hopTransport = getDefaultTransportForScheme(uri.getScheme());
+				hopTransport = Transport.fromScheme(uri.getScheme());
 			}
 		}
 
@@ -383,7 +431,11 @@ public class Locator {
 			// name.  The result will be a list of IP addresses, each of which can
 			// be contacted at the specific port from the URI and transport protocol
 			// determined previously.
-			hops.add(new UnresolvedHop(domain, port, hopTransport));
+			if (otherTransport != null) {
+				hops.add(new UnresolvedHop(domain, port, otherTransport, hops.size()));
+			} else {
+				hops.add(new UnresolvedHop(domain, port, hopTransport, hops.size()));
+			}
 		} else {
 			LOGGER.debug("No port is present in the URI");
 			// 4.2 Para 4
@@ -408,23 +460,20 @@ public class Locator {
 				// For a SIP URI, if the client wishes to use TLS, it also uses the service
 				// identifier "_sips" for that specific transport, otherwise, it uses
 				// "_sip".
-				final Name serviceId = getServiceIdentifier(hopTransport, domain);
+				final Name serviceId = NAME_CACHE.getServiceIdentifier(hopTransport, domain);
 				if (LOGGER.isDebugEnabled()) {
 					LOGGER.debug("Looking up SRV records for " + serviceId);
 				}
 				final List<SRVRecord> services = resolver.lookupSRVRecords(serviceId);
+				context.addRecords(services);
 				if (isValid(services)) {
 					if (LOGGER.isDebugEnabled()) {
 						LOGGER.debug("Found " + services.size() + " SRV records for " + serviceId + ", so use provided targets and ports");
 						LOGGER.debug(services);
 					}
 					List<SRVRecord> sortedServices = sortServiceRecords(services);
-					for (SRVRecord service : sortedServices) {
-						if (LOGGER.isDebugEnabled()) {
-							LOGGER.debug("Processing SRV record: " + service);
-						}
-						hops.add(new UnresolvedHop(service.getTarget(), service.getPort(), hopTransport));
-					}
+					addServiceHops(hops, sortedServices, hopTransport);
+					context.setPath(LocatePath.SRV);
 				} else {
 					if (LOGGER.isDebugEnabled()) {
 						LOGGER.debug("No valid SRV records found for " + serviceId + ", so use default port for " + hopTransport);
@@ -436,7 +485,7 @@ public class Locator {
 					// addresses, each of which can be contacted using the transport
 					// protocol determined previously, at the default port for that
 					// transport.
-					hops.add(new UnresolvedHop(domain, getDefaultPortForTransport(hopTransport), hopTransport));
+					hops.add(new UnresolvedHop(domain, hopTransport.getDefaultPort(), hopTransport, hops.size()));
 				}
 			} else {
 				LOGGER.debug("No port was discovered during transport selection, so use default port for selected transport");
@@ -447,7 +496,7 @@ public class Locator {
 				// addresses, each of which can be contacted using the transport
 				// protocol determined previously, at the default port for that
 				// transport.
-				hops.add(new UnresolvedHop(domain, getDefaultPortForTransport(hopTransport), hopTransport));
+				hops.add(new UnresolvedHop(domain, hopTransport.getDefaultPort(), hopTransport, hops.size()));
 			}
 		}
 
@@ -461,58 +510,151 @@ public class Locator {
 		return selector.select();
 	}
 
-	private Queue<Hop> resolveHops(Queue<UnresolvedHop> hops) {
-		Queue<Hop> resolvedHops = new LinkedList<Hop>();
+	/**
+	 * Adds a hop for each of the given sorted SRV records.
+	 * <p>
+	 * Each SRV priority starts a new tier.  The size of the queue is used as the
+	 * tier number, as it is unique and increases with every hop added.
+	 */
+	private static void addServiceHops(Queue<UnresolvedHop> hops, List<SRVRecord> sortedServices, Transport hopTransport) {
+		int tier = hops.size();
+		int priority = -1;
+		for (SRVRecord service : sortedServices) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Processing SRV record: " + service);
+			}
+			if (service.getPriority() != priority) {
+				priority = service.getPriority();
+				tier = hops.size();
+			}
+			hops.add(new UnresolvedHop(service.getTarget(), service.getPort(), hopTransport, tier));
+		}
+	}
+
+	/**
+	 * Resolves the given hops in order, adding each distinct resolved hop to the
+	 * given queue.
+	 */
+	private void resolveHops(Queue<UnresolvedHop> hops, Queue<Hop> resolvedHops, LocateContext context) {
+		final List<Hop> tierHops = new ArrayList<Hop>();
+		// Every hop resolved so far, whether queued, pending in the current tier, or
+		// pending in one of the address family lists.
+		final Set<Hop> seenHops = new HashSet<Hop>();
+		int tier = -1;
 
 		for (UnresolvedHop hop : hops) {
 			if (LOGGER.isDebugEnabled()) {
 				LOGGER.debug("Resolving hop: " + hop);
 			}
+			if (hop.getTier() != tier) {
+				addTierHops(resolvedHops, tierHops);
+				tier = hop.getTier();
+			}
 
-			Queue<Hop> resolvedIpv4Hops = new LinkedList<Hop>();
-			final Set<ARecord> aRecords = resolver.lookupARecords(hop.getHost());
+			final List<Hop> resolvedIpv4Hops = new ArrayList<Hop>();
+			if (addressFamilies.contains(AddressFamily.IPV4)) {
+				final Set<ARecord> aRecords = lookupARecords(hop.getHost(), context);
 
-			for (ARecord aRecord : aRecords) {
-				if (LOGGER.isDebugEnabled()) {
-					LOGGER.debug("Processing A record: " + aRecord);
-				}
-				final String ipAddress = aRecord.getAddress().getHostAddress();
-				final Hop resolvedHop = new HopImpl(ipAddress, hop.getPort(), hop.getTransport());
-				if (resolvedHops.contains(resolvedHop) == false && resolvedIpv4Hops.contains(resolvedHop) == false) {
-					resolvedIpv4Hops.add(resolvedHop);
+				for (ARecord aRecord : aRecords) {
+					if (LOGGER.isDebugEnabled()) {
+						LOGGER.debug("Processing A record: " + aRecord);
+					}
+					final Hop resolvedHop = getResolvedHop(hop, aRecord.getAddress(), aRecord.getTTL());
+					if (seenHops.add(resolvedHop)) {
+						resolvedIpv4Hops.add(resolvedHop);
+					}
 				}
+			} else {
+				LOGGER.debug("Not resolving A records because the stack cannot use IPv4");
 			}
 
-			Queue<Hop> resolvedIpv6Hops = new LinkedList<Hop>();
-			if(!ipv4only) {
-				final Set<AAAARecord> aaaaRecords = resolver.lookupAAAARecords(hop.getHost());
+			final List<Hop> resolvedIpv6Hops = new ArrayList<Hop>();
+			if (addressFamilies.contains(AddressFamily.IPV6)) {
+				final Set<AAAARecord> aaaaRecords = lookupAAAARecords(hop.getHost(), context);
 
 				for (AAAARecord aaaaRecord : aaaaRecords) {
 					if (LOGGER.isDebugEnabled()) {
 						LOGGER.debug("Processing AAAA record: " + aaaaRecord);
 					}
-					final String ipAddress = aaaaRecord.getAddress().getHostAddress();
-					final Hop resolvedHop = new HopImpl(ipAddress, hop.getPort(), hop.getTransport());
-					if (resolvedHops.contains(resolvedHop) == false && resolvedIpv6Hops.contains(resolvedHop) == false) {
+					final Hop resolvedHop = getResolvedHop(hop, aaaaRecord.getAddress(), aaaaRecord.getTTL());
+					if (seenHops.add(resolvedHop)) {
 						resolvedIpv6Hops.add(resolvedHop);
 					}
 				}
 			} else {
-				LOGGER.debug("Not resolving AAAA records because " + JAVA_NET_PREFER_IPV_4_STACK + "=true");
+				LOGGER.debug("Not resolving AAAA records because the stack cannot use IPv6");
 			}
 
 			if(ipv6first) {
 				LOGGER.debug("Preferring AAAA records because " + JAVA_NET_PREFER_IPV_6_ADDRESSES + "=true");
-				resolvedHops.addAll(resolvedIpv6Hops);
-				resolvedHops.addAll(resolvedIpv4Hops);
+				tierHops.addAll(resolvedIpv6Hops);
+				tierHops.addAll(resolvedIpv4Hops);
 			} else {
-				resolvedHops.addAll(resolvedIpv4Hops);
-				resolvedHops.addAll(resolvedIpv6Hops);
+				tierHops.addAll(resolvedIpv4Hops);
+				tierHops.addAll(resolvedIpv6Hops);
 			}
 
 		}
+		addTierHops(resolvedHops, tierHops);
+	}
+
+	/**
+	 * Returns the hop for the given address of an unresolved hop, from the pool
+	 * unless its transport is not known.
+	 */
+	private static Hop getResolvedHop(UnresolvedHop hop, InetAddress address, long ttl) {
+		if (hop.getTransport() == null) {
+			return new ResolvedHop(address, hop.getPort(), hop.getTransportName(), ttl, hop.getHost());
+		}
+		return HOP_POOL.getHop(address, hop.getPort(), hop.getTransport(), ttl, hop.getHost());
+	}
+
+	/**
+	 * Looks up the A records for the given host, at most once per call to
+	 * {@link #locate(SipURI)}, as SRV record sets for different transports
+	 * often name the same targets.
+	 */
+	private Set<ARecord> lookupARecords(Name host, LocateContext context) {
+		Set<ARecord> records = context.aRecords.get(host);
+		if (records == null) {
+			records = resolver.lookupARecords(host);
+			context.aRecords.put(host, records);
+			context.addRecords(records);
+		} else if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Reusing A records for " + host);
+		}
+		return records;
+	}
+
+	/**
+	 * Looks up the AAAA records for the given host, at most once per call to
+	 * {@link #locate(SipURI)}.
+	 */
+	private Set<AAAARecord> lookupAAAARecords(Name host, LocateContext context) {
+		Set<AAAARecord> records = context.aaaaRecords.get(host);
+		if (records == null) {
+			records = resolver.lookupAAAARecords(host);
+			context.aaaaRecords.put(host, records);
+			context.addRecords(records);
+		} else if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Reusing AAAA records for " + host);
+		}
+		return records;
+	}
 
-		return resolvedHops;
+	/**
+	 * Sorts the hops of a single tier, if a hop sorter has been provided, and
+	 * moves them to the resolved hops.
+	 */
+	private void addTierHops(Queue<Hop> resolvedHops, List<Hop> tierHops) {
+		if (hopSorter != null && tierHops.size() > 1) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Sorting " + tierHops + " using " + hopSorter.getClass());
+			}
+			hopSorter.sort(tierHops);
+		}
+		resolvedHops.addAll(tierHops);
+		tierHops.clear();
 	}
 
 	private List<SRVRecord> sortServiceRecords(List<SRVRecord> services) {
@@ -523,7 +665,6 @@ public class Locator {
 	}
 
 	private void discardInvalidPointers(List<NAPTRRecord> pointers, boolean isSecure) {
-		final Set<String> validServiceFields = new HashSet<String>();
 		// 4.1 Para 5
 		//
 		// The services relevant for the task of transport protocol selection
@@ -532,53 +673,30 @@ public class Locator {
 		// by the domain.  This specification defines D2U for UDP, D2T for TCP,
 		// and D2S for SCTP.  We also establish an IANA registry for NAPTR service
 		// name to transport protocol mappings.
-		validServiceFields.addAll(serviceTransportMap.keySet());
-
+		//
 		// 4.1 Para 6
 		//
 		// First, a client resolving a SIPS URI MUST discard any services that
 		// do not contain "SIPS" as the protocol in the service field.
-		if (isSecure) {
-			validServiceFields.remove("SIP+D2T");
-			validServiceFields.remove("SIP+D2U");
-			validServiceFields.remove("SIP+D2S");
-		}
-
-		// 4.1 Para 6
 		//
 		// A client resolving a SIP URI SHOULD retain records with "SIPS"
 		// as the protocol, if the client supports TLS.
-		if (prefTransports.contains(TLS) == false) {
-			validServiceFields.remove("SIPS+D2T");
-		}
-		if (prefTransports.contains("TLS-SCTP") == false) {
-			validServiceFields.remove("SIPS+D2S");
-		}
-
-		// 4.1 Para 6
 		//
 		// Second, a client MUST discard any service fields that identify
 		// a resolution service whose value is not "D2X", for values of X that
 		// indicate transport protocols supported by the client.
-		if (prefTransports.contains(TCP) == false) {
-			validServiceFields.remove("SIP+D2T");
-		}
-		if (prefTransports.contains(UDP) == false) {
-			validServiceFields.remove("SIP+D2U");
-		}
-		if (prefTransports.contains(SCTP) == false) {
-			validServiceFields.remove("SIP+D2S");
-		}
+		final Set<Transport> validServices = isSecure ? filterSecure(supportedTransports) : supportedTransports;
 
 		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("Supported NAPTR services: " + validServiceFields);
+			LOGGER.debug("Supported NAPTR services: " + validServices);
 		}
 
 		// Discard
 		final Iterator<NAPTRRecord> iter = pointers.iterator();
 		while (iter.hasNext()) {
 			final NAPTRRecord pointer = iter.next();
-			if (validServiceFields.contains(pointer.getService()) == false) {
+			final Transport service = Transport.fromService(pointer.getService());
+			if (service == null || validServices.contains(service) == false) {
 				if (LOGGER.isDebugEnabled()) {
 					LOGGER.debug("Removing unsupported NAPTR record: " + pointer);
 				}
@@ -592,6 +710,16 @@ public class Locator {
 		}
 	}
 
+	private static Set<Transport> filterSecure(Set<Transport> transports) {
+		final Set<Transport> secureTransports = EnumSet.noneOf(Transport.class);
+		for (Transport transport : transports) {
+			if (transport.isSecure()) {
+				secureTransports.add(transport);
+			}
+		}
+		return secureTransports;
+	}
+
 	/**
 	 * Generates a queue of {@link Hop} instances which should be used to route
 	 * the message with the given URI.
@@ -601,35 +729,74 @@ public class Locator {
 	 * @throws IOException if any DNS error occurs.
 	 */
 	public Queue<Hop> locate(SipURI uri) throws IOException {
+		return locate(uri, new LocateContext());
+	}
+
+	/**
+	 * Generates the hops which should be used to route the message with the
+	 * given URI, along with the time until which they may be reused.
+	 *
+	 * @param uri the URI for which to determine a hop queue.
+	 * @return the hops and their expiry time.
+	 * @throws IOException if any DNS error occurs.
+	 * @see LocateResult
+	 */
+	public LocateResult resolve(SipURI uri) throws IOException {
+		final long now = System.currentTimeMillis();
+		final LocateContext context = new LocateContext();
+		final Queue<Hop> hops = locate(uri, context);
+
+		return new LocateResult(hops, context.getExpires(now));
+	}
+
+	private Queue<Hop> locate(SipURI uri, LocateContext context) throws IOException {
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("locate(" + uri + ")");
 		}
+		final long start = listener == null ? 0L : System.nanoTime();
 		final String target = getTarget(uri);
 
-		final Queue<Hop> hops = new LinkedList<Hop>();
-		if (isNumeric(target)) {
-			Hop hop = locateNumeric(uri);
-			if (hop != null) {
-				hops.add(hop);
+		final Queue<Hop> hops = new DistinctHopQueue();
+		try {
+			if (isNumeric(target)) {
+				context.setNumeric();
+				Hop hop = locateNumeric(uri);
+				if (hop != null) {
+					hops.add(hop);
+				}
+			} else {
+				resolveHops(locateNonNumeric(uri, context), hops, context);
 			}
-		} else {
-			hops.addAll(resolveHops(locateNonNumeric(uri)));
+		} catch (IOException e) {
+			fireLocateFailed(uri, context, e, start);
+			throw e;
+		} catch (RuntimeException e) {
+			fireLocateFailed(uri, context, e, start);
+			throw e;
 		}
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("locate(" + uri + "): " + hops);
 		}
+		if (listener != null) {
+			listener.locateCompleted(uri, context.path, hops.size(), System.nanoTime() - start);
+		}
 
 		return hops;
 	}
 
-	private List<String> filterTransports(boolean isSecure) {
+	private void fireLocateFailed(SipURI uri, LocateContext context, Exception cause, long start) {
+		if (listener != null) {
+			listener.locateFailed(uri, context.path, cause, System.nanoTime() - start);
+		}
+	}
+
+	private List<Transport> filterTransports(boolean isSecure) {
 		if (isSecure) {
-			final List<String> filteredTransports = new ArrayList<String>(prefTransports);
-			Iterator<String> iter = filteredTransports.iterator();
-			while (iter.hasNext()) {
+			final List<Transport> filteredTransports = new ArrayList<Transport>(prefTransports.size());
+			for (Transport transport : prefTransports) {
 				// TLS or SCTP-TLS
-				if (iter.next().startsWith(TLS) == false) {
-					iter.remove();
+				if (transport.isSecure()) {
+					filteredTransports.add(transport);
 				}
 			}
 			return filteredTransports;
@@ -638,6 +805,41 @@ public class Locator {
 		}
 	}
 
+	/**
+	 * Returns the transport named by the transport parameter, upgraded if the
+	 * URI is secure.
+	 *
+	 * @return the transport, or null if the transport is not known or cannot be secured.
+	 */
+	private static Transport selectTransport(String transportParam, boolean isSecure) {
+		final Transport transport = Transport.fromString(transportParam);
+		if (transport == null) {
+			return null;
+		}
+		if (isSecure) {
+			try {
+				return transport.upgrade();
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+		return transport;
+	}
+
+	/**
+	 * Checks that a transport which is not known can be used with the given port.
+	 *
+	 * @throws IllegalArgumentException if there is no port.
+	 */
+	private static void checkOtherTransport(String transportParam, int port) {
+		if (port == -1) {
+			throw new IllegalArgumentException("Unknown transport: " + transportParam);
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Passing unknown transport " + transportParam + " through");
+		}
+	}
+
 	/**
 	 * See RFC 2782
 	 *
@@ -690,4 +892,42 @@ public class Locator {
 
 		return pointer.getRegexp().isEmpty() && pointer.getFlags().equalsIgnoreCase("s");
 	}
+
+	/**
+	 * State kept for the duration of a single call to {@link Locator#locate(SipURI)}.
+	 */
+	private static final class LocateContext {
+		private final Map<Name, Set<ARecord>> aRecords = new HashMap<Name, Set<ARecord>>();
+		private final Map<Name, Set<AAAARecord>> aaaaRecords = new HashMap<Name, Set<AAAARecord>>();
+		private boolean numeric;
+		private long ttl = Long.MAX_VALUE;
+		private LocatePath path;
+
+		private void setNumeric() {
+			numeric = true;
+			path = LocatePath.NUMERIC;
+		}
+
+		private void setPath(LocatePath path) {
+			this.path = path;
+		}
+
+		private void addRecords(Collection<? extends Record> records) {
+			for (Record record : records) {
+				ttl = Math.min(ttl, record.getTTL());
+			}
+		}
+
+		private long getExpires(long now) {
+			if (numeric) {
+				return LocateResult.NEVER;
+			}
+			if (ttl == Long.MAX_VALUE) {
+				// No records were used, so there is nothing to say how long the
+				// result remains valid.
+				return now;
+			}
+			return now + ttl * 1000L;
+		}
+	}
 }
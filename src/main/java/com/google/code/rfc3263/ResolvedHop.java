@@ -0,0 +1,200 @@
+package com.google.code.rfc3263;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+import javax.sip.address.Hop;
+
+import net.jcip.annotations.Immutable;
+
+import org.xbill.DNS.Name;
+
+import com.google.code.rfc3263.util.AddressLiteralParser;
+import com.google.code.rfc3263.util.Transport;
+
+/**
+ * This is a hop which was resolved from an A or AAAA record.
+ * <p>
+ * As well as the strings required by the {@link Hop} interface, a resolved hop
+ * carries the address from the record, the record's TTL and the name the
+ * record was found for, so a SIP stack can open a socket without parsing the
+ * host string back into an address (see {@link #toInetAddress(Hop)}), and hop
+ * sorters can tell which hops belong to the same SRV target.
+ * <p>
+ * The hash code and string form of a resolved hop are computed once, as the
+ * locator shares resolved hops between requests.
+ */
+@Immutable
+public final class ResolvedHop extends HopImpl {
+	private final InetAddress address;
+	private final byte[] addressBytes;
+	private final Transport transportType;
+	private final long ttl;
+	private final Name target;
+	private final int hashCode;
+	private final String string;
+
+	/**
+	 * Creates a new resolved hop.
+	 *
+	 * @param address the resolved address.
+	 * @param port the port.
+	 * @param transport the transport.
+	 * @param ttl the TTL of the record the address was taken from, in seconds.
+	 * @param target the name the address was resolved from.
+	 */
+	public ResolvedHop(InetAddress address, int port, Transport transport, long ttl, Name target) {
+		this(address, address.getAddress(), port, transport, ttl, target);
+	}
+
+	ResolvedHop(InetAddress address, byte[] addressBytes, int port, Transport transport, long ttl, Name target) {
+		this(address, addressBytes, port, transport, transport.toString(), ttl, target);
+	}
+
+	/**
+	 * Creates a new resolved hop for a transport which is not a {@link Transport}, such as WS.
+	 */
+	ResolvedHop(InetAddress address, int port, String transport, long ttl, Name target) {
+		this(address, address.getAddress(), port, null, transport, ttl, target);
+	}
+
+	private ResolvedHop(InetAddress address, byte[] addressBytes, int port, Transport transportType, String transport, long ttl, Name target) {
+		super(address.getHostAddress(), port, transport);
+		this.address = address;
+		this.addressBytes = addressBytes;
+		this.transportType = transportType;
+		this.ttl = ttl;
+		this.target = target;
+		this.hashCode = super.hashCode();
+		this.string = super.toString();
+	}
+
+	private ResolvedHop(ResolvedHop hop, long ttl, Name target) {
+		super(hop.getHost(), hop.getPort(), hop.getTransport());
+		this.address = hop.address;
+		this.addressBytes = hop.addressBytes;
+		this.transportType = hop.transportType;
+		this.ttl = ttl;
+		this.target = target;
+		this.hashCode = hop.hashCode;
+		this.string = hop.string;
+	}
+
+	/**
+	 * Returns a hop for the same address, port and transport as this hop, but
+	 * resolved with the given TTL and target, sharing the strings of this hop.
+	 */
+	ResolvedHop withTtlAndTarget(long otherTtl, Name otherTarget) {
+		return new ResolvedHop(this, otherTtl, otherTarget);
+	}
+
+	/**
+	 * Returns the resolved address.
+	 *
+	 * @return the resolved address.
+	 */
+	public InetAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * Returns the TTL of the record this hop was resolved from, in seconds.
+	 * <p>
+	 * As the locator shares resolved hops while the TTL of a record counts
+	 * down, the TTL of a hop returned by the locator may be slightly more than
+	 * the TTL left in the record; {@link Locator#resolve(javax.sip.address.SipURI)}
+	 * gives the exact expiry of a whole result.
+	 *
+	 * @return the TTL.
+	 */
+	public long getTTL() {
+		return ttl;
+	}
+
+	/**
+	 * Returns the transport as a {@link Transport}.
+	 *
+	 * @return the transport, or null if the transport is not known.
+	 */
+	public Transport getTransportType() {
+		return transportType;
+	}
+
+	/**
+	 * Returns the name this hop was resolved from: an SRV target, or the domain
+	 * of the URI if no SRV records were used.
+	 *
+	 * @return the target name.
+	 */
+	public Name getTarget() {
+		return target;
+	}
+
+	boolean matches(byte[] otherAddress, int otherPort, Transport otherTransport) {
+		return getPort() == otherPort && transportType == otherTransport && Arrays.equals(addressBytes, otherAddress);
+	}
+
+	boolean hasTarget(Name otherTarget) {
+		return target == otherTarget || target.equals(otherTarget);
+	}
+
+	@Override
+	public String toString() {
+		return string;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The TTL and target are not significant: a resolved hop is equal to any hop
+	 * with the same host, port and transport.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj instanceof ResolvedHop) {
+			final ResolvedHop other = (ResolvedHop) obj;
+			return hashCode == other.hashCode && getPort() == other.getPort() && transportType == other.transportType
+				&& (transportType != null || getTransport().equals(other.getTransport())) && Arrays.equals(addressBytes, other.addressBytes);
+		}
+		return super.equals(obj);
+	}
+
+	/**
+	 * Returns the address for the given hop, for use by a SIP stack.
+	 * <p>
+	 * The address of a {@link ResolvedHop} is returned as is.  For any other hop,
+	 * an IPv4 or IPv6 literal host is converted without a lookup, and any other
+	 * host is looked up by {@link InetAddress#getByName(String)}.
+	 *
+	 * @param hop the hop.
+	 * @return the address of the hop.
+	 * @throws UnknownHostException if the host cannot be resolved.
+	 */
+	public static InetAddress toInetAddress(Hop hop) throws UnknownHostException {
+		if (hop instanceof ResolvedHop) {
+			return ((ResolvedHop) hop).getAddress();
+		}
+		final String host = hop.getHost();
+		if (AddressLiteralParser.isIPv4Address(host)) {
+			final byte[] bytes = new byte[AddressLiteralParser.IPV4_LENGTH];
+			if (AddressLiteralParser.parseIPv4Address(host, bytes)) {
+				return InetAddress.getByAddress(bytes);
+			}
+		} else if (host.indexOf(':') != -1) {
+			final byte[] bytes = new byte[AddressLiteralParser.IPV6_LENGTH];
+			if (AddressLiteralParser.parseIPv6Reference("[" + host + "]", bytes)) {
+				return InetAddress.getByAddress(bytes);
+			}
+		}
+		return InetAddress.getByName(host);
+	}
+}
@@ -0,0 +1,144 @@
+package com.google.code.rfc3263;
+
+import java.util.Map;
+
+/**
+ * This interface is the JMX management interface of a {@link DefaultRouter}.
+ * <p>
+ * It shows the configuration of the router, the state of its resolver cache
+ * and the round trip times of the hops it routes to, and offers operations to
+ * flush and pre-warm the cache on a live node.
+ * <p>
+ * The cache attributes and operations only apply to a router created with a
+ * {@link com.google.code.rfc3263.dns.CachingResolver}.  The resolver of a
+ * router created without one caches through dnsjava, which cannot be
+ * inspected, so its cache attributes always read zero.
+ *
+ * @see RouterManagement
+ */
+public interface RouterMXBean {
+	/**
+	 * Returns the transports supported by the stack, in order of preference.
+	 *
+	 * @return the transports.
+	 */
+	String[] getTransports();
+
+	/**
+	 * Returns the address families supported by the stack.
+	 *
+	 * @return the address families.
+	 */
+	String[] getAddressFamilies();
+
+	/**
+	 * Returns the number of answers in the resolver cache.
+	 *
+	 * @return the number of cached answers.
+	 */
+	int getCacheSize();
+
+	/**
+	 * Returns the number of lookups answered with cached records.
+	 *
+	 * @return the number of hits.
+	 */
+	long getCacheHits();
+
+	/**
+	 * Returns the number of lookups answered with a cached empty answer.
+	 *
+	 * @return the number of negative hits.
+	 */
+	long getCacheNegativeHits();
+
+	/**
+	 * Returns the number of lookups which were not answered from the cache.
+	 *
+	 * @return the number of misses.
+	 */
+	long getCacheMisses();
+
+	/**
+	 * Returns the fraction of lookups answered with cached records.
+	 *
+	 * @return the hit rate, between 0 and 1.
+	 */
+	double getCacheHitRate();
+
+	/**
+	 * Returns the fraction of lookups answered with a cached empty answer.
+	 *
+	 * @return the negative hit rate, between 0 and 1.
+	 */
+	double getCacheNegativeHitRate();
+
+	/**
+	 * Returns the fraction of lookups which were not answered from the cache.
+	 *
+	 * @return the miss rate, between 0 and 1.
+	 */
+	double getCacheMissRate();
+
+	/**
+	 * Returns the number of answers evicted from the full cache.
+	 *
+	 * @return the number of evictions.
+	 */
+	long getCacheEvictions();
+
+	/**
+	 * Returns the number of DNS queries currently in flight.
+	 *
+	 * @return the number of queries in flight.
+	 */
+	int getInFlightQueries();
+
+	/**
+	 * Returns the smoothed round trip time of each hop, formatted in
+	 * milliseconds and keyed by hop.
+	 *
+	 * @return the round trip times by hop.
+	 */
+	Map<String, String> getHopHealth();
+
+	/**
+	 * Removes the answers cached for the given domain.
+	 *
+	 * @param domain the domain.
+	 * @return the number of answers removed.
+	 */
+	int flushDomain(String domain);
+
+	/**
+	 * Removes the answers cached for the given domain and every domain beneath it.
+	 *
+	 * @param suffix the domain.
+	 * @return the number of answers removed.
+	 */
+	int flushSuffix(String suffix);
+
+	/**
+	 * Removes all answers from the resolver cache.
+	 */
+	void flushAll();
+
+	/**
+	 * Resets the cache hit, miss and eviction counters.
+	 */
+	void resetCacheStatistics();
+
+	/**
+	 * Discards the recorded round trip times, so all hops are used in DNS
+	 * order again.
+	 */
+	void resetHopHealth();
+
+	/**
+	 * Locates each of the given SIP or SIPS URIs, filling the resolver cache.
+	 *
+	 * @param uris the URIs to locate.
+	 * @return the number of URIs which were located to at least one hop.
+	 */
+	int prewarm(String[] uris);
+}
@@ -0,0 +1,330 @@
+package com.google.code.rfc3263;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.text.ParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sip.PeerUnavailableException;
+import javax.sip.SipFactory;
+import javax.sip.address.AddressFactory;
+import javax.sip.address.Hop;
+import javax.sip.address.SipURI;
+import javax.sip.address.URI;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.apache.log4j.Logger;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.TextParseException;
+
+import com.google.code.rfc3263.dns.CachingResolver;
+import com.google.code.rfc3263.sorter.CompositeHopSorter;
+import com.google.code.rfc3263.sorter.HopSorter;
+import com.google.code.rfc3263.sorter.RoundTripTimeHopSorter;
+import com.google.code.rfc3263.util.AddressFamily;
+
+/**
+ * This class exposes a {@link DefaultRouter} over JMX.
+ * <p>
+ * The cache attributes and operations apply to the {@link CachingResolver}
+ * given to the constructor, which should be the resolver the router was
+ * created with, or the one it wraps; without a cache, they report zero and do
+ * nothing.  A router created without a resolver uses the dnsjava cache of its
+ * {@link com.google.code.rfc3263.dns.DefaultResolver}, which cannot be
+ * inspected, so its cache attributes always read zero.
+ * <p>
+ * Hop health is read from the {@link RoundTripTimeHopSorter} returned by
+ * {@link DefaultRouter#getHopSorter()}, either directly or as part of a
+ * {@link CompositeHopSorter}.  The sorter is looked up once, when this
+ * instance is created, so the router should return the same round trip time
+ * sorter each time.
+ * <p>
+ * Only the platform MBean server is used, so no JMX library is required:
+ * <pre>
+ * RouterManagement management = new RouterManagement(router, cache);
+ * management.register("edge");
+ * </pre>
+ */
+@ThreadSafe
+public class RouterManagement implements RouterMXBean {
+	/**
+	 * The domain of the object names this class registers under.
+	 */
+	public static final String DOMAIN = "com.google.code.rfc3263";
+
+	private static final Logger LOGGER = Logger.getLogger(RouterManagement.class);
+
+	private final DefaultRouter router;
+	private final CachingResolver cache;
+	private final RoundTripTimeHopSorter rttSorter;
+	@GuardedBy("this")
+	private ObjectName objectName;
+
+	/**
+	 * Creates a new instance of this class.
+	 *
+	 * @param router the router to manage.
+	 * @param cache the cache used by the router's resolver, or null.
+	 */
+	public RouterManagement(DefaultRouter router, CachingResolver cache) {
+		this.router = router;
+		this.cache = cache;
+		this.rttSorter = findRoundTripTimeSorter(router.getHopSorter());
+	}
+
+	/**
+	 * Registers this instance with the platform MBean server, under the name
+	 * <code>com.google.code.rfc3263:type=Router,name=</code><i>name</i>.
+	 *
+	 * @param name the name distinguishing this router from others in the same JVM.
+	 * @return the object name this instance was registered under.
+	 * @throws JMException if this instance cannot be registered.
+	 */
+	public synchronized ObjectName register(String name) throws JMException {
+		if (objectName != null) {
+			throw new IllegalStateException("Already registered as " + objectName);
+		}
+		final ObjectName newName = new ObjectName(DOMAIN + ":type=Router,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+		objectName = newName;
+		return objectName;
+	}
+
+	/**
+	 * Unregisters this instance from the platform MBean server, if it is registered.
+	 *
+	 * @throws JMException if this instance cannot be unregistered.
+	 */
+	public synchronized void unregister() throws JMException {
+		if (objectName != null) {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			objectName = null;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String[] getTransports() {
+		final List<String> transports = router.getSupportedTransports();
+		return transports.toArray(new String[transports.size()]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String[] getAddressFamilies() {
+		final Set<AddressFamily> families = router.getSupportedAddressFamilies();
+		final String[] names = new String[families.size()];
+		int i = 0;
+		for (AddressFamily family : families) {
+			names[i++] = family.name();
+		}
+		return names;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getCacheSize() {
+		return cache == null ? 0 : cache.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCacheHits() {
+		return cache == null ? 0 : cache.getHits();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCacheNegativeHits() {
+		return cache == null ? 0 : cache.getNegativeHits();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCacheMisses() {
+		return cache == null ? 0 : cache.getMisses();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getCacheHitRate() {
+		return rate(getCacheHits());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getCacheNegativeHitRate() {
+		return rate(getCacheNegativeHits());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getCacheMissRate() {
+		return rate(getCacheMisses());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCacheEvictions() {
+		return cache == null ? 0 : cache.getEvictions();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getInFlightQueries() {
+		return cache == null ? 0 : cache.getInFlight();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Map<String, String> getHopHealth() {
+		final Map<String, String> health = new TreeMap<String, String>();
+		if (rttSorter != null) {
+			for (Map.Entry<Hop, Double> entry : rttSorter.getRtts().entrySet()) {
+				health.put(entry.getKey().toString(), String.format(Locale.ROOT, "%.3f ms", entry.getValue() / 1000000));
+			}
+		}
+		return health;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int flushDomain(String domain) {
+		if (cache == null) {
+			return 0;
+		}
+		final int removed = cache.flush(toName(domain));
+		LOGGER.info("Flushed " + removed + " cached answers for " + domain);
+		return removed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int flushSuffix(String suffix) {
+		if (cache == null) {
+			return 0;
+		}
+		final int removed = cache.flushSuffix(toName(suffix));
+		LOGGER.info("Flushed " + removed + " cached answers at or beneath " + suffix);
+		return removed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void flushAll() {
+		if (cache != null) {
+			cache.clear();
+			LOGGER.info("Flushed all cached answers");
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void resetCacheStatistics() {
+		if (cache != null) {
+			cache.resetStatistics();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void resetHopHealth() {
+		if (rttSorter != null) {
+			rttSorter.clear();
+			LOGGER.info("Discarded all recorded round trip times");
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * URIs which cannot be parsed or located are logged and skipped.
+	 */
+	public int prewarm(String[] uris) {
+		final AddressFactory addressFactory;
+		try {
+			addressFactory = SipFactory.getInstance().createAddressFactory();
+		} catch (PeerUnavailableException e) {
+			throw new IllegalStateException(e);
+		}
+		final Locator locator = router.createLocator();
+		int located = 0;
+		for (String uri : uris) {
+			try {
+				final URI parsed = addressFactory.createURI(uri);
+				if (!parsed.isSipURI()) {
+					LOGGER.warn("Not pre-warming " + uri + ": not a SIP or SIPS URI");
+					continue;
+				}
+				if (!locator.locate((SipURI) parsed).isEmpty()) {
+					located++;
+				}
+			} catch (ParseException e) {
+				LOGGER.warn("Not pre-warming " + uri + ": " + e.getMessage());
+			} catch (IOException e) {
+				LOGGER.warn("Failed to pre-warm " + uri, e);
+			} catch (IllegalArgumentException e) {
+				LOGGER.warn("Failed to pre-warm " + uri, e);
+			}
+		}
+		LOGGER.info("Pre-warmed " + located + " of " + uris.length + " URIs");
+		return located;
+	}
+
+	private double rate(long count) {
+		final long lookups = getCacheHits() + getCacheNegativeHits() + getCacheMisses();
+		return lookups == 0 ? 0 : (double) count / lookups;
+	}
+
+	private static Name toName(String domain) {
+		try {
+			return Name.fromString(domain, Name.root);
+		} catch (TextParseException e) {
+			throw new IllegalArgumentException("Invalid domain: " + domain, e);
+		}
+	}
+
+	private static RoundTripTimeHopSorter findRoundTripTimeSorter(HopSorter sorter) {
+		if (sorter instanceof RoundTripTimeHopSorter) {
+			return (RoundTripTimeHopSorter) sorter;
+		}
+		if (sorter instanceof CompositeHopSorter) {
+			for (HopSorter child : ((CompositeHopSorter) sorter).getSorters()) {
+				final RoundTripTimeHopSorter found = findRoundTripTimeSorter(child);
+				if (found != null) {
+					return found;
+				}
+			}
+		}
+		return null;
+	}
+}
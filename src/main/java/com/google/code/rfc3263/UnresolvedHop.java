@@ -4,19 +4,40 @@ import net.jcip.annotations.Immutable;
 
 import org.xbill.DNS.Name;
 
+import com.google.code.rfc3263.util.Transport;
+
 /**
  * This is an unresolved hop which carries a dnsjava Name for its host.
+ * <p>
+ * Each hop belongs to a tier.  Hops in the same tier came from the same SRV
+ * priority of the same SRV record set, and so may be reordered relative to
+ * each other without breaking the order mandated by RFC 2782 and RFC 3263.
  */
 @Immutable
 class UnresolvedHop {
 	private final Name host;
 	private final int port;
-	private final String transport;
+	private final Transport transport;
+	private final String transportName;
+	private final int tier;
 	
-	public UnresolvedHop(Name host, int port, String transport) {
+	public UnresolvedHop(Name host, int port, Transport transport, int tier) {
 		this.host = host;
 		this.port = port;
 		this.transport= transport;
+		this.transportName = transport.toString();
+		this.tier = tier;
+	}
+
+	/**
+	 * Creates a new hop for a transport which is not a {@link Transport}, such as WS.
+	 */
+	public UnresolvedHop(Name host, int port, String transport, int tier) {
+		this.host = host;
+		this.port = port;
+		this.transport = null;
+		this.transportName = transport.toUpperCase();
+		this.tier = tier;
 	}
 	
 	/**
@@ -34,15 +55,35 @@ class UnresolvedHop {
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Returns the transport.
+	 *
+	 * @return the transport, or null if the transport is not known.
 	 */
-	public String getTransport() {
+	public Transport getTransport() {
 		return transport;
 	}
+
+	/**
+	 * Returns the name of the transport, as used by JAIN-SIP.
+	 *
+	 * @return the transport name.
+	 */
+	public String getTransportName() {
+		return transportName;
+	}
+
+	/**
+	 * Returns the tier to which this hop belongs.
+	 * 
+	 * @return the tier.
+	 */
+	public int getTier() {
+		return tier;
+	}
 	
 	@Override
 	public String toString() {
-		return host + ":" + port + "/" + transport;
+		return host + ":" + port + "/" + transportName;
 	}
 
 	@Override
@@ -51,8 +92,8 @@ class UnresolvedHop {
 		int result = 1;
 		result = prime * result + ((host == null) ? 0 : host.hashCode());
 		result = prime * result + port;
-		result = prime * result
-				+ ((transport == null) ? 0 : transport.hashCode());
+		result = prime * result + transportName.hashCode();
+		result = prime * result + tier;
 		return result;
 	}
 
@@ -72,10 +113,9 @@ class UnresolvedHop {
 			return false;
 		if (port != other.port)
 			return false;
-		if (transport == null) {
-			if (other.transport != null)
-				return false;
-		} else if (!transport.equals(other.transport))
+		if (!transportName.equals(other.transportName))
+			return false;
+		if (tier != other.tier)
 			return false;
 		return true;
 	}
@@ -0,0 +1,186 @@
+package com.google.code.rfc3263.dns;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Collection;
+
+import net.jcip.annotations.Immutable;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+
+/**
+ * This class reads and writes the binary answer log shared by
+ * {@link RecordingResolver} and {@link ReplayResolver}.
+ * <p>
+ * A log is a header followed by one entry per lookup.  Integers are written
+ * as unsigned base-128 varints, and names in uncompressed wire format preceded
+ * by their length.
+ * <pre>
+ * header = magic:u32 version:u8
+ * entry  = type:varint name latency-nanos:varint count:varint record*
+ * record = flags:u8 [owner] class:varint ttl:varint rdata-length:varint rdata
+ * </pre>
+ * The owner is only written when it differs from the queried name, as for an
+ * answer reached through a CNAME; bit 0 of the flags says whether it is
+ * present.  Record data is in canonical form, so names within it are lower
+ * case.
+ */
+final class AnswerLog {
+	private static final int MAGIC = 0x33323633;
+	private static final int VERSION = 1;
+	private static final int FLAG_OWNER = 1;
+
+	private AnswerLog() {
+	}
+
+	static void writeHeader(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+	}
+
+	static void readHeader(DataInput in) throws IOException {
+		final int magic = in.readInt();
+		if (magic != MAGIC) {
+			throw new IOException("Not an answer log: bad magic " + Integer.toHexString(magic));
+		}
+		final int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported answer log version: " + version);
+		}
+	}
+
+	static void writeAnswer(DataOutput out, Answer answer) throws IOException {
+		writeVarLong(out, answer.getType());
+		writeName(out, answer.getName());
+		writeVarLong(out, answer.getLatencyNanos());
+		final Record[] records = answer.getRecords();
+		writeVarLong(out, records.length);
+		for (Record record : records) {
+			if (record.getName().equals(answer.getName())) {
+				out.writeByte(0);
+			} else {
+				out.writeByte(FLAG_OWNER);
+				writeName(out, record.getName());
+			}
+			writeVarLong(out, record.getDClass());
+			writeVarLong(out, record.getTTL());
+			writeBytes(out, record.rdataToWireCanonical());
+		}
+	}
+
+	/**
+	 * Reads the next answer, or returns <code>null</code> at the end of the log.
+	 */
+	static Answer readAnswer(DataInput in) throws IOException {
+		final int type;
+		try {
+			type = in.readUnsignedByte();
+		} catch (EOFException e) {
+			return null;
+		}
+		// Every type the locator asks for fits in a single varint byte.
+		if ((type & 0x80) != 0) {
+			throw new IOException("Unsupported record type in answer log");
+		}
+		final Name name = readName(in);
+		final long latencyNanos = readVarLong(in);
+		final Record[] records = new Record[readLength(in)];
+		for (int i = 0; i < records.length; i++) {
+			final int flags = in.readUnsignedByte();
+			final Name owner = (flags & FLAG_OWNER) == 0 ? name : readName(in);
+			final int dclass = (int) readVarLong(in);
+			final long ttl = readVarLong(in);
+			final byte[] rdata = new byte[readLength(in)];
+			in.readFully(rdata);
+			records[i] = Record.newRecord(owner, type, dclass, ttl, rdata);
+			if (records[i] == null) {
+				throw new IOException("Malformed record for " + owner + " in answer log");
+			}
+		}
+		return new Answer(type, name, latencyNanos, records);
+	}
+
+	private static void writeName(DataOutput out, Name name) throws IOException {
+		writeBytes(out, name.toWire());
+	}
+
+	private static Name readName(DataInput in) throws IOException {
+		final byte[] bytes = new byte[readLength(in)];
+		in.readFully(bytes);
+		return new Name(bytes);
+	}
+
+	private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+		writeVarLong(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static int readLength(DataInput in) throws IOException {
+		final long length = readVarLong(in);
+		if (length > 0xFFFF) {
+			throw new IOException("Length out of range in answer log: " + length);
+		}
+		return (int) length;
+	}
+
+	private static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint in answer log");
+	}
+
+	/**
+	 * This class is a single recorded lookup.
+	 */
+	@Immutable
+	static final class Answer {
+		private final int type;
+		private final Name name;
+		private final long latencyNanos;
+		private final Record[] records;
+
+		Answer(int type, Name name, long latencyNanos, Collection<? extends Record> records) {
+			this(type, name, latencyNanos, records.toArray(new Record[records.size()]));
+		}
+
+		private Answer(int type, Name name, long latencyNanos, Record[] records) {
+			this.type = type;
+			this.name = name;
+			this.latencyNanos = latencyNanos;
+			this.records = records;
+		}
+
+		int getType() {
+			return type;
+		}
+
+		Name getName() {
+			return name;
+		}
+
+		long getLatencyNanos() {
+			return latencyNanos;
+		}
+
+		Record[] getRecords() {
+			return records;
+		}
+	}
+}
@@ -0,0 +1,443 @@
+package com.google.code.rfc3263.dns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.Type;
+
+/**
+ * This class is a resolver which caches the answers of another resolver.
+ * <p>
+ * An answer is cached for the lowest TTL of its records, and an empty answer
+ * for a fixed negative TTL.  Cached records are returned with the TTL they
+ * have left, so callers holding on to them expire them on time; the records
+ * are rebuilt at most once per second.  The cache is
+ * bounded: when it is full, an arbitrary entry is evicted to make room for a
+ * new one.  Concurrent misses for the same query are all passed on to the
+ * underlying resolver.
+ * <p>
+ * If the underlying resolver is a {@link ReportingResolver}, such as a
+ * {@link DefaultResolver} or a {@link MetricsResolver} wrapping one, an empty
+ * answer is not cached when it reports a timeout or another failure, so that
+ * the lookup is retried next time.  Empty answers from any other resolver, or
+ * without a known outcome, are cached.
+ * <p>
+ * Unlike the dnsjava cache used by {@link DefaultResolver}, this cache can be
+ * inspected and flushed by domain, so it is meant to be used in front of a
+ * <code>DefaultResolver</code> created without a cache.
+ */
+@ThreadSafe
+public class CachingResolver implements Resolver {
+	/**
+	 * The default maximum number of cached answers.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+	/**
+	 * The default negative TTL, in seconds.
+	 */
+	public static final long DEFAULT_NEGATIVE_TTL = 60;
+
+	private static final Record[] NO_RECORDS = new Record[0];
+
+	private final Resolver resolver;
+	private final ReportingResolver reportingResolver;
+	private final int maxSize;
+	private final long negativeTtlNanos;
+	private final ConcurrentMap<Query, Entry> entries = new ConcurrentHashMap<Query, Entry>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong negativeHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	/**
+	 * Creates a new resolver holding up to {@value #DEFAULT_MAX_SIZE} answers,
+	 * with a negative TTL of {@value #DEFAULT_NEGATIVE_TTL} seconds.
+	 *
+	 * @param resolver the resolver to cache the answers of.
+	 * @throws NullPointerException if the resolver is null.
+	 */
+	public CachingResolver(Resolver resolver) {
+		this(resolver, DEFAULT_MAX_SIZE, DEFAULT_NEGATIVE_TTL, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Creates a new resolver.
+	 *
+	 * @param resolver the resolver to cache the answers of.
+	 * @param maxSize the maximum number of cached answers.
+	 * @param negativeTtl how long to cache empty answers for, or zero not to cache them.
+	 * @param unit the unit of the negative TTL.
+	 * @throws NullPointerException if the resolver is null.
+	 */
+	public CachingResolver(Resolver resolver, int maxSize, long negativeTtl, TimeUnit unit) {
+		if (resolver == null) {
+			throw new NullPointerException();
+		}
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be positive: " + maxSize);
+		}
+		if (negativeTtl < 0) {
+			throw new IllegalArgumentException("Negative TTL must not be negative: " + negativeTtl);
+		}
+		this.resolver = resolver;
+		this.reportingResolver = resolver instanceof ReportingResolver ? (ReportingResolver) resolver : null;
+		this.maxSize = maxSize;
+		this.negativeTtlNanos = unit.toNanos(negativeTtl);
+	}
+
+	/**
+	 * Returns the number of cached answers, including expired answers which
+	 * have not been looked up since they expired.
+	 *
+	 * @return the number of cached answers.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of lookups answered with cached records.
+	 *
+	 * @return the number of hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups answered with a cached empty answer.
+	 *
+	 * @return the number of negative hits.
+	 */
+	public long getNegativeHits() {
+		return negativeHits.get();
+	}
+
+	/**
+	 * Returns the number of lookups passed on to the underlying resolver.
+	 *
+	 * @return the number of misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of answers evicted to make room for another answer.
+	 *
+	 * @return the number of evictions.
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns the number of lookups currently waiting for the underlying resolver.
+	 *
+	 * @return the number of lookups in flight.
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Removes the answers cached for the given domain.
+	 *
+	 * @param domain the domain.
+	 * @return the number of answers removed.
+	 */
+	public int flush(Name domain) {
+		int removed = 0;
+		for (Iterator<Query> iter = entries.keySet().iterator(); iter.hasNext();) {
+			if (iter.next().getName().equals(domain)) {
+				iter.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Removes the answers cached for the given domain and every domain beneath it.
+	 *
+	 * @param suffix the domain.
+	 * @return the number of answers removed.
+	 */
+	public int flushSuffix(Name suffix) {
+		int removed = 0;
+		for (Iterator<Query> iter = entries.keySet().iterator(); iter.hasNext();) {
+			if (iter.next().getName().subdomain(suffix)) {
+				iter.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Removes all answers from this cache.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Resets the hit, miss and eviction counters.
+	 */
+	public void resetStatistics() {
+		hits.set(0);
+		negativeHits.set(0);
+		misses.set(0);
+		evictions.set(0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<NAPTRRecord> lookupNAPTRRecords(Name domain) {
+		final Record[] cached = getCached(Type.NAPTR, domain);
+		if (cached == null) {
+			final List<NAPTRRecord> records = miss(Type.NAPTR, domain);
+			put(Type.NAPTR, domain, records);
+			return records;
+		}
+		final List<NAPTRRecord> records = new ArrayList<NAPTRRecord>(cached.length);
+		for (Record record : cached) {
+			records.add((NAPTRRecord) record);
+		}
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<SRVRecord> lookupSRVRecords(Name domain) {
+		final Record[] cached = getCached(Type.SRV, domain);
+		if (cached == null) {
+			final List<SRVRecord> records = miss(Type.SRV, domain);
+			put(Type.SRV, domain, records);
+			return records;
+		}
+		final List<SRVRecord> records = new ArrayList<SRVRecord>(cached.length);
+		for (Record record : cached) {
+			records.add((SRVRecord) record);
+		}
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set<ARecord> lookupARecords(Name domain) {
+		final Record[] cached = getCached(Type.A, domain);
+		if (cached == null) {
+			final Set<ARecord> records = miss(Type.A, domain);
+			put(Type.A, domain, records);
+			return records;
+		}
+		final Set<ARecord> records = new HashSet<ARecord>();
+		for (Record record : cached) {
+			records.add((ARecord) record);
+		}
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set<AAAARecord> lookupAAAARecords(Name domain) {
+		final Record[] cached = getCached(Type.AAAA, domain);
+		if (cached == null) {
+			final Set<AAAARecord> records = miss(Type.AAAA, domain);
+			put(Type.AAAA, domain, records);
+			return records;
+		}
+		final Set<AAAARecord> records = new HashSet<AAAARecord>();
+		for (Record record : cached) {
+			records.add((AAAARecord) record);
+		}
+		return records;
+	}
+
+	/**
+	 * Returns the cached records for the given query, with the TTL they have
+	 * left, or <code>null</code> on a miss.
+	 */
+	private Record[] getCached(int type, Name domain) {
+		final Query query = new Query(type, domain);
+		final Entry entry = entries.get(query);
+		if (entry != null) {
+			final long now = System.nanoTime();
+			if (entry.expires - now > 0) {
+				(entry.records.length == 0 ? negativeHits : hits).incrementAndGet();
+				return entry.getRecords(now);
+			}
+			entries.remove(query, entry);
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Collection<? extends Record>> T miss(int type, Name domain) {
+		inFlight.incrementAndGet();
+		try {
+			switch (type) {
+			case Type.NAPTR:
+				return (T) resolver.lookupNAPTRRecords(domain);
+			case Type.SRV:
+				return (T) resolver.lookupSRVRecords(domain);
+			case Type.A:
+				return (T) resolver.lookupARecords(domain);
+			default:
+				return (T) resolver.lookupAAAARecords(domain);
+			}
+		} finally {
+			inFlight.decrementAndGet();
+		}
+	}
+
+	private void put(int type, Name domain, Collection<? extends Record> records) {
+		final long ttlNanos;
+		if (records.isEmpty()) {
+			if (isNegative() == false) {
+				return;
+			}
+			ttlNanos = negativeTtlNanos;
+		} else {
+			long ttl = Long.MAX_VALUE;
+			for (Record record : records) {
+				ttl = Math.min(ttl, record.getTTL());
+			}
+			ttlNanos = TimeUnit.SECONDS.toNanos(ttl);
+		}
+		if (ttlNanos <= 0) {
+			return;
+		}
+		final Query query = new Query(type, domain);
+		if (entries.containsKey(query) == false) {
+			makeRoom();
+		}
+		final Record[] array = records.isEmpty() ? NO_RECORDS : records.toArray(new Record[records.size()]);
+		final long now = System.nanoTime();
+		entries.put(query, new Entry(array, now, now + ttlNanos));
+	}
+
+	/**
+	 * Returns true unless the empty answer just returned to the calling thread
+	 * was caused by a timeout or another failure.
+	 */
+	private boolean isNegative() {
+		if (reportingResolver == null) {
+			return true;
+		}
+		final LookupOutcome outcome = reportingResolver.getLastOutcome();
+		return outcome != LookupOutcome.TIMEOUT && outcome != LookupOutcome.FAILURE;
+	}
+
+	private void makeRoom() {
+		if (entries.size() >= maxSize) {
+			final Iterator<Query> iter = entries.keySet().iterator();
+			if (iter.hasNext()) {
+				iter.next();
+				iter.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * This class holds a cached answer, the time it was cached at and the time
+	 * it expires at.
+	 * <p>
+	 * The records rebuilt with the TTL they have left are kept until the next
+	 * second, so a hit allocates at most once per second and per answer.
+	 */
+	@ThreadSafe
+	private static final class Entry {
+		private final Record[] records;
+		private final byte[][] rdata;
+		private final long created;
+		private final long expires;
+		private volatile Aged aged;
+
+		private Entry(Record[] records, long created, long expires) {
+			this.records = records;
+			this.rdata = new byte[records.length][];
+			for (int i = 0; i < records.length; i++) {
+				rdata[i] = getRdata(records[i]);
+			}
+			this.created = created;
+			this.expires = expires;
+		}
+
+		/**
+		 * Returns the cached records, with the TTL they have left.
+		 */
+		private Record[] getRecords(long now) {
+			final long elapsed = TimeUnit.NANOSECONDS.toSeconds(now - created);
+			if (elapsed == 0 || records.length == 0) {
+				return records;
+			}
+			final Aged current = aged;
+			if (current != null && current.elapsed == elapsed) {
+				return current.records;
+			}
+			final Record[] agedRecords = new Record[records.length];
+			for (int i = 0; i < records.length; i++) {
+				final Record record = records[i];
+				final long ttl = Math.max(0, record.getTTL() - elapsed);
+				agedRecords[i] = Record.newRecord(record.getName(), record.getType(), record.getDClass(), ttl, rdata[i]);
+			}
+			aged = new Aged(elapsed, agedRecords);
+			return agedRecords;
+		}
+
+		/**
+		 * Returns the record data as it was received, rather than in canonical
+		 * form, which would lowercase the names in SRV and NAPTR records.
+		 */
+		private static byte[] getRdata(Record record) {
+			final byte[] wire = record.toWire(Section.ANSWER);
+			// Uncompressed owner name, then type, class, TTL and data length.
+			final int offset = record.getName().length() + 10;
+			return Arrays.copyOfRange(wire, offset, wire.length);
+		}
+	}
+
+	/**
+	 * This class holds cached records rebuilt with the TTL they had left a
+	 * number of seconds after they were cached.
+	 */
+	@Immutable
+	private static final class Aged {
+		private final long elapsed;
+		private final Record[] records;
+
+		private Aged(long elapsed, Record[] records) {
+			this.elapsed = elapsed;
+			this.records = records;
+		}
+	}
+}
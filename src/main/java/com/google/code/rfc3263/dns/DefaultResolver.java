@@ -9,6 +9,7 @@ import net.jcip.annotations.ThreadSafe;
 
 import org.xbill.DNS.AAAARecord;
 import org.xbill.DNS.ARecord;
+import org.xbill.DNS.Cache;
 import org.xbill.DNS.Lookup;
 import org.xbill.DNS.NAPTRRecord;
 import org.xbill.DNS.Name;
@@ -19,17 +20,77 @@ import org.xbill.DNS.Type;
 /**
  * This class is the default DNS resolver, which uses dnsjava.
  * <p>
+ * By default, lookups are sent to the system's name servers and answers are
+ * kept in the dnsjava default cache.  Both can be replaced, for example to
+ * send lookups to a test server without caching.
+ * <p>
+ * The outcome of each lookup, such as NXDOMAIN or a timeout, is kept for the
+ * calling thread and returned by {@link #getLastOutcome()}.  Each resolver
+ * keeps its own outcomes, so lookups through another resolver on the same
+ * thread do not overwrite them.
+ * <p>
  * This class is thread-safe.
  */
 @ThreadSafe
-public class DefaultResolver implements Resolver {
+public class DefaultResolver implements ReportingResolver {
+	private final ThreadLocal<LookupOutcome[]> lastOutcome = new ThreadLocal<LookupOutcome[]>() {
+		@Override
+		protected LookupOutcome[] initialValue() {
+			return new LookupOutcome[1];
+		}
+	};
+
+	private final org.xbill.DNS.Resolver resolver;
+	private final Cache cache;
+	private final boolean defaultCache;
+
+	/**
+	 * Creates a new resolver which uses the dnsjava default resolver and cache.
+	 */
+	public DefaultResolver() {
+		this.resolver = null;
+		this.cache = null;
+		this.defaultCache = true;
+	}
+
+	/**
+	 * Creates a new resolver which sends lookups through the given dnsjava
+	 * resolver, and uses the dnsjava default cache.
+	 * 
+	 * @param resolver the dnsjava resolver.
+	 */
+	public DefaultResolver(org.xbill.DNS.Resolver resolver) {
+		if (resolver == null) {
+			throw new NullPointerException();
+		}
+		this.resolver = resolver;
+		this.cache = null;
+		this.defaultCache = true;
+	}
+
+	/**
+	 * Creates a new resolver which sends lookups through the given dnsjava
+	 * resolver, and keeps answers in the given cache.
+	 * 
+	 * @param resolver the dnsjava resolver.
+	 * @param cache the cache, or <code>null</code> to send every lookup to the resolver.
+	 */
+	public DefaultResolver(org.xbill.DNS.Resolver resolver, Cache cache) {
+		if (resolver == null) {
+			throw new NullPointerException();
+		}
+		this.resolver = resolver;
+		this.cache = cache;
+		this.defaultCache = false;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	public Set<ARecord> lookupARecords(Name domain) {
 		final Set<ARecord> addresses = new HashSet<ARecord>();
 		
-		Record[] records = new Lookup(domain, Type.A).run();
+		Record[] records = run(newLookup(domain, Type.A));
 		
 		if (records == null) {
 			return addresses;
@@ -47,7 +108,7 @@ public class DefaultResolver implements Resolver {
 	public Set<AAAARecord> lookupAAAARecords(Name domain) {
 		final Set<AAAARecord> addresses = new HashSet<AAAARecord>();
 		
-		Record[] records = new Lookup(domain, Type.AAAA).run();
+		Record[] records = run(newLookup(domain, Type.AAAA));
 		
 		if (records == null) {
 			return addresses;
@@ -65,7 +126,7 @@ public class DefaultResolver implements Resolver {
 	public List<SRVRecord> lookupSRVRecords(Name domain) {
 		final List<SRVRecord> services = new ArrayList<SRVRecord>();
 		
-		final Record[] records = new Lookup(domain, Type.SRV).run();
+		final Record[] records = run(newLookup(domain, Type.SRV));
 
 		if (records == null) {
 			return services;
@@ -83,7 +144,7 @@ public class DefaultResolver implements Resolver {
 	public List<NAPTRRecord> lookupNAPTRRecords(Name domain) {
 		final List<NAPTRRecord> pointers = new ArrayList<NAPTRRecord>();
 		
-		final Record[] records = new Lookup(domain, Type.NAPTR).run();
+		final Record[] records = run(newLookup(domain, Type.NAPTR));
 
 		if (records == null) {
 			return pointers;
@@ -94,4 +155,29 @@ public class DefaultResolver implements Resolver {
 		
 		return pointers;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public LookupOutcome getLastOutcome() {
+		return lastOutcome.get()[0];
+	}
+
+	private Record[] run(Lookup lookup) {
+		final Record[] records = lookup.run();
+		lastOutcome.get()[0] = LookupOutcome.fromLookup(lookup);
+		return records;
+	}
+
+	private Lookup newLookup(Name domain, int type) {
+		final Lookup lookup = new Lookup(domain, type);
+		if (resolver != null) {
+			lookup.setResolver(resolver);
+		}
+		if (defaultCache == false) {
+			// A null cache gives each lookup its own temporary cache.
+			lookup.setCache(cache);
+		}
+		return lookup;
+	}
 }
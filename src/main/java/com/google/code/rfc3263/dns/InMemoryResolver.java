@@ -0,0 +1,144 @@
+package com.google.code.rfc3263.dns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.jcip.annotations.Immutable;
+
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+
+/**
+ * This class is a resolver which answers from a fixed set of records held in
+ * memory, without any network access.
+ * <p>
+ * Records are indexed by owner name when the resolver is created, so each
+ * lookup is a single hash lookup followed by a copy of the answer.  Records of
+ * types other than NAPTR, SRV, A and AAAA are ignored.
+ * <p>
+ * This class is useful for tests and benchmarks, and for deployments with a
+ * static peer configuration.
+ */
+@Immutable
+public class InMemoryResolver implements Resolver {
+	private static final NAPTRRecord[] NO_NAPTR_RECORDS = new NAPTRRecord[0];
+	private static final SRVRecord[] NO_SRV_RECORDS = new SRVRecord[0];
+	private static final ARecord[] NO_A_RECORDS = new ARecord[0];
+	private static final AAAARecord[] NO_AAAA_RECORDS = new AAAARecord[0];
+
+	private final Map<Name, Node> nodes;
+
+	/**
+	 * Creates a new resolver for the given records.
+	 *
+	 * @param records the records to serve.
+	 */
+	public InMemoryResolver(Collection<? extends Record> records) {
+		final Map<Name, NodeBuilder> builders = new HashMap<Name, NodeBuilder>();
+		for (Record record : records) {
+			NodeBuilder builder = builders.get(record.getName());
+			if (builder == null) {
+				builder = new NodeBuilder();
+				builders.put(record.getName(), builder);
+			}
+			builder.add(record);
+		}
+		nodes = new HashMap<Name, Node>(builders.size() * 4 / 3 + 1);
+		for (Map.Entry<Name, NodeBuilder> entry : builders.entrySet()) {
+			nodes.put(entry.getKey(), entry.getValue().build());
+		}
+	}
+
+	/**
+	 * Returns the number of names with at least one record.
+	 *
+	 * @return the number of names.
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<NAPTRRecord> lookupNAPTRRecords(Name domain) {
+		final Node node = nodes.get(domain);
+		return new ArrayList<NAPTRRecord>(Arrays.asList(node == null ? NO_NAPTR_RECORDS : node.pointers));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<SRVRecord> lookupSRVRecords(Name domain) {
+		final Node node = nodes.get(domain);
+		return new ArrayList<SRVRecord>(Arrays.asList(node == null ? NO_SRV_RECORDS : node.services));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set<ARecord> lookupARecords(Name domain) {
+		final Node node = nodes.get(domain);
+		return new HashSet<ARecord>(Arrays.asList(node == null ? NO_A_RECORDS : node.addresses));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set<AAAARecord> lookupAAAARecords(Name domain) {
+		final Node node = nodes.get(domain);
+		return new HashSet<AAAARecord>(Arrays.asList(node == null ? NO_AAAA_RECORDS : node.ipv6Addresses));
+	}
+
+	/**
+	 * The records for a single owner name.
+	 */
+	@Immutable
+	private static final class Node {
+		private final NAPTRRecord[] pointers;
+		private final SRVRecord[] services;
+		private final ARecord[] addresses;
+		private final AAAARecord[] ipv6Addresses;
+
+		private Node(NAPTRRecord[] pointers, SRVRecord[] services, ARecord[] addresses, AAAARecord[] ipv6Addresses) {
+			this.pointers = pointers;
+			this.services = services;
+			this.addresses = addresses;
+			this.ipv6Addresses = ipv6Addresses;
+		}
+	}
+
+	private static final class NodeBuilder {
+		private final List<NAPTRRecord> pointers = new ArrayList<NAPTRRecord>();
+		private final List<SRVRecord> services = new ArrayList<SRVRecord>();
+		private final List<ARecord> addresses = new ArrayList<ARecord>();
+		private final List<AAAARecord> ipv6Addresses = new ArrayList<AAAARecord>();
+
+		private void add(Record record) {
+			if (record instanceof NAPTRRecord) {
+				pointers.add((NAPTRRecord) record);
+			} else if (record instanceof SRVRecord) {
+				services.add((SRVRecord) record);
+			} else if (record instanceof ARecord) {
+				addresses.add((ARecord) record);
+			} else if (record instanceof AAAARecord) {
+				ipv6Addresses.add((AAAARecord) record);
+			}
+		}
+
+		private Node build() {
+			return new Node(pointers.toArray(NO_NAPTR_RECORDS), services.toArray(NO_SRV_RECORDS),
+				addresses.toArray(NO_A_RECORDS), ipv6Addresses.toArray(NO_AAAA_RECORDS));
+		}
+	}
+}
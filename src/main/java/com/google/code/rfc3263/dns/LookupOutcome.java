@@ -0,0 +1,43 @@
+package com.google.code.rfc3263.dns;
+
+import org.xbill.DNS.Lookup;
+
+/**
+ * This enum describes how a DNS lookup ended.
+ */
+public enum LookupOutcome {
+	/** The lookup returned at least one record. */
+	ANSWER,
+	/** The name does not exist. */
+	NXDOMAIN,
+	/** The name exists, but has no records of the queried type. */
+	NODATA,
+	/** No answer was received in time. */
+	TIMEOUT,
+	/** The lookup failed for another reason, such as SERVFAIL or a network error. */
+	FAILURE,
+	/** The lookup returned no records, and the resolver did not report why. */
+	EMPTY;
+
+	/**
+	 * Returns the outcome of a dnsjava lookup which has been run.
+	 *
+	 * @param lookup the lookup.
+	 * @return the outcome.
+	 */
+	static LookupOutcome fromLookup(Lookup lookup) {
+		switch (lookup.getResult()) {
+		case Lookup.SUCCESSFUL:
+			return ANSWER;
+		case Lookup.HOST_NOT_FOUND:
+			return NXDOMAIN;
+		case Lookup.TYPE_NOT_FOUND:
+			return NODATA;
+		case Lookup.TRY_AGAIN:
+			// dnsjava only distinguishes timeouts by the error string.
+			return "timed out".equals(lookup.getErrorString()) ? TIMEOUT : FAILURE;
+		default:
+			return FAILURE;
+		}
+	}
+}
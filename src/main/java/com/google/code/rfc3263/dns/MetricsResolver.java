@@ -0,0 +1,178 @@
+package com.google.code.rfc3263.dns;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.Type;
+
+import com.google.code.rfc3263.util.LatencyHistogram;
+
+/**
+ * This class is a resolver which counts the lookups made through it, and
+ * records how long they take and how they end, for each record type.
+ * <p>
+ * If the wrapped resolver is a {@link ReportingResolver}, such as the
+ * {@link DefaultResolver}, the outcome it reports is counted, so NXDOMAIN,
+ * NODATA and timeouts are told apart.  Otherwise a lookup either returns an
+ * {@link LookupOutcome#ANSWER answer} or is {@link LookupOutcome#EMPTY empty}.
+ * The outcome is passed on by {@link #getLastOutcome()}, so a
+ * {@link CachingResolver} in front of this resolver can still tell a timeout
+ * from an empty answer.
+ * <p>
+ * Counters and histograms are lock-free, so this class can be left on in
+ * production.
+ */
+@ThreadSafe
+public class MetricsResolver implements ReportingResolver {
+	private static final int[] TYPES = {Type.NAPTR, Type.SRV, Type.A, Type.AAAA};
+	private static final LookupOutcome[] OUTCOMES = LookupOutcome.values();
+
+	private final Resolver resolver;
+	private final ReportingResolver reporter;
+	private final LatencyHistogram[] latencies = new LatencyHistogram[TYPES.length];
+	private final AtomicLongArray outcomes = new AtomicLongArray(TYPES.length * OUTCOMES.length);
+
+	/**
+	 * Creates a new resolver.
+	 *
+	 * @param resolver the resolver to measure.
+	 */
+	public MetricsResolver(Resolver resolver) {
+		if (resolver == null) {
+			throw new NullPointerException();
+		}
+		this.resolver = resolver;
+		this.reporter = resolver instanceof ReportingResolver ? (ReportingResolver) resolver : null;
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<NAPTRRecord> lookupNAPTRRecords(Name domain) {
+		final long start = System.nanoTime();
+		final List<NAPTRRecord> records = resolver.lookupNAPTRRecords(domain);
+		record(0, start, records);
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<SRVRecord> lookupSRVRecords(Name domain) {
+		final long start = System.nanoTime();
+		final List<SRVRecord> records = resolver.lookupSRVRecords(domain);
+		record(1, start, records);
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set<ARecord> lookupARecords(Name domain) {
+		final long start = System.nanoTime();
+		final Set<ARecord> records = resolver.lookupARecords(domain);
+		record(2, start, records);
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set<AAAARecord> lookupAAAARecords(Name domain) {
+		final long start = System.nanoTime();
+		final Set<AAAARecord> records = resolver.lookupAAAARecords(domain);
+		record(3, start, records);
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This is the outcome reported by the wrapped resolver, or
+	 * <code>null</code> if it is not a {@link ReportingResolver}.
+	 */
+	public LookupOutcome getLastOutcome() {
+		return reporter == null ? null : reporter.getLastOutcome();
+	}
+
+	private void record(int index, long start, Collection<?> records) {
+		latencies[index].record(System.nanoTime() - start);
+		LookupOutcome outcome = reporter == null ? null : reporter.getLastOutcome();
+		if (outcome == null) {
+			outcome = records.isEmpty() ? LookupOutcome.EMPTY : LookupOutcome.ANSWER;
+		}
+		outcomes.incrementAndGet(index * OUTCOMES.length + outcome.ordinal());
+	}
+
+	/**
+	 * Returns the number of lookups of the given type.
+	 *
+	 * @param type the record type, such as {@link Type#SRV}.
+	 * @return the number of lookups.
+	 * @throws IllegalArgumentException if the type is not NAPTR, SRV, A or AAAA.
+	 */
+	public long getQueries(int type) {
+		final int index = index(type);
+		long queries = 0;
+		for (int i = 0; i < OUTCOMES.length; i++) {
+			queries += outcomes.get(index * OUTCOMES.length + i);
+		}
+		return queries;
+	}
+
+	/**
+	 * Returns the number of lookups of the given type with the given outcome.
+	 *
+	 * @param type the record type, such as {@link Type#SRV}.
+	 * @param outcome the outcome.
+	 * @return the number of lookups.
+	 * @throws IllegalArgumentException if the type is not NAPTR, SRV, A or AAAA.
+	 */
+	public long getOutcomes(int type, LookupOutcome outcome) {
+		return outcomes.get(index(type) * OUTCOMES.length + outcome.ordinal());
+	}
+
+	/**
+	 * Returns the histogram of the time taken by lookups of the given type.
+	 *
+	 * @param type the record type, such as {@link Type#SRV}.
+	 * @return the histogram.
+	 * @throws IllegalArgumentException if the type is not NAPTR, SRV, A or AAAA.
+	 */
+	public LatencyHistogram getLatency(int type) {
+		return latencies[index(type)];
+	}
+
+	/**
+	 * Discards all counts and latencies recorded so far.
+	 */
+	public void reset() {
+		for (LatencyHistogram latency : latencies) {
+			latency.reset();
+		}
+		for (int i = 0; i < outcomes.length(); i++) {
+			outcomes.set(i, 0);
+		}
+	}
+
+	private static int index(int type) {
+		for (int i = 0; i < TYPES.length; i++) {
+			if (TYPES[i] == type) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Unsupported record type: " + Type.string(type));
+	}
+}
@@ -0,0 +1,41 @@
+package com.google.code.rfc3263.dns;
+
+import net.jcip.annotations.Immutable;
+
+import org.xbill.DNS.Name;
+
+/**
+ * This class is the key for a DNS query: the record type and the name.
+ */
+@Immutable
+final class Query {
+	private final int type;
+	private final Name name;
+
+	Query(int type, Name name) {
+		this.type = type;
+		this.name = name;
+	}
+
+	int getType() {
+		return type;
+	}
+
+	Name getName() {
+		return name;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof Query == false) {
+			return false;
+		}
+		final Query other = (Query) obj;
+		return type == other.type && name.equals(other.name);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * type + name.hashCode();
+	}
+}
@@ -0,0 +1,146 @@
+package com.google.code.rfc3263.dns;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.apache.log4j.Logger;
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.Type;
+
+/**
+ * This class is a resolver which records every answer given by another
+ * resolver, along with the time taken to give it, so that the answers can
+ * later be served by a {@link ReplayResolver}.
+ * <p>
+ * Answers are written to a stream in a compact binary format, in the order in
+ * which the lookups complete.  If the stream fails, the error is logged and
+ * recording stops, but lookups carry on as normal.  The stream must be
+ * {@link #close() closed} to be sure every answer has been written.
+ * <p>
+ * If the recorded resolver is a {@link ReportingResolver}, the outcome of
+ * each lookup is passed on by {@link #getLastOutcome()}.
+ */
+@ThreadSafe
+public class RecordingResolver implements ReportingResolver, Flushable, Closeable {
+	private final Logger LOGGER = Logger.getLogger(RecordingResolver.class);
+	private final Resolver resolver;
+	private final ReportingResolver reporter;
+	@GuardedBy("this")
+	private final DataOutputStream out;
+	@GuardedBy("this")
+	private boolean failed;
+
+	/**
+	 * Creates a new resolver, and writes the header of the log to the stream.
+	 *
+	 * @param resolver the resolver to record.
+	 * @param out the stream to record to.
+	 * @throws IOException if the header cannot be written.
+	 */
+	public RecordingResolver(Resolver resolver, OutputStream out) throws IOException {
+		this.resolver = resolver;
+		this.reporter = resolver instanceof ReportingResolver ? (ReportingResolver) resolver : null;
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		AnswerLog.writeHeader(this.out);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<NAPTRRecord> lookupNAPTRRecords(Name domain) {
+		final long start = System.nanoTime();
+		final List<NAPTRRecord> records = resolver.lookupNAPTRRecords(domain);
+		record(Type.NAPTR, domain, System.nanoTime() - start, records);
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<SRVRecord> lookupSRVRecords(Name domain) {
+		final long start = System.nanoTime();
+		final List<SRVRecord> records = resolver.lookupSRVRecords(domain);
+		record(Type.SRV, domain, System.nanoTime() - start, records);
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set<ARecord> lookupARecords(Name domain) {
+		final long start = System.nanoTime();
+		final Set<ARecord> records = resolver.lookupARecords(domain);
+		record(Type.A, domain, System.nanoTime() - start, records);
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set<AAAARecord> lookupAAAARecords(Name domain) {
+		final long start = System.nanoTime();
+		final Set<AAAARecord> records = resolver.lookupAAAARecords(domain);
+		record(Type.AAAA, domain, System.nanoTime() - start, records);
+		return records;
+	}
+
+	private void record(int type, Name domain, long latencyNanos, Collection<? extends Record> records) {
+		final AnswerLog.Answer answer = new AnswerLog.Answer(type, domain, latencyNanos, records);
+		synchronized (this) {
+			if (failed) {
+				return;
+			}
+			try {
+				AnswerLog.writeAnswer(out, answer);
+			} catch (IOException e) {
+				LOGGER.error("Failed to record answer; recording stopped", e);
+				failed = true;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This is the outcome reported by the recorded resolver, or
+	 * <code>null</code> if it is not a {@link ReportingResolver}.
+	 */
+	public LookupOutcome getLastOutcome() {
+		return reporter == null ? null : reporter.getLastOutcome();
+	}
+
+	/**
+	 * Writes any buffered answers to the stream.
+	 *
+	 * @throws IOException if the stream cannot be flushed.
+	 */
+	public synchronized void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Writes any buffered answers and closes the stream.  Lookups made after
+	 * the stream is closed are not recorded.
+	 *
+	 * @throws IOException if the stream cannot be closed.
+	 */
+	public synchronized void close() throws IOException {
+		failed = true;
+		out.close();
+	}
+}
@@ -0,0 +1,190 @@
+package com.google.code.rfc3263.dns;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.Type;
+
+/**
+ * This class is a resolver which serves the answers recorded by a
+ * {@link RecordingResolver}, without any network access.
+ * <p>
+ * When the same query was recorded more than once, the recorded answers are
+ * served in turn, starting again from the first once they have all been
+ * served, so changes such as round-robin ordering are replayed too.  Each
+ * answer is given after the time it originally took, multiplied by a time
+ * scale; a scale of zero serves answers immediately.  A query which was never
+ * recorded is answered at once with no records, and counted as a miss.
+ */
+@ThreadSafe
+public class ReplayResolver implements Resolver {
+	private final Map<Query, Answers> answers;
+	private final double timeScale;
+	private final int size;
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates a new resolver which replays the recorded answers with their
+	 * original timing.
+	 *
+	 * @param in the stream to read the recorded answers from.
+	 * @throws IOException if the stream cannot be read or is not an answer log.
+	 */
+	public ReplayResolver(InputStream in) throws IOException {
+		this(in, 1.0);
+	}
+
+	/**
+	 * Creates a new resolver.
+	 *
+	 * @param in the stream to read the recorded answers from.
+	 * @param timeScale the factor to apply to the recorded times.
+	 * @throws IOException if the stream cannot be read or is not an answer log.
+	 */
+	public ReplayResolver(InputStream in, double timeScale) throws IOException {
+		if (timeScale < 0 || Double.isNaN(timeScale)) {
+			throw new IllegalArgumentException("Time scale must not be negative: " + timeScale);
+		}
+		this.timeScale = timeScale;
+
+		final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		AnswerLog.readHeader(data);
+		final Map<Query, List<AnswerLog.Answer>> lists = new HashMap<Query, List<AnswerLog.Answer>>();
+		int count = 0;
+		AnswerLog.Answer answer;
+		while ((answer = AnswerLog.readAnswer(data)) != null) {
+			final Query query = new Query(answer.getType(), answer.getName());
+			List<AnswerLog.Answer> list = lists.get(query);
+			if (list == null) {
+				list = new ArrayList<AnswerLog.Answer>();
+				lists.put(query, list);
+			}
+			list.add(answer);
+			count++;
+		}
+		answers = new HashMap<Query, Answers>(lists.size() * 4 / 3 + 1);
+		for (Map.Entry<Query, List<AnswerLog.Answer>> entry : lists.entrySet()) {
+			answers.put(entry.getKey(), new Answers(entry.getValue()));
+		}
+		size = count;
+	}
+
+	/**
+	 * Returns the number of recorded answers.
+	 *
+	 * @return the number of recorded answers.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of queries so far which were never recorded.
+	 *
+	 * @return the number of misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<NAPTRRecord> lookupNAPTRRecords(Name domain) {
+		final List<NAPTRRecord> records = new ArrayList<NAPTRRecord>();
+		for (Record record : replay(Type.NAPTR, domain)) {
+			records.add((NAPTRRecord) record);
+		}
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<SRVRecord> lookupSRVRecords(Name domain) {
+		final List<SRVRecord> records = new ArrayList<SRVRecord>();
+		for (Record record : replay(Type.SRV, domain)) {
+			records.add((SRVRecord) record);
+		}
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set<ARecord> lookupARecords(Name domain) {
+		final Set<ARecord> records = new HashSet<ARecord>();
+		for (Record record : replay(Type.A, domain)) {
+			records.add((ARecord) record);
+		}
+		return records;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set<AAAARecord> lookupAAAARecords(Name domain) {
+		final Set<AAAARecord> records = new HashSet<AAAARecord>();
+		for (Record record : replay(Type.AAAA, domain)) {
+			records.add((AAAARecord) record);
+		}
+		return records;
+	}
+
+	private Record[] replay(int type, Name domain) {
+		final Answers recorded = answers.get(new Query(type, domain));
+		if (recorded == null) {
+			misses.incrementAndGet();
+			return new Record[0];
+		}
+		final AnswerLog.Answer answer = recorded.next();
+		sleep((long) (answer.getLatencyNanos() * timeScale));
+		return answer.getRecords();
+	}
+
+	private static void sleep(long nanos) {
+		if (nanos > 0) {
+			final long deadline = System.nanoTime() + nanos;
+			long remaining = nanos;
+			while (remaining > 0) {
+				LockSupport.parkNanos(remaining);
+				remaining = deadline - System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * This class holds the answers recorded for one query, and serves them in turn.
+	 */
+	private static final class Answers {
+		private final AnswerLog.Answer[] answers;
+		private final AtomicInteger next = new AtomicInteger();
+
+		private Answers(List<AnswerLog.Answer> answers) {
+			this.answers = answers.toArray(new AnswerLog.Answer[answers.size()]);
+		}
+
+		private AnswerLog.Answer next() {
+			return answers[(next.getAndIncrement() & Integer.MAX_VALUE) % answers.length];
+		}
+	}
+}
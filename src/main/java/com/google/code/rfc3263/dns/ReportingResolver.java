@@ -0,0 +1,21 @@
+package com.google.code.rfc3263.dns;
+
+/**
+ * This interface is a resolver which can say how its lookups ended, so that
+ * an empty answer can be told apart from a timeout.
+ * <p>
+ * As {@link Resolver} returns records only, the outcome is kept for the
+ * calling thread until its next lookup.  A resolver which wraps another
+ * resolver should implement this interface too, and pass on the outcome of
+ * the wrapped resolver, so the outcome is not lost along a chain of resolvers.
+ */
+public interface ReportingResolver extends Resolver {
+	/**
+	 * Returns the outcome of the last lookup made through this resolver by
+	 * the calling thread.
+	 *
+	 * @return the outcome, or <code>null</code> if the thread has made no lookup
+	 *         or the outcome is not known.
+	 */
+	LookupOutcome getLastOutcome();
+}
@@ -0,0 +1,76 @@
+package com.google.code.rfc3263.dns.sorter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xbill.DNS.Name;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * This class keeps a count of the transactions in flight to each SRV target.
+ * <p>
+ * Applications should call {@link #increment(Name)} when a client transaction
+ * is sent to a target, and {@link #decrement(Name)} when that transaction
+ * terminates, passing the {@link com.google.code.rfc3263.ResolvedHop#getTarget()
+ * target} of the hop the transaction was sent to.  Counts are kept in
+ * striped counters, so concurrent updates for the same target do not contend
+ * on a single memory location.
+ * <p>
+ * A counter is kept for every target ever incremented, even once its count
+ * returns to zero, as removing it could lose a concurrent increment.  The
+ * registry therefore grows with the number of distinct SRV targets seen, which
+ * is bounded by the zones the application routes to; applications which route
+ * to an unbounded set of domains should use one registry per zone, or replace
+ * the registry periodically.
+ */
+@ThreadSafe
+public class OutstandingRequestRegistry {
+	private final ConcurrentMap<Name, LongAdder> counters = new ConcurrentHashMap<Name, LongAdder>();
+
+	/**
+	 * Records the start of a transaction to the given target.
+	 *
+	 * @param target the SRV target.
+	 */
+	public void increment(Name target) {
+		getCounter(target).increment();
+	}
+
+	/**
+	 * Records the end of a transaction to the given target.
+	 *
+	 * @param target the SRV target.
+	 */
+	public void decrement(Name target) {
+		getCounter(target).decrement();
+	}
+
+	/**
+	 * Returns the number of transactions in flight to the given target.
+	 *
+	 * @param target the SRV target.
+	 * @return the number of transactions in flight.
+	 */
+	public long getOutstanding(Name target) {
+		final LongAdder counter = counters.get(target);
+		if (counter == null) {
+			return 0;
+		}
+		// Unmatched decrements must not make a target look better than idle.
+		return Math.max(0, counter.sum());
+	}
+
+	private LongAdder getCounter(Name target) {
+		LongAdder counter = counters.get(target);
+		if (counter == null) {
+			final LongAdder newCounter = new LongAdder();
+			counter = counters.putIfAbsent(target, newCounter);
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+		return counter;
+	}
+}
@@ -0,0 +1,147 @@
+package com.google.code.rfc3263.dns.sorter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.xbill.DNS.SRVRecord;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * This class sorts SRV records of the same priority by descending score.
+ * <p>
+ * Each record is scored once, in O(n), so a score which changes concurrently
+ * cannot corrupt the sort.  Records with equal scores are ordered by
+ * {@link #precedesOnTie(SRVRecord, SRVRecord)}.
+ * <p>
+ * The whole set is ordered, rather than only the first record selected, as the
+ * caller falls back to the following records when the first one fails; no
+ * comparison sort does this in O(n).  Record sets of up to
+ * {@value #SCRATCH_SIZE} records, which covers the records of a single
+ * priority in practice, are ordered by an insertion sort over per-thread
+ * scratch arrays: it is O(n<sup>2</sup>) in the worst case, but does not
+ * allocate and beats a general purpose sort for so few records.  Larger sets
+ * are ordered by {@link Arrays#sort(Object[], Comparator)} in O(n log n).
+ */
+@ThreadSafe
+abstract class ScoringWeightSorter implements ServiceRecordWeightSorter {
+	private static final int SCRATCH_SIZE = 32;
+
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch(SCRATCH_SIZE);
+		}
+	};
+
+	@Override
+	public void sort(List<SRVRecord> srvRecords) {
+		final int size = srvRecords.size();
+		if (size < 2) {
+			return;
+		}
+
+		if (size > SCRATCH_SIZE) {
+			sortLarge(srvRecords);
+			return;
+		}
+
+		final Scratch scratch = SCRATCH.get();
+		final SRVRecord[] records = scratch.records;
+		final double[] scores = scratch.scores;
+
+		int i = 0;
+		for (SRVRecord srvRecord : srvRecords) {
+			final double score = score(srvRecord);
+			// Insertion sort by descending score
+			int j = i - 1;
+			while (j >= 0 && precedes(srvRecord, score, records[j], scores[j])) {
+				records[j + 1] = records[j];
+				scores[j + 1] = scores[j];
+				j--;
+			}
+			records[j + 1] = srvRecord;
+			scores[j + 1] = score;
+			i++;
+		}
+
+		final ListIterator<SRVRecord> iter = srvRecords.listIterator();
+		for (i = 0; i < size; i++) {
+			iter.next();
+			iter.set(records[i]);
+			records[i] = null;
+		}
+	}
+
+	private void sortLarge(List<SRVRecord> srvRecords) {
+		final ScoredRecord[] scored = new ScoredRecord[srvRecords.size()];
+		int i = 0;
+		for (SRVRecord srvRecord : srvRecords) {
+			scored[i++] = new ScoredRecord(srvRecord, score(srvRecord));
+		}
+		Arrays.sort(scored, new Comparator<ScoredRecord>() {
+			public int compare(ScoredRecord o1, ScoredRecord o2) {
+				if (precedes(o1.record, o1.score, o2.record, o2.score)) {
+					return -1;
+				}
+				return precedes(o2.record, o2.score, o1.record, o1.score) ? 1 : 0;
+			}
+		});
+
+		final ListIterator<SRVRecord> iter = srvRecords.listIterator();
+		for (ScoredRecord record : scored) {
+			iter.next();
+			iter.set(record.record);
+		}
+	}
+
+	/**
+	 * Returns the score of the given record; records with higher scores are
+	 * ordered first.
+	 *
+	 * @param srvRecord the record.
+	 * @return the score.
+	 */
+	abstract double score(SRVRecord srvRecord);
+
+	/**
+	 * Returns true if the first of two records with equal scores should be
+	 * ordered first.  This implementation orders by target name.
+	 *
+	 * @param o1 the first record.
+	 * @param o2 the second record.
+	 * @return true if the first record should be ordered first.
+	 */
+	boolean precedesOnTie(SRVRecord o1, SRVRecord o2) {
+		return o1.getTarget().compareTo(o2.getTarget()) < 0;
+	}
+
+	private boolean precedes(SRVRecord o1, double score1, SRVRecord o2, double score2) {
+		if (score1 != score2) {
+			return score1 > score2;
+		}
+		return precedesOnTie(o1, o2);
+	}
+
+	private static final class ScoredRecord {
+		private final SRVRecord record;
+		private final double score;
+
+		private ScoredRecord(SRVRecord record, double score) {
+			this.record = record;
+			this.score = score;
+		}
+	}
+
+	private static final class Scratch {
+		private final SRVRecord[] records;
+		private final double[] scores;
+
+		private Scratch(int size) {
+			this.records = new SRVRecord[size];
+			this.scores = new double[size];
+		}
+	}
+}
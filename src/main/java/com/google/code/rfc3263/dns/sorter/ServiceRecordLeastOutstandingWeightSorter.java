@@ -0,0 +1,70 @@
+package com.google.code.rfc3263.dns.sorter;
+
+import org.xbill.DNS.SRVRecord;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * This class sorts SRV records of the same priority by the number of
+ * transactions in flight to each target, normalised by the record's weight.
+ * <p>
+ * A record's load is computed as <code>(outstanding + 1) / weight</code>, so
+ * idle targets are ordered by descending weight, and busy targets move down
+ * in proportion to their share of the traffic.  Records with a weight of 0
+ * are ordered after all records with a non-zero weight.  Ties are broken by
+ * weight, and then by target name.
+ * <p>
+ * Outstanding counts are read once per record before sorting, so concurrent
+ * updates to the {@link OutstandingRequestRegistry} cannot corrupt the sort.
+ * Record sets of up to 32 records are sorted without allocation.
+ * <p>
+ * The hops returned by a {@link com.google.code.rfc3263.Locator} using this
+ * sorter are {@link com.google.code.rfc3263.ResolvedHop}s, whose
+ * {@link com.google.code.rfc3263.ResolvedHop#getTarget() target} is the SRV
+ * target the hop was resolved from.  Applications pass that target to the
+ * registry around each client transaction:
+ * <pre>
+ * Name target = ((ResolvedHop) hop).getTarget();
+ * registry.increment(target);
+ * // send the request, and when the transaction terminates:
+ * registry.decrement(target);
+ * </pre>
+ */
+@ThreadSafe
+public class ServiceRecordLeastOutstandingWeightSorter extends ScoringWeightSorter {
+	private final OutstandingRequestRegistry registry;
+
+	/**
+	 * Creates a new sorter reading from the given registry.
+	 *
+	 * @param registry the registry of transactions in flight.
+	 * @throws NullPointerException if the registry is null.
+	 */
+	public ServiceRecordLeastOutstandingWeightSorter(OutstandingRequestRegistry registry) {
+		if (registry == null) {
+			throw new NullPointerException();
+		}
+		this.registry = registry;
+	}
+
+	@Override
+	double score(SRVRecord srvRecord) {
+		// The lowest load is ordered first.
+		return -getLoad(srvRecord);
+	}
+
+	private double getLoad(SRVRecord srvRecord) {
+		if (srvRecord.getWeight() == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return (registry.getOutstanding(srvRecord.getTarget()) + 1) / (double) srvRecord.getWeight();
+	}
+
+	@Override
+	boolean precedesOnTie(SRVRecord o1, SRVRecord o2) {
+		if (o1.getWeight() != o2.getWeight()) {
+			return o1.getWeight() > o2.getWeight();
+		}
+		return super.precedesOnTie(o1, o2);
+	}
+}
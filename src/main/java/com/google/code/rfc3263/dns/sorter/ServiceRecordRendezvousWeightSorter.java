@@ -0,0 +1,84 @@
+package com.google.code.rfc3263.dns.sorter;
+
+import org.xbill.DNS.SRVRecord;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * This class sorts SRV records of the same priority by weighted rendezvous
+ * (highest random weight) hashing on a caller-supplied key, such as a Call-ID
+ * or an address-of-record.
+ * <p>
+ * Each record is given a score derived from a hash of the key and the record's
+ * target and port, scaled by the record's weight, and records are ordered by
+ * descending score.  The same key therefore always yields the same order for the
+ * same record set, and each target is ranked first for a share of keys
+ * proportional to its weight.  Adding or removing a target only remaps the keys
+ * for which that target ranks first.
+ * <p>
+ * Records with a weight of 0 are ordered after all records with a non-zero weight.
+ * <p>
+ * Record sets of up to 32 records are sorted without allocation.
+ */
+@ThreadSafe
+public class ServiceRecordRendezvousWeightSorter extends ScoringWeightSorter {
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final String key;
+	private final long keyHash;
+
+	/**
+	 * Creates a new sorter for the given key.
+	 *
+	 * @param key the affinity key, such as a Call-ID or an address-of-record.
+	 */
+	public ServiceRecordRendezvousWeightSorter(String key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key must not be null");
+		}
+		this.key = key;
+		this.keyHash = hash(key);
+	}
+
+	/**
+	 * Returns the affinity key used by this sorter.
+	 *
+	 * @return the affinity key.
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	@Override
+	double score(SRVRecord srvRecord) {
+		final long hash = mix(keyHash ^ mix(((long) srvRecord.getTarget().hashCode() << 32) | srvRecord.getPort()));
+		// Uniform value in the open interval (0, 1)
+		final double uniform = ((hash >>> 11) + 0.5) * 0x1.0p-53;
+		final double exponential = -Math.log(uniform);
+
+		if (srvRecord.getWeight() == 0) {
+			// Negative, so always below any weighted record.
+			return -exponential;
+		}
+		return srvRecord.getWeight() / exponential;
+	}
+
+	private static long hash(String key) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * SplitMix64 finaliser.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,104 @@
+package com.google.code.rfc3263.sorter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sip.address.Hop;
+
+import net.jcip.annotations.Immutable;
+
+import com.google.code.rfc3263.util.AddressFamily;
+
+/**
+ * This class interleaves IPv6 and IPv4 hops, as described by RFC 8305.
+ * <p>
+ * RFC 8305, Section 4
+ * <pre>
+ * If the first address of the sorted list is IPv6, then the first IPv4 address
+ * should be moved up in the list to be second in the list.  [...]  An
+ * implementation MAY want to favor one address family more by allowing
+ * multiple addresses of that family to be attempted before trying the next.
+ * The number of contiguous addresses of the first address family of
+ * properly sorted destination addresses will be referred to as the "First
+ * Address Family Count".
+ * </pre>
+ * This sorter starts with <code>firstFamilyCount</code> hops of the preferred
+ * family, then alternates between the families until one of them runs out.
+ * Hops of the same family keep their relative order, so a single broken family
+ * costs at most one timeout before a hop of the other family is tried.
+ *
+ * @see <a href="http://www.ietf.org/rfc/rfc8305.txt">RFC 8305</a>
+ */
+@Immutable
+public class AddressFamilyInterleavingHopSorter implements HopSorter {
+	public static final AddressFamily DEFAULT_PREFERRED_FAMILY = AddressFamily.IPV6;
+	public static final int DEFAULT_FIRST_FAMILY_COUNT = 1;
+
+	private final AddressFamily preferredFamily;
+	private final int firstFamilyCount;
+
+	/**
+	 * Creates a new instance of this class which prefers IPv6, with a first
+	 * address family count of 1.
+	 */
+	public AddressFamilyInterleavingHopSorter() {
+		this(DEFAULT_PREFERRED_FAMILY, DEFAULT_FIRST_FAMILY_COUNT);
+	}
+
+	/**
+	 * Creates a new instance of this class.
+	 *
+	 * @param preferredFamily the address family to try first.
+	 * @param firstFamilyCount the number of hops of the preferred family to try first.
+	 */
+	public AddressFamilyInterleavingHopSorter(AddressFamily preferredFamily, int firstFamilyCount) {
+		if (preferredFamily == null) {
+			throw new IllegalArgumentException("Preferred family must not be null");
+		}
+		if (firstFamilyCount < 1) {
+			throw new IllegalArgumentException("First family count must be positive: " + firstFamilyCount);
+		}
+		this.preferredFamily = preferredFamily;
+		this.firstFamilyCount = firstFamilyCount;
+	}
+
+	@Override
+	public void sort(List<Hop> hops) {
+		if (hops.size() < 2) {
+			return;
+		}
+		final List<Hop> preferred = new ArrayList<Hop>(hops.size());
+		final List<Hop> other = new ArrayList<Hop>(hops.size());
+		for (Hop hop : hops) {
+			if (getFamily(hop) == preferredFamily) {
+				preferred.add(hop);
+			} else {
+				other.add(hop);
+			}
+		}
+		if (preferred.isEmpty() || other.isEmpty()) {
+			return;
+		}
+
+		hops.clear();
+		int p = Math.min(firstFamilyCount, preferred.size());
+		hops.addAll(preferred.subList(0, p));
+		int o = 0;
+		while (p < preferred.size() || o < other.size()) {
+			if (o < other.size()) {
+				hops.add(other.get(o++));
+			}
+			if (p < preferred.size()) {
+				hops.add(preferred.get(p++));
+			}
+		}
+	}
+
+	/**
+	 * Returns the address family of the given resolved hop.  IPv6 hosts are
+	 * always held without square brackets, so any colon marks an IPv6 address.
+	 */
+	static AddressFamily getFamily(Hop hop) {
+		return hop.getHost().indexOf(':') == -1 ? AddressFamily.IPV4 : AddressFamily.IPV6;
+	}
+}
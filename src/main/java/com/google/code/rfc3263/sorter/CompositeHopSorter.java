@@ -0,0 +1,61 @@
+package com.google.code.rfc3263.sorter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sip.address.Hop;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * This class applies several hop sorters in turn.
+ * <p>
+ * Each sorter is applied to the output of the previous one, so the last sorter
+ * has the final say.  For example, ranking addresses within each target, then
+ * interleaving targets, then interleaving address families.
+ */
+@Immutable
+public class CompositeHopSorter implements HopSorter {
+	private final List<HopSorter> sorters;
+
+	/**
+	 * Creates a new instance of this class.
+	 *
+	 * @param sorters the sorters to apply, in order.
+	 */
+	public CompositeHopSorter(HopSorter... sorters) {
+		this(Arrays.asList(sorters));
+	}
+
+	/**
+	 * Creates a new instance of this class.
+	 *
+	 * @param sorters the sorters to apply, in order.
+	 */
+	public CompositeHopSorter(List<HopSorter> sorters) {
+		for (HopSorter sorter : sorters) {
+			if (sorter == null) {
+				throw new IllegalArgumentException("Sorters must not be null");
+			}
+		}
+		this.sorters = Collections.unmodifiableList(new ArrayList<HopSorter>(sorters));
+	}
+
+	/**
+	 * Returns the sorters applied by this sorter, in order.
+	 *
+	 * @return the sorters.
+	 */
+	public List<HopSorter> getSorters() {
+		return sorters;
+	}
+
+	@Override
+	public void sort(List<Hop> hops) {
+		for (HopSorter sorter : sorters) {
+			sorter.sort(hops);
+		}
+	}
+}
@@ -0,0 +1,402 @@
+package com.google.code.rfc3263.sorter;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import javax.sip.ListeningPoint;
+import javax.sip.address.Hop;
+
+import net.jcip.annotations.Immutable;
+
+import com.google.code.rfc3263.ResolvedHop;
+
+/**
+ * This class orders the addresses of each SRV target using the destination
+ * address selection rules of RFC 6724.
+ * <p>
+ * Each destination is paired with the local address which best matches it,
+ * and destinations are ranked by the following rules, in turn:
+ * <ol>
+ * <li>Avoid unusable destinations, for which there is no local address of the same family (Rule 1).</li>
+ * <li>Prefer matching scope (Rule 2).</li>
+ * <li>Prefer matching label (Rule 5).</li>
+ * <li>Prefer higher precedence (Rule 6).</li>
+ * <li>Prefer smaller scope (Rule 8).</li>
+ * <li>Use longest matching prefix, between destinations of the same family (Rule 9).</li>
+ * <li>Otherwise, leave the order unchanged (Rule 10).</li>
+ * </ol>
+ * The remaining rules depend on routing and address state which Java does not
+ * expose.  Labels and precedences are taken from the default policy table.
+ * <p>
+ * Only the hops of the same target are reordered relative to each other, so
+ * any order between targets, such as the SRV weight order, is preserved.  Hops
+ * are grouped by {@link ResolvedHop#getTarget()}; any other hop is treated as a
+ * target of its own.
+ *
+ * @see <a href="http://www.ietf.org/rfc/rfc6724.txt">RFC 6724</a>
+ */
+@Immutable
+public class DestinationAddressHopSorter implements HopSorter {
+	private static final int SCOPE_LINK_LOCAL = 0x2;
+	private static final int SCOPE_SITE_LOCAL = 0x5;
+	private static final int SCOPE_GLOBAL = 0xe;
+	/**
+	 * The prefix length assumed for IPv6 subnets, as Java does not give the
+	 * prefix length of an arbitrary local address.
+	 */
+	private static final int IPV6_PREFIX_LENGTH = 64;
+
+	// RFC 6724, Section 2.1
+	//
+	// Prefix        Precedence Label
+	// ::1/128               50     0
+	// ::/0                  40     1
+	// ::ffff:0:0/96         35     4
+	// 2002::/16             30     2
+	// 2001::/32              5     5
+	// fc00::/7               3    13
+	// ::/96                  1     3
+	// fec0::/10              1    11
+	// 3ffe::/16              1    12
+	private static final Policy[] POLICY_TABLE = {
+		new Policy("::1", 128, 50, 0),
+		new Policy("::ffff:0:0", 96, 35, 4),
+		new Policy("::", 96, 1, 3),
+		new Policy("2001::", 32, 5, 5),
+		new Policy("2002::", 16, 30, 2),
+		new Policy("3ffe::", 16, 1, 12),
+		new Policy("fec0::", 10, 1, 11),
+		new Policy("fc00::", 7, 3, 13),
+		new Policy("::", 0, 40, 1)
+	};
+
+	private final List<InetAddress> localAddresses;
+
+	/**
+	 * Creates a new instance of this class.
+	 *
+	 * @param localAddresses the addresses from which messages may be sent.
+	 */
+	public DestinationAddressHopSorter(Collection<? extends InetAddress> localAddresses) {
+		this.localAddresses = Collections.unmodifiableList(new ArrayList<InetAddress>(localAddresses));
+	}
+
+	/**
+	 * Creates a new instance of this class using the addresses of all local
+	 * network interfaces.
+	 *
+	 * @return the sorter.
+	 * @throws SocketException if the network interfaces cannot be listed.
+	 */
+	public static DestinationAddressHopSorter fromNetworkInterfaces() throws SocketException {
+		return new DestinationAddressHopSorter(getInterfaceAddresses());
+	}
+
+	/**
+	 * Creates a new instance of this class using the addresses of the given
+	 * listening points.  A wildcard listening point stands for the addresses of
+	 * its family on all local network interfaces.
+	 *
+	 * @param listeningPoints the listening points of the stack.
+	 * @return the sorter.
+	 * @throws SocketException if the network interfaces cannot be listed.
+	 * @throws UnknownHostException if the address of a listening point cannot be resolved.
+	 */
+	public static DestinationAddressHopSorter fromListeningPoints(Collection<? extends ListeningPoint> listeningPoints) throws SocketException, UnknownHostException {
+		final List<InetAddress> addresses = new ArrayList<InetAddress>();
+		List<InetAddress> interfaceAddresses = null;
+		for (ListeningPoint listeningPoint : listeningPoints) {
+			final InetAddress address = InetAddress.getByName(listeningPoint.getIPAddress());
+			if (address.isAnyLocalAddress()) {
+				if (interfaceAddresses == null) {
+					interfaceAddresses = getInterfaceAddresses();
+				}
+				for (InetAddress interfaceAddress : interfaceAddresses) {
+					if (getFamily(interfaceAddress) == getFamily(address) || address instanceof Inet6Address) {
+						addresses.add(interfaceAddress);
+					}
+				}
+			} else {
+				addresses.add(address);
+			}
+		}
+		return new DestinationAddressHopSorter(addresses);
+	}
+
+	/**
+	 * Returns the local addresses used by this sorter.
+	 *
+	 * @return the local addresses.
+	 */
+	public List<InetAddress> getLocalAddresses() {
+		return localAddresses;
+	}
+
+	@Override
+	public void sort(List<Hop> hops) {
+		if (hops.size() < 2) {
+			return;
+		}
+		final Map<Object, List<Destination>> targets = new LinkedHashMap<Object, List<Destination>>();
+		int i = 0;
+		for (Hop hop : hops) {
+			final Object target = hop instanceof ResolvedHop ? ((ResolvedHop) hop).getTarget() : hop;
+			List<Destination> destinations = targets.get(target);
+			if (destinations == null) {
+				destinations = new ArrayList<Destination>();
+				targets.put(target, destinations);
+			}
+			destinations.add(new Destination(hop, i++));
+		}
+		if (targets.size() == hops.size()) {
+			return;
+		}
+
+		final Hop[] sorted = new Hop[hops.size()];
+		for (List<Destination> destinations : targets.values()) {
+			if (destinations.size() == 1) {
+				final Destination destination = destinations.get(0);
+				sorted[destination.index] = destination.hop;
+				continue;
+			}
+			// The target keeps the positions it had; only its hops are reordered.
+			final int[] positions = new int[destinations.size()];
+			for (int j = 0; j < positions.length; j++) {
+				final Destination destination = destinations.get(j);
+				positions[j] = destination.index;
+				rank(destination);
+			}
+			Collections.sort(destinations, Destination.COMPARATOR);
+			for (int j = 0; j < positions.length; j++) {
+				sorted[positions[j]] = destinations.get(j).hop;
+			}
+		}
+
+		final ListIterator<Hop> iter = hops.listIterator();
+		for (Hop hop : sorted) {
+			iter.next();
+			iter.set(hop);
+		}
+	}
+
+	private void rank(Destination destination) {
+		final InetAddress address;
+		try {
+			address = ResolvedHop.toInetAddress(destination.hop);
+		} catch (UnknownHostException e) {
+			return;
+		}
+		final byte[] destinationBytes = toIPv6(address);
+		final int destinationScope = getScope(address);
+		final Policy destinationPolicy = getPolicy(destinationBytes);
+
+		// Choose the source address: same family, then same scope, then longest prefix.
+		InetAddress source = null;
+		boolean sourceScopeMatches = false;
+		int sourcePrefix = -1;
+		for (InetAddress localAddress : localAddresses) {
+			if (getFamily(localAddress) != getFamily(address)) {
+				continue;
+			}
+			final boolean scopeMatches = getScope(localAddress) == destinationScope;
+			final int prefix = commonPrefixLength(localAddress, address);
+			if (source == null || (scopeMatches && sourceScopeMatches == false) || (scopeMatches == sourceScopeMatches && prefix > sourcePrefix)) {
+				source = localAddress;
+				sourceScopeMatches = scopeMatches;
+				sourcePrefix = prefix;
+			}
+		}
+		if (source == null) {
+			return;
+		}
+
+		destination.usable = true;
+		destination.family = getFamily(address);
+		destination.scopeMatches = sourceScopeMatches;
+		destination.labelMatches = getPolicy(toIPv6(source)).label == destinationPolicy.label;
+		destination.precedence = destinationPolicy.precedence;
+		destination.scope = destinationScope;
+		destination.prefixLength = sourcePrefix;
+	}
+
+	private static List<InetAddress> getInterfaceAddresses() throws SocketException {
+		final List<InetAddress> addresses = new ArrayList<InetAddress>();
+		final Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+		while (interfaces != null && interfaces.hasMoreElements()) {
+			final NetworkInterface networkInterface = interfaces.nextElement();
+			if (networkInterface.isUp() == false) {
+				continue;
+			}
+			final Enumeration<InetAddress> interfaceAddresses = networkInterface.getInetAddresses();
+			while (interfaceAddresses.hasMoreElements()) {
+				addresses.add(interfaceAddresses.nextElement());
+			}
+		}
+		return addresses;
+	}
+
+	private static int getFamily(InetAddress address) {
+		return address instanceof Inet4Address ? 4 : 6;
+	}
+
+	/**
+	 * RFC 6724, Section 3.2: IPv4 loopback and link-local addresses have
+	 * link-local scope, and all other IPv4 addresses have global scope.
+	 */
+	private static int getScope(InetAddress address) {
+		if (address.isLoopbackAddress() || address.isLinkLocalAddress()) {
+			return SCOPE_LINK_LOCAL;
+		} else if (address.isSiteLocalAddress() && address instanceof Inet6Address) {
+			return SCOPE_SITE_LOCAL;
+		}
+		return SCOPE_GLOBAL;
+	}
+
+	/**
+	 * Returns the length of the common prefix of two addresses of the same
+	 * family, up to the assumed subnet prefix length for IPv6.
+	 */
+	private static int commonPrefixLength(InetAddress a, InetAddress b) {
+		final byte[] x = a.getAddress();
+		final byte[] y = b.getAddress();
+		final int max = x.length == 4 ? 32 : IPV6_PREFIX_LENGTH;
+		int length = 0;
+		for (int i = 0; i < x.length && length < max; i++) {
+			final int diff = (x[i] ^ y[i]) & 0xff;
+			if (diff != 0) {
+				length += Integer.numberOfLeadingZeros(diff) - 24;
+				break;
+			}
+			length += 8;
+		}
+		return Math.min(length, max);
+	}
+
+	private static byte[] toIPv6(InetAddress address) {
+		final byte[] bytes = address.getAddress();
+		if (bytes.length == 16) {
+			return bytes;
+		}
+		// IPv4-mapped
+		final byte[] mapped = new byte[16];
+		mapped[10] = (byte) 0xff;
+		mapped[11] = (byte) 0xff;
+		System.arraycopy(bytes, 0, mapped, 12, 4);
+		return mapped;
+	}
+
+	private static Policy getPolicy(byte[] address) {
+		for (Policy policy : POLICY_TABLE) {
+			if (policy.matches(address)) {
+				return policy;
+			}
+		}
+		throw new IllegalStateException("Policy table has no default entry");
+	}
+
+	@Immutable
+	private static final class Policy {
+		private final byte[] prefix;
+		private final int prefixLength;
+		private final int precedence;
+		private final int label;
+
+		private Policy(String prefix, int prefixLength, int precedence, int label) {
+			try {
+				this.prefix = InetAddress.getByName(prefix).getAddress();
+			} catch (UnknownHostException e) {
+				throw new IllegalArgumentException(e);
+			}
+			this.prefixLength = prefixLength;
+			this.precedence = precedence;
+			this.label = label;
+		}
+
+		private boolean matches(byte[] address) {
+			if (prefix.length != address.length) {
+				// ::ffff:0:0 is returned as an IPv4 address by InetAddress
+				return matchesMapped(address);
+			}
+			for (int bit = 0; bit < prefixLength; bit++) {
+				final int mask = 0x80 >>> (bit & 7);
+				if ((prefix[bit >>> 3] & mask) != (address[bit >>> 3] & mask)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean matchesMapped(byte[] address) {
+			for (int i = 0; i < 10; i++) {
+				if (address[i] != 0) {
+					return false;
+				}
+			}
+			return address[10] == (byte) 0xff && address[11] == (byte) 0xff;
+		}
+	}
+
+	private static final class Destination {
+		private static final Comparator<Destination> COMPARATOR = new Comparator<Destination>() {
+			public int compare(Destination o1, Destination o2) {
+				// Rule 1: Avoid unusable destinations.
+				if (o1.usable != o2.usable) {
+					return o1.usable ? -1 : 1;
+				}
+				if (o1.usable == false) {
+					return 0;
+				}
+				// Rule 2: Prefer matching scope.
+				if (o1.scopeMatches != o2.scopeMatches) {
+					return o1.scopeMatches ? -1 : 1;
+				}
+				// Rule 5: Prefer matching label.
+				if (o1.labelMatches != o2.labelMatches) {
+					return o1.labelMatches ? -1 : 1;
+				}
+				// Rule 6: Prefer higher precedence.
+				if (o1.precedence != o2.precedence) {
+					return o2.precedence - o1.precedence;
+				}
+				// Rule 8: Prefer smaller scope.
+				if (o1.scope != o2.scope) {
+					return o1.scope - o2.scope;
+				}
+				// Rule 9: Use longest matching prefix, within the same family.
+				if (o1.family == o2.family) {
+					return o2.prefixLength - o1.prefixLength;
+				}
+				// Rule 10: Otherwise, leave the order unchanged (the sort is stable).
+				return 0;
+			}
+		};
+
+		private final Hop hop;
+		private final int index;
+		private boolean usable;
+		private int family;
+		private boolean scopeMatches;
+		private boolean labelMatches;
+		private int precedence;
+		private int scope;
+		private int prefixLength;
+
+		private Destination(Hop hop, int index) {
+			this.hop = hop;
+			this.index = index;
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package com.google.code.rfc3263.sorter;
+
+import java.util.List;
+
+import javax.sip.address.Hop;
+
+/**
+ * This interface is used to reorder resolved hops.
+ * <p>
+ * The {@link com.google.code.rfc3263.Locator} calls {@link #sort(List)} once
+ * for each group of hops resolved from the same SRV priority (or from a single
+ * A/AAAA lookup), so implementations can never move a hop across a priority
+ * boundary.  Implementations may also remove hops from the list, but must not
+ * add any.
+ */
+public interface HopSorter {
+
+	public void sort(List<Hop> hops);
+
+}
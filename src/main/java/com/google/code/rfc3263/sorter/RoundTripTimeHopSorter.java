@@ -0,0 +1,294 @@
+package com.google.code.rfc3263.sorter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.sip.address.Hop;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.code.rfc3263.HopImpl;
+
+/**
+ * This class moves consistently slow hops to the end of their group.
+ * <p>
+ * Applications feed the sorter with the round trip time of each transaction
+ * through {@link #recordRtt(Hop, long)}, which is folded into an exponentially
+ * weighted moving average (EWMA) per hop.  When sorting, a hop is considered slow
+ * if it has at least <code>minSamples</code> samples and its average is more
+ * than <code>slownessFactor</code> times the average of the fastest hop in the
+ * group.  Slow hops are moved to the end of the group, fastest first; all other
+ * hops keep the order determined by DNS.
+ * <p>
+ * As a slow hop gets little traffic, it would otherwise stay slow forever.
+ * The estimate of a hop therefore expires when no sample has been recorded for
+ * <code>maxAge</code>, which puts the hop back in DNS order so that it is
+ * probed again, and a new estimate is started from its next sample.  At most
+ * <code>maxHops</code> estimates are kept: when the sorter is full, expired
+ * estimates are discarded first, and then an arbitrary one.
+ */
+@ThreadSafe
+public class RoundTripTimeHopSorter implements HopSorter {
+	public static final double DEFAULT_ALPHA = 0.2;
+	public static final double DEFAULT_SLOWNESS_FACTOR = 2.0;
+	public static final int DEFAULT_MIN_SAMPLES = 5;
+	/**
+	 * The default time after which an estimate without new samples expires, in seconds.
+	 */
+	public static final long DEFAULT_MAX_AGE = 60;
+	/**
+	 * The default maximum number of hops with an estimate.
+	 */
+	public static final int DEFAULT_MAX_HOPS = 10000;
+
+	private final ConcurrentMap<Hop, Estimate> estimates = new ConcurrentHashMap<Hop, Estimate>();
+	private final double alpha;
+	private final double slownessFactor;
+	private final int minSamples;
+	private final long maxAgeNanos;
+	private final int maxHops;
+
+	/**
+	 * Creates a new instance of this class using the default smoothing factor,
+	 * slowness factor, sample threshold, maximum age and maximum number of hops.
+	 */
+	public RoundTripTimeHopSorter() {
+		this(DEFAULT_ALPHA, DEFAULT_SLOWNESS_FACTOR, DEFAULT_MIN_SAMPLES);
+	}
+
+	/**
+	 * Creates a new instance of this class using the default maximum age and
+	 * maximum number of hops.
+	 *
+	 * @param alpha the EWMA smoothing factor, between 0 (exclusive) and 1 (inclusive).
+	 * @param slownessFactor how many times slower than the fastest hop a hop must be to be moved down.
+	 * @param minSamples the number of samples required before a hop can be moved down.
+	 */
+	public RoundTripTimeHopSorter(double alpha, double slownessFactor, int minSamples) {
+		this(alpha, slownessFactor, minSamples, DEFAULT_MAX_AGE, TimeUnit.SECONDS, DEFAULT_MAX_HOPS);
+	}
+
+	/**
+	 * Creates a new instance of this class.
+	 *
+	 * @param alpha the EWMA smoothing factor, between 0 (exclusive) and 1 (inclusive).
+	 * @param slownessFactor how many times slower than the fastest hop a hop must be to be moved down.
+	 * @param minSamples the number of samples required before a hop can be moved down.
+	 * @param maxAge how long an estimate is kept without new samples.
+	 * @param unit the unit of the maximum age.
+	 * @param maxHops the maximum number of hops with an estimate.
+	 */
+	public RoundTripTimeHopSorter(double alpha, double slownessFactor, int minSamples, long maxAge, TimeUnit unit, int maxHops) {
+		if (alpha <= 0 || alpha > 1) {
+			throw new IllegalArgumentException("Alpha must be in (0, 1]: " + alpha);
+		}
+		if (slownessFactor < 1) {
+			throw new IllegalArgumentException("Slowness factor must be at least 1: " + slownessFactor);
+		}
+		if (minSamples < 0) {
+			throw new IllegalArgumentException("Minimum samples must not be negative: " + minSamples);
+		}
+		if (maxAge <= 0) {
+			throw new IllegalArgumentException("Maximum age must be positive: " + maxAge);
+		}
+		if (maxHops < 1) {
+			throw new IllegalArgumentException("Maximum hops must be positive: " + maxHops);
+		}
+		this.alpha = alpha;
+		this.slownessFactor = slownessFactor;
+		this.minSamples = minSamples;
+		this.maxAgeNanos = unit.toNanos(maxAge);
+		this.maxHops = maxHops;
+	}
+
+	/**
+	 * Records the round trip time of a transaction sent to the given hop.
+	 *
+	 * @param hop the hop the transaction was sent to.
+	 * @param nanos the round trip time, in nanoseconds.
+	 */
+	public void recordRtt(Hop hop, long nanos) {
+		final Hop key = getKey(hop);
+		final long now = System.nanoTime();
+		Estimate estimate = estimates.get(key);
+		if (estimate == null) {
+			makeRoom(now);
+			final Estimate newEstimate = new Estimate();
+			estimate = estimates.putIfAbsent(key, newEstimate);
+			if (estimate == null) {
+				estimate = newEstimate;
+			}
+		}
+		estimate.update(nanos, alpha, now, maxAgeNanos);
+	}
+
+	/**
+	 * Returns the smoothed round trip time for the given hop.
+	 *
+	 * @param hop the hop.
+	 * @return the smoothed round trip time in nanoseconds, or <code>NaN</code> if no samples have been recorded.
+	 */
+	public double getRtt(Hop hop) {
+		final Estimate estimate = estimates.get(getKey(hop));
+		if (estimate == null) {
+			return Double.NaN;
+		}
+		return estimate.getAverage(0, System.nanoTime(), maxAgeNanos);
+	}
+
+	/**
+	 * Returns the smoothed round trip time of every hop with an estimate which
+	 * has not expired.
+	 *
+	 * @return a snapshot of the smoothed round trip times in nanoseconds, by hop.
+	 */
+	public Map<Hop, Double> getRtts() {
+		final Map<Hop, Double> rtts = new HashMap<Hop, Double>();
+		final long now = System.nanoTime();
+		for (Map.Entry<Hop, Estimate> entry : estimates.entrySet()) {
+			final double rtt = entry.getValue().getAverage(0, now, maxAgeNanos);
+			if (!Double.isNaN(rtt)) {
+				rtts.put(entry.getKey(), rtt);
+			}
+		}
+		return rtts;
+	}
+
+	/**
+	 * Discards the round trip times recorded for every hop, so all hops are
+	 * kept in DNS order until enough new samples have been recorded.
+	 */
+	public void clear() {
+		estimates.clear();
+	}
+
+	@Override
+	public void sort(List<Hop> hops) {
+		final int size = hops.size();
+		if (size < 2) {
+			return;
+		}
+
+		final double[] rtts = new double[size];
+		final long now = System.nanoTime();
+		double fastest = Double.POSITIVE_INFINITY;
+		int i = 0;
+		for (Hop hop : hops) {
+			final Estimate estimate = estimates.get(getKey(hop));
+			rtts[i] = estimate == null ? Double.NaN : estimate.getAverage(minSamples, now, maxAgeNanos);
+			if (rtts[i] < fastest) {
+				fastest = rtts[i];
+			}
+			i++;
+		}
+		if (fastest == Double.POSITIVE_INFINITY) {
+			return;
+		}
+
+		final double threshold = fastest * slownessFactor;
+		final List<SlowHop> slowHops = new ArrayList<SlowHop>();
+		final ListIterator<Hop> iter = hops.listIterator();
+		for (i = 0; i < size; i++) {
+			final Hop hop = iter.next();
+			if (rtts[i] > threshold) {
+				slowHops.add(new SlowHop(hop, rtts[i]));
+				iter.remove();
+			}
+		}
+		Collections.sort(slowHops, SlowHop.COMPARATOR);
+		for (SlowHop slowHop : slowHops) {
+			hops.add(slowHop.hop);
+		}
+	}
+
+	/**
+	 * Discards expired estimates if the sorter is full, and then an arbitrary
+	 * estimate if it is still full.
+	 */
+	private void makeRoom(long now) {
+		if (estimates.size() < maxHops) {
+			return;
+		}
+		for (Iterator<Estimate> iter = estimates.values().iterator(); iter.hasNext();) {
+			if (iter.next().isExpired(now, maxAgeNanos)) {
+				iter.remove();
+			}
+		}
+		if (estimates.size() >= maxHops) {
+			final Iterator<Hop> iter = estimates.keySet().iterator();
+			if (iter.hasNext()) {
+				iter.next();
+				iter.remove();
+			}
+		}
+	}
+
+	private static Hop getKey(Hop hop) {
+		if (hop instanceof HopImpl) {
+			return hop;
+		}
+		return new HopImpl(hop.getHost(), hop.getPort(), hop.getTransport());
+	}
+
+	private static final class Estimate {
+		@GuardedBy("this")
+		private double average;
+		@GuardedBy("this")
+		private long samples;
+		@GuardedBy("this")
+		private long updated;
+
+		private synchronized void update(long nanos, double alpha, long now, long maxAgeNanos) {
+			if (samples == 0 || isExpired(now, maxAgeNanos)) {
+				// Start again from this sample.
+				average = nanos;
+				samples = 0;
+			} else {
+				average += alpha * (nanos - average);
+			}
+			samples++;
+			updated = now;
+		}
+
+		/**
+		 * Returns the average, or NaN if there are fewer than the given number
+		 * of samples or the estimate has expired.
+		 */
+		private synchronized double getAverage(int minSamples, long now, long maxAgeNanos) {
+			if (samples == 0 || samples < minSamples || isExpired(now, maxAgeNanos)) {
+				return Double.NaN;
+			}
+			return average;
+		}
+
+		private synchronized boolean isExpired(long now, long maxAgeNanos) {
+			return samples != 0 && now - updated >= maxAgeNanos;
+		}
+	}
+
+	private static final class SlowHop {
+		private static final Comparator<SlowHop> COMPARATOR = new Comparator<SlowHop>() {
+			public int compare(SlowHop o1, SlowHop o2) {
+				return Double.compare(o1.rtt, o2.rtt);
+			}
+		};
+
+		private final Hop hop;
+		private final double rtt;
+
+		private SlowHop(Hop hop, double rtt) {
+			this.hop = hop;
+			this.rtt = rtt;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.google.code.rfc3263.sorter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sip.address.Hop;
+
+import net.jcip.annotations.Immutable;
+
+import com.google.code.rfc3263.ResolvedHop;
+
+/**
+ * This class interleaves the hops of different SRV targets.
+ * <p>
+ * The locator lists every address of one SRV target before any address of the
+ * next, so when a target with many addresses sits behind a single failing load
+ * balancer, a client must wait for a timeout on each of them before it reaches
+ * another target.  This sorter takes one hop from each target in turn, in the
+ * order in which the targets first appear, so consecutive failovers land on
+ * different targets.  Optionally, only the first <code>maxHopsPerTarget</code>
+ * hops of each target are kept.
+ * <p>
+ * Hops are grouped by {@link ResolvedHop#getTarget()}.  Any other hop is
+ * treated as a target of its own.
+ */
+@Immutable
+public class ServiceTargetInterleavingHopSorter implements HopSorter {
+	/**
+	 * Keeps every hop of every target.
+	 */
+	public static final int UNLIMITED = Integer.MAX_VALUE;
+
+	private final int maxHopsPerTarget;
+
+	/**
+	 * Creates a new instance of this class which keeps every hop.
+	 */
+	public ServiceTargetInterleavingHopSorter() {
+		this(UNLIMITED);
+	}
+
+	/**
+	 * Creates a new instance of this class.
+	 *
+	 * @param maxHopsPerTarget the number of hops to keep for each target, or {@link #UNLIMITED}.
+	 */
+	public ServiceTargetInterleavingHopSorter(int maxHopsPerTarget) {
+		if (maxHopsPerTarget < 1) {
+			throw new IllegalArgumentException("Maximum hops per target must be positive: " + maxHopsPerTarget);
+		}
+		this.maxHopsPerTarget = maxHopsPerTarget;
+	}
+
+	@Override
+	public void sort(List<Hop> hops) {
+		if (hops.size() < 2) {
+			return;
+		}
+		final Map<Object, List<Hop>> targets = new LinkedHashMap<Object, List<Hop>>();
+		int longest = 0;
+		for (Hop hop : hops) {
+			final Object target = hop instanceof ResolvedHop ? ((ResolvedHop) hop).getTarget() : hop;
+			List<Hop> targetHops = targets.get(target);
+			if (targetHops == null) {
+				targetHops = new ArrayList<Hop>();
+				targets.put(target, targetHops);
+			}
+			if (targetHops.size() < maxHopsPerTarget) {
+				targetHops.add(hop);
+				longest = Math.max(longest, targetHops.size());
+			}
+		}
+
+		hops.clear();
+		for (int i = 0; i < longest; i++) {
+			for (List<Hop> targetHops : targets.values()) {
+				if (i < targetHops.size()) {
+					hops.add(targetHops.get(i));
+				}
+			}
+		}
+	}
+}
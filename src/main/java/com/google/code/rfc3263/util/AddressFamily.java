@@ -0,0 +1,50 @@
+package com.google.code.rfc3263.util;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * This enum describes the IP address families a SIP stack may use.
+ */
+@Immutable
+public enum AddressFamily {
+	/**
+	 * IPv4, resolved from A records.
+	 */
+	IPV4,
+	/**
+	 * IPv6, resolved from AAAA records.
+	 */
+	IPV6;
+
+	/**
+	 * Returns the address families which can be reached from the given local
+	 * address, such as the IP address of a {@link javax.sip.ListeningPoint}.
+	 * <p>
+	 * An IPv4 address can only reach IPv4 addresses.  An IPv6 address can only
+	 * reach IPv6 addresses, except for the IPv6 wildcard address, which accepts
+	 * both families on a dual-stack host.  The families for a host name cannot be
+	 * known without a lookup, so both are returned.
+	 *
+	 * @param localAddress the local address, which may be an IPv6 reference.
+	 * @return the reachable address families.
+	 */
+	public static Set<AddressFamily> fromLocalAddress(String localAddress) {
+		if (AddressLiteralParser.isIPv4Address(localAddress)) {
+			return EnumSet.of(IPV4);
+		}
+		final String reference = LocatorUtils.isIPv6Reference(localAddress) ? localAddress : "[" + localAddress + "]";
+		final byte[] address = new byte[AddressLiteralParser.IPV6_LENGTH];
+		if (AddressLiteralParser.parseIPv6Reference(reference, address)) {
+			for (byte b : address) {
+				if (b != 0) {
+					return EnumSet.of(IPV6);
+				}
+			}
+			return EnumSet.allOf(AddressFamily.class);
+		}
+		return EnumSet.allOf(AddressFamily.class);
+	}
+}
@@ -0,0 +1,291 @@
+package com.google.code.rfc3263.util;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * This class recognises and parses IPv4 address and IPv6 reference literals.
+ * <p>
+ * The methods of this class make a single pass over their input and do not
+ * allocate, so they are suitable for use on every request.  The recognisers
+ * follow the <code>IPv4address</code> and <code>IPv6reference</code> productions
+ * of RFC 3261 exactly; the parsers additionally check that the literal denotes
+ * a real address, and write its bytes to a caller-supplied array.
+ */
+@ThreadSafe
+public final class AddressLiteralParser {
+	/**
+	 * The number of bytes in an IPv4 address.
+	 */
+	public static final int IPV4_LENGTH = 4;
+	/**
+	 * The number of bytes in an IPv6 address.
+	 */
+	public static final int IPV6_LENGTH = 16;
+
+	private AddressLiteralParser() {}
+
+	/**
+	 * Returns <code>true</code> if the given host matches the RFC 3261
+	 * <code>IPv4address</code> production.
+	 * <p>
+	 * RFC 3261, Section 25.1
+	 * <pre>
+	 * IPv4address    =  1*3DIGIT "." 1*3DIGIT "." 1*3DIGIT "." 1*3DIGIT
+	 * </pre>
+	 *
+	 * @param host the host to check.
+	 * @return <code>true</code> if the host is an IPv4 address, <code>false</code> otherwise.
+	 */
+	public static boolean isIPv4Address(String host) {
+		return isIPv4Address(host, 0, host.length());
+	}
+
+	/**
+	 * Returns <code>true</code> if the given host matches the RFC 3261
+	 * <code>IPv6reference</code> production.
+	 * <p>
+	 * RFC 3261, Section 25.1
+	 * <pre>
+	 * IPv6reference  =  "[" IPv6address "]"
+	 * IPv6address    =  hexpart [ ":" IPv4address ]
+	 * hexpart        =  hexseq / hexseq "::" [ hexseq ] / "::" [ hexseq ]
+	 * hexseq         =  hex4 *( ":" hex4)
+	 * hex4           =  1*4HEXDIG
+	 * </pre>
+	 *
+	 * @param host the host to check.
+	 * @return <code>true</code> if the host is an IPv6 reference, <code>false</code> otherwise.
+	 */
+	public static boolean isIPv6Reference(String host) {
+		final int length = host.length();
+		if (length < 2 || host.charAt(0) != '[' || host.charAt(length - 1) != ']') {
+			return false;
+		}
+		return isIPv6Address(host, 1, length - 1);
+	}
+
+	/**
+	 * Parses the given IPv4 address into the given array.
+	 *
+	 * @param host the host to parse.
+	 * @param dst the array to receive the {@value #IPV4_LENGTH} address bytes.
+	 * @return <code>true</code> if the host is a valid IPv4 address, <code>false</code> otherwise.
+	 */
+	public static boolean parseIPv4Address(String host, byte[] dst) {
+		return parseIPv4Address(host, 0, host.length(), dst, 0);
+	}
+
+	/**
+	 * Parses the given IPv6 reference into the given array.
+	 *
+	 * @param host the host to parse, including the square brackets.
+	 * @param dst the array to receive the {@value #IPV6_LENGTH} address bytes.
+	 * @return <code>true</code> if the host is a valid IPv6 reference, <code>false</code> otherwise.
+	 */
+	public static boolean parseIPv6Reference(String host, byte[] dst) {
+		if (isIPv6Reference(host) == false) {
+			return false;
+		}
+		return parseIPv6Address(host, 1, host.length() - 1, dst);
+	}
+
+	private static boolean isIPv4Address(String host, int start, int end) {
+		int groups = 0;
+		int digits = 0;
+		for (int i = start; i < end; i++) {
+			final char c = host.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (++digits > 3) {
+					return false;
+				}
+			} else if (c == '.') {
+				if (digits == 0 || ++groups > 3) {
+					return false;
+				}
+				digits = 0;
+			} else {
+				return false;
+			}
+		}
+		return groups == 3 && digits > 0;
+	}
+
+	private static boolean isIPv6Address(String host, int start, int end) {
+		final int tail = findIPv4Tail(host, start, end);
+		if (tail == -1) {
+			return isHexPart(host, start, end);
+		}
+		// The tail is separated from the hexpart by a single colon
+		return isIPv4Address(host, tail, end) && isHexPart(host, start, tail - 1);
+	}
+
+	/**
+	 * Returns the start of the trailing IPv4 address, or -1 if there is none.
+	 * <p>
+	 * An IPv4 address contains no colons, so it can only follow the last colon.
+	 */
+	private static int findIPv4Tail(String host, int start, int end) {
+		for (int i = end - 1; i >= start; i--) {
+			final char c = host.charAt(i);
+			if (c == '.') {
+				for (int j = i - 1; j >= start; j--) {
+					if (host.charAt(j) == ':') {
+						return j + 1;
+					}
+				}
+				return -1;
+			} else if (c == ':') {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isHexPart(String host, int start, int end) {
+		final int compression = findCompression(host, start, end);
+		if (compression == -1) {
+			return isHexSeq(host, start, end);
+		}
+		final int rightStart = compression + 2;
+		return (compression == start || isHexSeq(host, start, compression))
+			&& (rightStart == end || isHexSeq(host, rightStart, end));
+	}
+
+	private static int findCompression(String host, int start, int end) {
+		for (int i = start; i < end - 1; i++) {
+			if (host.charAt(i) == ':' && host.charAt(i + 1) == ':') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isHexSeq(String host, int start, int end) {
+		int digits = 0;
+		for (int i = start; i < end; i++) {
+			final char c = host.charAt(i);
+			if (c == ':') {
+				if (digits == 0) {
+					return false;
+				}
+				digits = 0;
+			} else if (hexValue(c) != -1) {
+				if (++digits > 4) {
+					return false;
+				}
+			} else {
+				return false;
+			}
+		}
+		return digits > 0;
+	}
+
+	private static boolean parseIPv4Address(String host, int start, int end, byte[] dst, int offset) {
+		if (isIPv4Address(host, start, end) == false) {
+			return false;
+		}
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			final char c = host.charAt(i);
+			if (c == '.') {
+				dst[offset++] = (byte) value;
+				value = 0;
+			} else {
+				value = value * 10 + (c - '0');
+				if (value > 255) {
+					return false;
+				}
+			}
+		}
+		dst[offset] = (byte) value;
+		return true;
+	}
+
+	/**
+	 * Parses an address which is already known to match the IPv6address production.
+	 */
+	private static boolean parseIPv6Address(String host, int start, int end, byte[] dst) {
+		final int tail = findIPv4Tail(host, start, end);
+		final int hexEnd = tail == -1 ? end : tail - 1;
+		if (tail != -1 && host.charAt(hexEnd - 1) == ':') {
+			// The grammar allows "::" immediately followed by ":" and an IPv4 address.
+			return false;
+		}
+		final int compression = findCompression(host, start, hexEnd);
+
+		final int leftEnd = compression == -1 ? hexEnd : compression;
+		int length = parseHexSeq(host, start, leftEnd, dst, 0);
+		if (length == -1) {
+			return false;
+		}
+		if (compression == -1) {
+			if (tail != -1) {
+				if (length + IPV4_LENGTH != IPV6_LENGTH) {
+					return false;
+				}
+				return parseIPv4Address(host, tail, end, dst, length);
+			}
+			return length == IPV6_LENGTH;
+		}
+
+		final int leftLength = length;
+		length = parseHexSeq(host, compression + 2, hexEnd, dst, length);
+		if (length == -1) {
+			return false;
+		}
+		if (tail != -1) {
+			if (length + IPV4_LENGTH > IPV6_LENGTH - 2) {
+				return false;
+			}
+			if (parseIPv4Address(host, tail, end, dst, length) == false) {
+				return false;
+			}
+			length += IPV4_LENGTH;
+		}
+		// "::" stands for at least one group of zeros.
+		if (length > IPV6_LENGTH - 2) {
+			return false;
+		}
+		final int rightLength = length - leftLength;
+		System.arraycopy(dst, leftLength, dst, IPV6_LENGTH - rightLength, rightLength);
+		for (int i = leftLength; i < IPV6_LENGTH - rightLength; i++) {
+			dst[i] = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a (possibly empty) hexseq into the array, returning the new offset,
+	 * or -1 if the array would overflow.
+	 */
+	private static int parseHexSeq(String host, int start, int end, byte[] dst, int offset) {
+		if (start == end) {
+			return offset;
+		}
+		int value = 0;
+		for (int i = start; i <= end; i++) {
+			if (i == end || host.charAt(i) == ':') {
+				if (offset + 2 > IPV6_LENGTH) {
+					return -1;
+				}
+				dst[offset++] = (byte) (value >> 8);
+				dst[offset++] = (byte) value;
+				value = 0;
+			} else {
+				value = (value << 4) | hexValue(host.charAt(i));
+			}
+		}
+		return offset;
+	}
+
+	private static int hexValue(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		} else if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		} else if (c >= 'A' && c <= 'F') {
+			return c - 'A' + 10;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,174 @@
+package com.google.code.rfc3263.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * This class is a lock-free histogram of latencies in nanoseconds.
+ * <p>
+ * Values are counted in buckets of 2<sup>n</sup> to 2<sup>n+1</sup>
+ * nanoseconds, each split into {@value #SUB_BUCKETS} linear sub-buckets, so
+ * percentiles are accurate to about 6%.  Recording a value is a few atomic
+ * increments with no allocation, so a histogram can be left on in production.
+ * <p>
+ * Reads are not atomic with respect to concurrent writes: a value recorded
+ * while a percentile is being computed may or may not be included.
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	/**
+	 * The number of linear sub-buckets in each power of two.
+	 */
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = 65 - SUB_BUCKET_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS * SUB_BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a latency.  Negative values are recorded as zero.
+	 *
+	 * @param nanos the latency in nanoseconds.
+	 */
+	public void record(long nanos) {
+		final long value = Math.max(nanos, 0);
+		counts.incrementAndGet(index(value));
+		total.addAndGet(value);
+		long current = max.get();
+		while (value > current && max.compareAndSet(current, value) == false) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * Adds the values recorded by another histogram to this one.
+	 *
+	 * @param other the other histogram.
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length(); i++) {
+			final long count = other.counts.get(i);
+			if (count != 0) {
+				counts.addAndGet(i, count);
+			}
+		}
+		total.addAndGet(other.total.get());
+		final long otherMax = other.max.get();
+		long current = max.get();
+		while (otherMax > current && max.compareAndSet(current, otherMax) == false) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 *
+	 * @return the number of values.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the sum of the recorded values.
+	 *
+	 * @return the sum in nanoseconds.
+	 */
+	public long getTotal() {
+		return total.get();
+	}
+
+	/**
+	 * Returns the largest recorded value.
+	 *
+	 * @return the largest value in nanoseconds, or zero if there are none.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the mean of the recorded values.
+	 *
+	 * @return the mean in nanoseconds, or zero if there are none.
+	 */
+	public double getMean() {
+		final long count = getCount();
+		return count == 0 ? 0 : (double) total.get() / count;
+	}
+
+	/**
+	 * Returns an upper bound for the given percentile of the recorded values.
+	 *
+	 * @param percentile the percentile, from 0 to 100.
+	 * @return the upper bound of the bucket holding the percentile, in
+	 * nanoseconds, or zero if there are no values.
+	 */
+	public long getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile is not between 0 and 100: " + percentile);
+		}
+		final long[] snapshot = new long[counts.length()];
+		long count = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+		final long largest = max.get();
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(upperBound(i), largest);
+			}
+		}
+		return largest;
+	}
+
+	/**
+	 * Discards all recorded values.  Values recorded during the reset may be
+	 * partly kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		total.set(0);
+		max.set(0);
+	}
+
+	private static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int bucket = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+		final int subBucket = (int) (value >>> (bucket - 1)) & (SUB_BUCKETS - 1);
+		return bucket * SUB_BUCKETS + subBucket;
+	}
+
+	private static long upperBound(int index) {
+		final int bucket = index / SUB_BUCKETS;
+		final int subBucket = index % SUB_BUCKETS;
+		if (bucket == 0) {
+			return subBucket;
+		}
+		return ((long) (SUB_BUCKETS + subBucket + 1) << (bucket - 1)) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram[count=" + getCount() + ", p50=" + getPercentile(50) + "ns, p99=" + getPercentile(99) + "ns, max=" + getMax() + "ns]";
+	}
+}
@@ -1,15 +1,6 @@
 package com.google.code.rfc3263.util;
 
-import static javax.sip.ListeningPoint.SCTP;
-import static javax.sip.ListeningPoint.TCP;
-import static javax.sip.ListeningPoint.TLS;
-import static javax.sip.ListeningPoint.UDP;
-
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.sip.address.SipURI;
 
@@ -17,7 +8,6 @@ import net.jcip.annotations.ThreadSafe;
 
 import org.apache.log4j.Logger;
 import org.xbill.DNS.Name;
-import org.xbill.DNS.TextParseException;
 
 /**
  * This class contains a collection of useful utility methods.
@@ -25,32 +15,6 @@ import org.xbill.DNS.TextParseException;
 @ThreadSafe
 public final class LocatorUtils {
 	private final static Logger LOGGER = Logger.getLogger(LocatorUtils.class);
-	private final static Set<String> knownTransports = new HashSet<String>();
-	static {
-		knownTransports.add(UDP);
-		knownTransports.add(TCP);
-		knownTransports.add(TLS);
-		knownTransports.add(SCTP);
-		knownTransports.add("TLS-SCTP");
-	}
-
-	private static Name _SIP;
-	private static Name _SIPS;
-	private static Name _SCTP;
-	private static Name _TCP;
-	private static Name _UDP;
-	
-	static {
-		try {
-			_SIP = new Name("_sip");
-			_SIPS = new Name("_sips");
-			_SCTP = new Name("_sctp");
-			_TCP = new Name("_tcp");
-			_UDP = new Name("_udp");
-		} catch (TextParseException e) {
-			// Do nothing
-		}
-	}
 	
 	private LocatorUtils() {}
 
@@ -87,18 +51,7 @@ public final class LocatorUtils {
 			LOGGER.debug("isIPv4Address(" + host + ")");
 		}
 		
-		// RFC 2234, Section 6.1
-		//
-		// DIGIT          =  %x30-39
-		//
-		// RFC 3261, Section 25.1
-		//
-		// IPv4address    =  1*3DIGIT "." 1*3DIGIT "." 1*3DIGIT "." 1*3DIGIT
-		String ipv4address = "\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}";
-		
-		final Pattern p = Pattern.compile(ipv4address);
-		final Matcher m = p.matcher(host);
-		boolean matches = m.matches();
+		boolean matches = AddressLiteralParser.isIPv4Address(host);
 		
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("isIPv4Address(" + host + "): " + matches);
@@ -122,30 +75,7 @@ public final class LocatorUtils {
 			LOGGER.debug("isIPv6Reference(" + host + ")");
 		}
 		
-		// RFC 2234, Section 6.1
-		//
-		// DIGIT          =  %x30-39
-		// HEXDIG         =  DIGIT / "A" / "B" / "C" / "D" / "E" / "F"
-		String hexdig = "[0-9A-F]";
-	
-		// RFC 3261, Section 25.1
-		//
-		// IPv4address    =  1*3DIGIT "." 1*3DIGIT "." 1*3DIGIT "." 1*3DIGIT
-		String ipv4address = "\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}";
-		// hex4           =  1*4HEXDIG
-		String hex4 = hexdig + "{1,4}";
-		// hexseq         =  hex4 *( ":" hex4)
-		String hexseq = hex4 + "(:" + hex4 + ")*";
-		// hexpart        =  hexseq / hexseq "::" [ hexseq ] / "::" [ hexseq ]
-		String hexpart = "(" + hexseq + "|" + hexseq + "::(" + hexseq + ")?|::(" + hexseq + ")?)";
-		// IPv6address    =  hexpart [ ":" IPv4address ]
-		String ipv6address = hexpart + "(:" + ipv4address + ")?";
-		// IPv6reference  =  "[" IPv6address "]"
-		String ipv6reference = "\\[" + ipv6address + "\\]";
-		
-		final Pattern p = Pattern.compile(ipv6reference, Pattern.CASE_INSENSITIVE);
-		final Matcher m = p.matcher(host);
-		boolean matches = m.matches();
+		boolean matches = AddressLiteralParser.isIPv6Reference(host);
 		
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("isIPv6Reference(" + host + "): " + matches);
@@ -174,7 +104,7 @@ public final class LocatorUtils {
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("isKnownTransport(" + transport + ")");
 		}
-		boolean known = knownTransports.contains(transport.toUpperCase());
+		boolean known = Transport.fromString(transport) != null;
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("isKnownTransport(" + transport + "): " + known);
 		}
@@ -197,16 +127,7 @@ public final class LocatorUtils {
 			LOGGER.debug("getDefaultPortForTransport(" + transport + ")");
 		}
 		
-		if (isKnownTransport(transport) == false) {
-			throw new IllegalArgumentException("Unknown transport: " + transport);
-		}
-		
-		int port;
-		if (transport.startsWith(TLS)) {
-			port = 5061;
-		} else {
-			port = 5060;
-		}
+		int port = getTransport(transport).getDefaultPort();
 		
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("getDefaultPortForTransport(" + transport + "): " + port);
@@ -229,18 +150,7 @@ public final class LocatorUtils {
 			LOGGER.debug("upgradeTransport(" + transport + ")");
 		}
 		
-		if (isKnownTransport(transport) == false) {
-			throw new IllegalArgumentException("Unknown transport: " + transport);
-		}
-		
-		String upgradedTransport;
-		if (transport.equalsIgnoreCase("tcp")) {
-			upgradedTransport = TLS;
-		} else if (transport.equalsIgnoreCase("sctp")) {
-			upgradedTransport = "TLS-SCTP";
-		} else {
-			throw new IllegalArgumentException("Cannot upgrade " + transport);
-		}
+		String upgradedTransport = getTransport(transport).upgrade().toString();
 		
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("upgradeTransport(" + transport + "): " + upgradedTransport);
@@ -264,14 +174,7 @@ public final class LocatorUtils {
 			LOGGER.debug("getDefaultTransportForScheme(" + scheme + ")");
 		}
 		
-		String transport;
-		if ("SIPS".equalsIgnoreCase(scheme)) {
-			transport = upgradeTransport(TCP);
-		} else if ("SIP".equalsIgnoreCase(scheme)) {
-			transport = UDP;
-		} else {
-			throw new IllegalArgumentException("Unknown scheme: " + scheme);
-		}
+		String transport = Transport.fromScheme(scheme).toString();
 		
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("getDefaultTransportForScheme(" + scheme + "): " + transport);
@@ -325,25 +228,15 @@ public final class LocatorUtils {
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("getTransportForService(" + service + ")");
 		}
-		String transport;
-		if (service.equals("SIP+D2T")) {
-			transport = TCP;
-		} else if (service.equals("SIPS+D2T")) {
-			transport = TLS;
-		} else if (service.equals("SIP+D2U")) {
-			transport = UDP;
-		} else if (service.equals("SIP+D2S")) {
-			transport = SCTP;
-		} else if (service.equals("SIPS+D2S")) {
-			transport = "TLS-SCTP";
-		} else {
+		final Transport transport = Transport.fromService(service);
+		if (transport == null) {
 			throw new IllegalArgumentException();
 		}
 		
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("getTransportForService(" + service + "): " + transport);
 		}
-		return transport;
+		return transport.toString();
 	}
 
 	/**
@@ -361,28 +254,31 @@ public final class LocatorUtils {
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("getServiceIdentifier(" + transport + ", " + suffix + ")");
 		}
-		if (isKnownTransport(transport) == false) {
-			throw new IllegalArgumentException("Unknown transport: " + transport);
-		}
-		
-		final Name transportName;
-		
-		if (transport.equalsIgnoreCase(TLS) || transport.equalsIgnoreCase(TCP)) {
-			transportName = _TCP;
-		} else if (transport.equalsIgnoreCase("TLS-SCTP") || transport.equalsIgnoreCase(SCTP)) {
-			transportName = _SCTP;
-		} else {
-			transportName = _UDP;
-		}
-		
-		final Name scheme = transport.startsWith(TLS) ? _SIPS : _SIP;
-		
-		Name prefix = Name.concatenate(scheme, transportName);
-		Name serviceId = Name.concatenate(prefix, suffix);
+		Name serviceId = getServiceIdentifier(getTransport(transport), suffix);
 		
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("getServiceIdentifier(" + transport + ", " + suffix + "): " + serviceId);
 		}
 		return serviceId;	
 	}
+
+	/**
+	 * Returns the SRV service identifier for the given transport and domain.
+	 * 
+	 * @param transport the transport.
+	 * @param suffix the domain name.
+	 * @return the SRV service identifier.
+	 * @see #getServiceIdentifier(String, Name)
+	 */
+	public static Name getServiceIdentifier(Transport transport, Name suffix) throws IOException {
+		return Name.concatenate(transport.getServicePrefix(), suffix);
+	}
+
+	private static Transport getTransport(String transport) {
+		final Transport known = Transport.fromString(transport);
+		if (known == null) {
+			throw new IllegalArgumentException("Unknown transport: " + transport);
+		}
+		return known;
+	}
 }
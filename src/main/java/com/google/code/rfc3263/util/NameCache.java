@@ -0,0 +1,124 @@
+package com.google.code.rfc3263.util;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.xbill.DNS.Name;
+
+/**
+ * This class caches the dnsjava names built while locating a URI.
+ * <p>
+ * For a fixed set of peers, the absolute name for a TARGET and the SRV service
+ * identifiers derived from it are always the same, so there is no need to
+ * parse and concatenate them for every request.  Both caches are bounded: when
+ * a cache is full, an arbitrary entry is evicted to make room for a new one.
+ */
+@ThreadSafe
+public final class NameCache {
+	/**
+	 * The default maximum number of entries in each cache.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 1024;
+
+	private static final int TRANSPORTS = Transport.values().length;
+
+	private final int maxSize;
+	private final ConcurrentMap<String, Name> names = new ConcurrentHashMap<String, Name>();
+	private final ConcurrentMap<Name, AtomicReferenceArray<Name>> serviceIds = new ConcurrentHashMap<Name, AtomicReferenceArray<Name>>();
+
+	/**
+	 * Creates a new cache holding up to {@value #DEFAULT_MAX_SIZE} entries.
+	 */
+	public NameCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maxSize the maximum number of entries in each cache.
+	 */
+	public NameCache(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be positive: " + maxSize);
+		}
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the absolute name for the given TARGET.
+	 *
+	 * @param target the TARGET, as returned by {@link LocatorUtils#getTarget(javax.sip.address.SipURI)}.
+	 * @return the absolute name.
+	 * @throws IOException if the target is not a valid domain name.
+	 */
+	public Name getName(String target) throws IOException {
+		Name name = names.get(target);
+		if (name == null) {
+			name = Name.concatenate(new Name(target), Name.root);
+			makeRoom(names);
+			names.put(target, name);
+		}
+		return name;
+	}
+
+	/**
+	 * Returns the SRV service identifier for the given transport and domain.
+	 *
+	 * @param transport the transport.
+	 * @param domain the absolute domain name.
+	 * @return the SRV service identifier.
+	 * @throws IOException if the service identifier is too long.
+	 * @see LocatorUtils#getServiceIdentifier(Transport, Name)
+	 */
+	public Name getServiceIdentifier(Transport transport, Name domain) throws IOException {
+		AtomicReferenceArray<Name> ids = serviceIds.get(domain);
+		if (ids == null) {
+			makeRoom(serviceIds);
+			final AtomicReferenceArray<Name> newIds = new AtomicReferenceArray<Name>(TRANSPORTS);
+			ids = serviceIds.putIfAbsent(domain, newIds);
+			if (ids == null) {
+				ids = newIds;
+			}
+		}
+		// Racing threads compute the same value, so a lost update is harmless.
+		Name serviceId = ids.get(transport.ordinal());
+		if (serviceId == null) {
+			serviceId = LocatorUtils.getServiceIdentifier(transport, domain);
+			ids.set(transport.ordinal(), serviceId);
+		}
+		return serviceId;
+	}
+
+	/**
+	 * Returns the number of cached names.
+	 *
+	 * @return the number of cached names.
+	 */
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * Removes all entries from this cache.
+	 */
+	public void clear() {
+		names.clear();
+		serviceIds.clear();
+	}
+
+	private void makeRoom(ConcurrentMap<?, ?> map) {
+		if (map.size() >= maxSize) {
+			final Iterator<?> iter = map.keySet().iterator();
+			if (iter.hasNext()) {
+				iter.next();
+				iter.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package com.google.code.rfc3263.util;
+
+import org.xbill.DNS.Name;
+import org.xbill.DNS.NameTooLongException;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * This enum describes the transports defined by standards-track SIP documents,
+ * along with everything RFC 3263 needs to know about each of them.
+ * <p>
+ * Transports are handled as members of this enum inside the locator, and only
+ * converted to strings at the JAIN-SIP {@link javax.sip.address.Hop} boundary.
+ */
+@Immutable
+public enum Transport {
+	// SIP Table of Mappings From Service Field Values to Transport Protocols
+	//
+	// Services Field        Protocol  Reference
+	// --------------------  --------  ---------
+	// SIP+D2T               TCP       [RFC3263]
+	// SIPS+D2T              TCP       [RFC3263]
+	// SIP+D2U               UDP       [RFC3263]
+	// SIP+D2S               SCTP      [RFC3263]
+	// SIPS+D2S              SCTP      [RFC4168]
+	UDP("UDP", 5060, false, "_udp", "SIP+D2U"),
+	TCP("TCP", 5060, false, "_tcp", "SIP+D2T"),
+	TLS("TLS", 5061, true, "_tcp", "SIPS+D2T"),
+	SCTP("SCTP", 5060, false, "_sctp", "SIP+D2S"),
+	TLS_SCTP("TLS-SCTP", 5061, true, "_sctp", "SIPS+D2S");
+
+	private static final Transport[] TRANSPORTS = values();
+
+	private final String name;
+	private final int defaultPort;
+	private final boolean secure;
+	private final Name serviceLabel;
+	private final Name protocolLabel;
+	private final Name servicePrefix;
+	private final String service;
+
+	private Transport(String name, int defaultPort, boolean secure, String protocolLabel, String service) {
+		this.name = name;
+		this.defaultPort = defaultPort;
+		this.secure = secure;
+		this.serviceLabel = Name.fromConstantString(secure ? "_sips" : "_sip");
+		this.protocolLabel = Name.fromConstantString(protocolLabel);
+		try {
+			this.servicePrefix = Name.concatenate(serviceLabel, this.protocolLabel);
+		} catch (NameTooLongException e) {
+			throw new IllegalStateException(e);
+		}
+		this.service = service;
+	}
+
+	/**
+	 * Returns the default port for this transport.
+	 *
+	 * @return the default port.
+	 */
+	public int getDefaultPort() {
+		return defaultPort;
+	}
+
+	/**
+	 * Returns <code>true</code> if this transport is secure.
+	 *
+	 * @return <code>true</code> if this transport is secure, <code>false</code> otherwise.
+	 */
+	public boolean isSecure() {
+		return secure;
+	}
+
+	/**
+	 * Returns the SRV service label, <code>_sip</code> or <code>_sips</code>.
+	 *
+	 * @return the SRV service label.
+	 */
+	public Name getServiceLabel() {
+		return serviceLabel;
+	}
+
+	/**
+	 * Returns the SRV protocol label, such as <code>_tcp</code>.
+	 *
+	 * @return the SRV protocol label.
+	 */
+	public Name getProtocolLabel() {
+		return protocolLabel;
+	}
+
+	/**
+	 * Returns the relative SRV service identifier prefix, such as <code>_sips._tcp</code>.
+	 *
+	 * @return the SRV service identifier prefix.
+	 */
+	public Name getServicePrefix() {
+		return servicePrefix;
+	}
+
+	/**
+	 * Returns the NAPTR service field for this transport, such as <code>SIPS+D2T</code>.
+	 *
+	 * @return the NAPTR service field.
+	 */
+	public String getService() {
+		return service;
+	}
+
+	/**
+	 * Returns the secure transport for this transport.
+	 *
+	 * @return the upgraded transport.
+	 * @throws IllegalArgumentException if this transport cannot be upgraded.
+	 */
+	public Transport upgrade() {
+		switch (this) {
+		case TCP:
+			return TLS;
+		case SCTP:
+			return TLS_SCTP;
+		default:
+			throw new IllegalArgumentException("Cannot upgrade " + name);
+		}
+	}
+
+	/**
+	 * Returns the transport name used by JAIN-SIP, such as <code>TLS-SCTP</code>.
+	 */
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * Returns the transport for the given name, ignoring case.
+	 *
+	 * @param transport the transport name.
+	 * @return the transport, or <code>null</code> if the transport is not known.
+	 */
+	public static Transport fromString(String transport) {
+		if (transport == null) {
+			return null;
+		}
+		switch (transport.length()) {
+		case 3:
+			if (UDP.name.equalsIgnoreCase(transport)) {
+				return UDP;
+			} else if (TCP.name.equalsIgnoreCase(transport)) {
+				return TCP;
+			} else if (TLS.name.equalsIgnoreCase(transport)) {
+				return TLS;
+			}
+			return null;
+		case 4:
+			return SCTP.name.equalsIgnoreCase(transport) ? SCTP : null;
+		case 8:
+			return TLS_SCTP.name.equalsIgnoreCase(transport) ? TLS_SCTP : null;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the default transport for the given SIP URI scheme: TLS for
+	 * <code>sips</code>, and UDP for <code>sip</code>.
+	 *
+	 * @param scheme the URI scheme.
+	 * @return the default transport.
+	 * @throws IllegalArgumentException if the scheme is not known.
+	 */
+	public static Transport fromScheme(String scheme) {
+		if ("SIPS".equalsIgnoreCase(scheme)) {
+			return TCP.upgrade();
+		} else if ("SIP".equalsIgnoreCase(scheme)) {
+			return UDP;
+		}
+		throw new IllegalArgumentException("Unknown scheme: " + scheme);
+	}
+
+	/**
+	 * Returns the transport for the given NAPTR service field.
+	 *
+	 * @param service the NAPTR service field.
+	 * @return the transport, or <code>null</code> if the service field is not known.
+	 */
+	public static Transport fromService(String service) {
+		for (Transport transport : TRANSPORTS) {
+			if (transport.service.equals(service)) {
+				return transport;
+			}
+		}
+		return null;
+	}
+}
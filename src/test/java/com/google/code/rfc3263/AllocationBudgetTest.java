@@ -0,0 +1,236 @@
+package com.google.code.rfc3263;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import javax.sip.SipFactory;
+import javax.sip.SipStack;
+import javax.sip.address.AddressFactory;
+import javax.sip.address.Router;
+import javax.sip.address.SipURI;
+import javax.sip.header.HeaderFactory;
+import javax.sip.header.ViaHeader;
+import javax.sip.message.MessageFactory;
+import javax.sip.message.Request;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+
+import com.google.code.rfc3263.dns.InMemoryResolver;
+import com.google.code.rfc3263.dns.Resolver;
+
+/**
+ * Checks the number of bytes allocated by each routing path against a budget.
+ * <p>
+ * Allocation is measured with the HotSpot per-thread allocation counter, after
+ * a warm-up, and averaged over many calls.  As the figures depend on the JVM
+ * vendor and version, escape analysis and the logging configuration, the tests
+ * only run when the <code>{@value #ENABLED_PROPERTY}</code> system property is
+ * set, on a known JVM:
+ * <pre>
+ * mvn test -Dtest=AllocationBudgetTest -Dallocation.budget=true
+ * </pre>
+ * They are also skipped on JVMs which do not support the counter.  Logging is raised to <code>WARN</code> while
+ * measuring, since debug messages would otherwise dominate the figures.
+ * <p>
+ * The budgets leave some headroom over the measured figures.  If a change
+ * pushes a path over its budget, either find the new allocation or, if it is
+ * intended, record the new figure here.
+ */
+public class AllocationBudgetTest {
+	private static final String ENABLED_PROPERTY = "allocation.budget";
+	private static final int WARMUP = 5000;
+	private static final int ITERATIONS = 2000;
+
+	private static final Logger LOGGER = Logger.getLogger("com.google.code.rfc3263");
+	private static Level level;
+	private static com.sun.management.ThreadMXBean threads;
+
+	private static final List<String> TRANSPORTS = Arrays.asList("UDP", "TCP", "TLS");
+
+	@BeforeClass
+	public static void setUpClass() {
+		Assume.assumeTrue(Boolean.getBoolean(ENABLED_PROPERTY));
+		final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		threads = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		level = LOGGER.getLevel();
+		LOGGER.setLevel(Level.WARN);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (threads != null) {
+			LOGGER.setLevel(level);
+		}
+	}
+
+	@Test
+	public void testNumericLocate() throws Exception {
+		final Locator locator = new Locator(TRANSPORTS, new InMemoryResolver(Collections.<Record>emptyList()));
+		final SipURI uri = getFactory().createSipURI(null, "192.0.2.1");
+		uri.setPort(5060);
+		uri.setTransportParam("tcp");
+
+		assertBudget("numeric locate", 1000, new Call() {
+			public Object call() throws Exception {
+				return locator.locate(uri);
+			}
+		});
+	}
+
+	@Test
+	public void testPointerLocate() throws Exception {
+		final Locator locator = new Locator(TRANSPORTS, getResolver());
+		final SipURI uri = getFactory().createSipURI(null, "example.org");
+
+		assertBudget("NAPTR locate", 10000, new Call() {
+			public Object call() throws Exception {
+				return locator.locate(uri);
+			}
+		});
+	}
+
+	@Test
+	public void testServiceLocate() throws Exception {
+		final Locator locator = new Locator(TRANSPORTS, getResolver());
+		final SipURI uri = getFactory().createSipURI(null, "example.net");
+
+		assertBudget("SRV locate", 21000, new Call() {
+			public Object call() throws Exception {
+				return locator.locate(uri);
+			}
+		});
+	}
+
+	@Test
+	public void testAddressLocate() throws Exception {
+		final Locator locator = new Locator(TRANSPORTS, getResolver());
+		final SipURI uri = getFactory().createSipURI(null, "sip.example.com");
+
+		assertBudget("A locate", 4800, new Call() {
+			public Object call() throws Exception {
+				return locator.locate(uri);
+			}
+		});
+	}
+
+	@Test
+	public void testGetNextHop() throws Exception {
+		final Properties properties = new Properties();
+		properties.put("javax.sip.STACK_NAME", "AllocationBudgetTest");
+		final SipStack stack = SipFactory.getInstance().createSipStack(properties);
+		try {
+			final Router router = new DefaultRouter(stack, null, getResolver()) {
+				@Override
+				protected List<String> getSupportedTransports() {
+					return TRANSPORTS;
+				}
+			};
+			final Request request = getRequest("example.org");
+
+			assertBudget("getNextHop", 11000, new Call() {
+				public Object call() throws Exception {
+					return router.getNextHop(request);
+				}
+			});
+		} finally {
+			stack.stop();
+		}
+	}
+
+	private interface Call {
+		Object call() throws Exception;
+	}
+
+	private static void assertBudget(String path, long budget, Call call) throws Exception {
+		for (int i = 0; i < WARMUP; i++) {
+			call.call();
+		}
+		final long threadId = Thread.currentThread().getId();
+		final long start = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < ITERATIONS; i++) {
+			call.call();
+		}
+		final long allocated = (threads.getThreadAllocatedBytes(threadId) - start) / ITERATIONS;
+
+		assertTrue(path + " allocated " + allocated + " bytes per call, over the budget of " + budget, allocated <= budget);
+	}
+
+	/**
+	 * Returns a resolver for three domains: example.org has NAPTR, SRV and
+	 * address records, example.net has SRV and address records, and
+	 * sip.example.com has address records only.
+	 */
+	private static Resolver getResolver() throws Exception {
+		final List<Record> records = new ArrayList<Record>();
+		final Name org = new Name("example.org.");
+		final Name net = new Name("example.net.");
+		for (Name domain : Arrays.asList(org, net)) {
+			final Name udp = new Name("_sip._udp", domain);
+			final Name tcp = new Name("_sip._tcp", domain);
+			final Name tls = new Name("_sips._tcp", domain);
+			if (domain == org) {
+				records.add(new NAPTRRecord(domain, DClass.IN, 3600L, 50, 50, "s", "SIPS+D2T", "", tls));
+				records.add(new NAPTRRecord(domain, DClass.IN, 3600L, 90, 50, "s", "SIP+D2T", "", tcp));
+				records.add(new NAPTRRecord(domain, DClass.IN, 3600L, 100, 50, "s", "SIP+D2U", "", udp));
+			}
+			for (int i = 1; i <= 2; i++) {
+				final Name target = new Name("sip" + i, domain);
+				records.add(new SRVRecord(udp, DClass.IN, 3600L, i, 10, 5060, target));
+				records.add(new SRVRecord(tcp, DClass.IN, 3600L, i, 10, 5060, target));
+				records.add(new SRVRecord(tls, DClass.IN, 3600L, i, 10, 5061, target));
+				addAddresses(records, target, i);
+			}
+		}
+		addAddresses(records, new Name("sip.example.com."), 3);
+		return new InMemoryResolver(records);
+	}
+
+	private static void addAddresses(List<Record> records, Name name, int i) throws Exception {
+		records.add(new ARecord(name, DClass.IN, 3600L, InetAddress.getByName("192.0.2." + i)));
+		records.add(new AAAARecord(name, DClass.IN, 3600L, InetAddress.getByName("2001:db8::" + i)));
+	}
+
+	private static AddressFactory getFactory() throws Exception {
+		return SipFactory.getInstance().createAddressFactory();
+	}
+
+	private static Request getRequest(String host) throws Exception {
+		final SipFactory factory = SipFactory.getInstance();
+		final AddressFactory addressFactory = factory.createAddressFactory();
+		final HeaderFactory headerFactory = factory.createHeaderFactory();
+		final MessageFactory messageFactory = factory.createMessageFactory();
+		final SipURI requestUri = addressFactory.createSipURI("bob", host);
+		final SipURI fromUri = addressFactory.createSipURI("alice", "example.com");
+
+		return messageFactory.createRequest(requestUri, Request.INVITE,
+				headerFactory.createCallIdHeader("deadbeef"),
+				headerFactory.createCSeqHeader(1L, Request.INVITE),
+				headerFactory.createFromHeader(addressFactory.createAddress(fromUri), "1234"),
+				headerFactory.createToHeader(addressFactory.createAddress(requestUri), null),
+				new ArrayList<ViaHeader>(),
+				headerFactory.createMaxForwardsHeader(70));
+	}
+}
@@ -6,6 +6,7 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Properties;
@@ -32,6 +33,17 @@ import javax.sip.message.Request;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+
+import com.google.code.rfc3263.dns.InMemoryResolver;
+import com.google.code.rfc3263.dns.Resolver;
+import com.google.code.rfc3263.dns.ServiceRecordDeterministicComparator;
+import com.google.code.rfc3263.dns.sorter.ServiceRecordDeterministicWeightSorter;
+import com.google.code.rfc3263.dns.sorter.ServiceRecordWeightSorter;
 
 public class DefaultRouterTest {
 	private AddressFactory addressFactory;
@@ -190,6 +202,73 @@ public class DefaultRouterTest {
 		assertEquals(expected, actual);
 	}
 	
+	@Test
+	public void testGivenResolverWhenRoutingThenResolverIsUsed() throws Exception {
+		final Request request = getRequest();
+		((SipURI) request.getRequestURI()).setHost("sip.example.org");
+		final Record record = new ARecord(new Name("sip.example.org."), DClass.IN, 3600, InetAddress.getByName("192.0.2.10"));
+		final Resolver resolver = new InMemoryResolver(Collections.singleton(record));
+		final Router router = new DefaultRouter(stack, null, resolver) {
+			@Override
+			protected List<String> getSupportedTransports() {
+				return Collections.singletonList("UDP");
+			}
+		};
+
+		assertEquals(new HopImpl("192.0.2.10", 5060, "UDP"), router.getNextHop(request));
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNullResolverShouldBeRejected() {
+		new DefaultRouter(stack, null, null);
+	}
+
+	@Test
+	public void testUnknownTransportWithPortShouldBeRouted() throws Exception {
+		final Request request = getRequest();
+		final SipURI requestUri = (SipURI) request.getRequestURI();
+		requestUri.setHost("sip.example.org");
+		requestUri.setPort(8080);
+		requestUri.setParameter("transport", "ws");
+		final Record record = new ARecord(new Name("sip.example.org."), DClass.IN, 3600, InetAddress.getByName("192.0.2.10"));
+		final Router router = new DefaultRouter(stack, null, new InMemoryResolver(Collections.singleton(record))) {
+			@Override
+			protected List<String> getSupportedTransports() {
+				return Collections.singletonList("UDP");
+			}
+		};
+
+		assertEquals(new HopImpl("192.0.2.10", 8080, "WS"), router.getNextHop(request));
+	}
+
+	@Test
+	public void testWeightingSorterShouldBeChosenPerRequest() throws Exception {
+		final Request request = getRequest();
+		((SipURI) request.getRequestURI()).setHost("example.org");
+		final List<Record> records = new ArrayList<Record>();
+		records.add(new SRVRecord(new Name("_sip._udp.example.org."), DClass.IN, 3600, 0, 10, 5060, new Name("a.example.org.")));
+		records.add(new SRVRecord(new Name("_sip._udp.example.org."), DClass.IN, 3600, 0, 10, 5060, new Name("b.example.org.")));
+		records.add(new ARecord(new Name("a.example.org."), DClass.IN, 3600, InetAddress.getByName("192.0.2.1")));
+		records.add(new ARecord(new Name("b.example.org."), DClass.IN, 3600, InetAddress.getByName("192.0.2.2")));
+		final List<String> keys = new ArrayList<String>();
+		final Router router = new DefaultRouter(stack, null, new InMemoryResolver(records)) {
+			@Override
+			protected List<String> getSupportedTransports() {
+				return Collections.singletonList("UDP");
+			}
+
+			@Override
+			protected ServiceRecordWeightSorter getWeightingSorter(Request request) {
+				keys.add(((CallIdHeader) request.getHeader(CallIdHeader.NAME)).getCallId());
+				// Last target first
+				return new ServiceRecordDeterministicWeightSorter(Collections.reverseOrder(new ServiceRecordDeterministicComparator()));
+			}
+		};
+
+		assertEquals(new HopImpl("192.0.2.2", 5060, "UDP"), router.getNextHop(request));
+		assertEquals(Collections.singletonList("deadbeef"), keys);
+	}
+
 	private Router getRouter(String outboundProxy) {
 		return new DefaultRouter(stack, outboundProxy);
 	}
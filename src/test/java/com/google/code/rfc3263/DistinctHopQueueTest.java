@@ -0,0 +1,45 @@
+package com.google.code.rfc3263;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Queue;
+
+import javax.sip.address.Hop;
+
+import org.junit.Test;
+
+public class DistinctHopQueueTest {
+	private final Hop a = new HopImpl("192.0.2.1", 5060, "UDP");
+	private final Hop b = new HopImpl("192.0.2.2", 5060, "UDP");
+
+	@Test
+	public void testDuplicateIsIgnored() {
+		Queue<Hop> queue = new DistinctHopQueue();
+		assertTrue(queue.add(a));
+		assertTrue(queue.offer(b));
+		assertFalse(queue.add(new HopImpl("192.0.2.1", 5060, "UDP")));
+		assertFalse(queue.offer(b));
+		assertEquals(2, queue.size());
+	}
+
+	@Test
+	public void testInsertionOrderIsKept() {
+		Queue<Hop> queue = new DistinctHopQueue();
+		queue.addAll(Arrays.asList(b, a, b));
+		assertEquals(Arrays.asList(b, a), Arrays.asList(queue.toArray()));
+		assertEquals(b, queue.peek());
+		assertEquals(b, queue.poll());
+		assertEquals(a, queue.poll());
+		assertNull(queue.poll());
+		assertNull(queue.peek());
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNullIsRejected() {
+		new DistinctHopQueue().add(null);
+	}
+}
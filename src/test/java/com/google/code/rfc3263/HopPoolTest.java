@@ -0,0 +1,124 @@
+package com.google.code.rfc3263;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.net.InetAddress;
+
+import javax.sip.address.Hop;
+
+import org.junit.Test;
+import org.xbill.DNS.Name;
+
+import com.google.code.rfc3263.util.Transport;
+
+public class HopPoolTest {
+	private static final Name TARGET = Name.fromConstantString("example.org.");
+
+	@Test
+	public void testHopIsShared() throws Exception {
+		HopPool pool = new HopPool();
+		InetAddress address = InetAddress.getByName("192.0.2.1");
+		Hop hop = pool.getHop(address, 5060, Transport.UDP, 300, TARGET);
+		assertSame(hop, pool.getHop(InetAddress.getByName("192.0.2.1"), 5060, Transport.UDP, 300, TARGET));
+	}
+
+	@Test
+	public void testHopEqualsUnpooledHop() throws Exception {
+		HopPool pool = new HopPool();
+		Hop hop = pool.getHop(InetAddress.getByName("::1"), 5061, Transport.TLS, 300, TARGET);
+		Hop expected = new HopImpl("0:0:0:0:0:0:0:1", 5061, "TLS");
+		assertEquals(expected, hop);
+		assertEquals(hop, expected);
+		assertEquals(expected.hashCode(), hop.hashCode());
+		assertEquals(expected.toString(), hop.toString());
+	}
+
+	@Test
+	public void testHopsDifferByPortAndTransport() throws Exception {
+		HopPool pool = new HopPool();
+		InetAddress address = InetAddress.getByName("192.0.2.1");
+		Hop udp = pool.getHop(address, 5060, Transport.UDP, 300, TARGET);
+		Hop tcp = pool.getHop(address, 5060, Transport.TCP, 300, TARGET);
+		Hop port = pool.getHop(address, 5070, Transport.UDP, 300, TARGET);
+		assertEquals("TCP", tcp.getTransport());
+		assertEquals(5070, port.getPort());
+		assertNotSame(udp, tcp);
+		assertNotSame(udp, port);
+	}
+
+	@Test
+	public void testCollisionReplacesSlot() throws Exception {
+		HopPool pool = new HopPool(1);
+		Hop a = pool.getHop(InetAddress.getByName("192.0.2.1"), 5060, Transport.UDP, 300, TARGET);
+		Hop b = pool.getHop(InetAddress.getByName("192.0.2.2"), 5060, Transport.UDP, 300, TARGET);
+		assertEquals("192.0.2.2", b.getHost());
+		Hop c = pool.getHop(InetAddress.getByName("192.0.2.1"), 5060, Transport.UDP, 300, TARGET);
+		assertNotSame(a, c);
+		assertEquals(a, c);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSizeMustBePowerOfTwo() {
+		new HopPool(3);
+	}
+
+	@Test
+	public void testHopCarriesAddressAndTTL() throws Exception {
+		HopPool pool = new HopPool();
+		InetAddress address = InetAddress.getByName("192.0.2.1");
+		ResolvedHop hop = pool.getHop(address, 5060, Transport.UDP, 300, TARGET);
+		assertEquals(address, hop.getAddress());
+		assertEquals(300, hop.getTTL());
+		assertSame(address, ResolvedHop.toInetAddress(hop));
+	}
+
+	@Test
+	public void testDifferentTTLIsNotShared() throws Exception {
+		HopPool pool = new HopPool();
+		InetAddress address = InetAddress.getByName("192.0.2.1");
+		ResolvedHop hop = pool.getHop(address, 5060, Transport.UDP, 300, TARGET);
+		ResolvedHop other = pool.getHop(address, 5060, Transport.UDP, 60, TARGET);
+		assertEquals(60, other.getTTL());
+		assertEquals(hop, other);
+		assertSame(hop.toString(), other.toString());
+	}
+
+	@Test
+	public void testCountingDownTTLIsSharedWithinTolerance() throws Exception {
+		HopPool pool = new HopPool();
+		InetAddress address = InetAddress.getByName("192.0.2.1");
+		ResolvedHop hop = pool.getHop(address, 5060, Transport.UDP, 300, TARGET);
+		assertSame(hop, pool.getHop(address, 5060, Transport.UDP, 299, TARGET));
+		assertSame(hop, pool.getHop(address, 5060, Transport.UDP, 270, TARGET));
+		assertEquals(300, hop.getTTL());
+
+		ResolvedHop older = pool.getHop(address, 5060, Transport.UDP, 269, TARGET);
+		assertNotSame(hop, older);
+		assertEquals(269, older.getTTL());
+		// A refreshed record is never given an older TTL.
+		assertEquals(300, pool.getHop(address, 5060, Transport.UDP, 300, TARGET).getTTL());
+	}
+
+	@Test
+	public void testSameAddressThroughTwoTargetsKeepsStrings() throws Exception {
+		HopPool pool = new HopPool(1);
+		InetAddress address = InetAddress.getByName("192.0.2.1");
+		Name other = Name.fromConstantString("example.net.");
+		ResolvedHop first = pool.getHop(address, 5060, Transport.UDP, 300, TARGET);
+		ResolvedHop second = pool.getHop(address, 5060, Transport.UDP, 300, other);
+		ResolvedHop third = pool.getHop(address, 5060, Transport.UDP, 300, TARGET);
+		assertEquals(other, second.getTarget());
+		assertEquals(TARGET, third.getTarget());
+		assertSame(first.getHost(), second.getHost());
+		assertSame(first.getHost(), third.getHost());
+		assertSame(first.toString(), third.toString());
+	}
+
+	@Test
+	public void testLiteralHopIsConvertedWithoutLookup() throws Exception {
+		assertEquals(InetAddress.getByName("192.0.2.1"), ResolvedHop.toInetAddress(new HopImpl("192.0.2.1", 5060, "UDP")));
+		assertEquals(InetAddress.getByName("2001:db8::1"), ResolvedHop.toInetAddress(new HopImpl("2001:db8::1", 5060, "UDP")));
+	}
+}
@@ -6,7 +6,10 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.net.InetAddress;
@@ -14,6 +17,7 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Queue;
@@ -33,9 +37,17 @@ import org.xbill.DNS.ARecord;
 import org.xbill.DNS.DClass;
 import org.xbill.DNS.NAPTRRecord;
 import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
 import org.xbill.DNS.SRVRecord;
 
+import com.google.code.rfc3263.dns.InMemoryResolver;
 import com.google.code.rfc3263.dns.Resolver;
+import com.google.code.rfc3263.dns.ServiceRecordDeterministicComparator;
+import com.google.code.rfc3263.dns.sorter.OutstandingRequestRegistry;
+import com.google.code.rfc3263.dns.sorter.ServiceRecordDeterministicWeightSorter;
+import com.google.code.rfc3263.dns.sorter.ServiceRecordLeastOutstandingWeightSorter;
+import com.google.code.rfc3263.sorter.RoundTripTimeHopSorter;
+import com.google.code.rfc3263.util.AddressFamily;
 
 /**
  * This test checks that only the expected DNS lookups take place. 
@@ -88,6 +100,49 @@ public class LocatorTest {
 		assertThat(hop.getTransport(), is("UDP"));
 	}
 	
+	@Test
+	public void testShouldPassUnknownTransportParameterThroughWithPort() throws ParseException, IOException {
+		replay(resolver);
+		
+		SipURI uri = addressFactory.createSipURI(null, "127.0.0.1");
+		uri.setPort(8080);
+		uri.setParameter("transport", "ws");
+		
+		Locator locator = new Locator(Collections.singletonList("UDP"), resolver);
+		Hop hop = locator.locate(uri).peek();
+		
+		assertEquals(new HopImpl("127.0.0.1", 8080, "WS"), hop);
+	}
+	
+	@Test
+	public void testShouldPassUnknownTransportParameterThroughForNonNumericWithPort() throws ParseException, IOException {
+		Set<ARecord> addresses = new HashSet<ARecord>();
+		addresses.add(new ARecord(new Name("example.org."), DClass.IN, 1000L, InetAddress.getByName("192.0.2.1")));
+		expect(resolver.lookupARecords(new Name("example.org."))).andReturn(addresses);
+		expect(resolver.lookupAAAARecords(new Name("example.org."))).andReturn(Collections.<AAAARecord>emptySet());
+		replay(resolver);
+		
+		SipURI uri = addressFactory.createSipURI(null, "example.org");
+		uri.setPort(8080);
+		uri.setParameter("transport", "ws");
+		
+		Locator locator = new Locator(Collections.singletonList("UDP"), resolver);
+		Hop hop = locator.locate(uri).peek();
+		
+		assertEquals(new HopImpl("192.0.2.1", 8080, "WS"), hop);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldRejectUnknownTransportParameterWithoutPort() throws ParseException, IOException {
+		replay(resolver);
+		
+		SipURI uri = addressFactory.createSipURI(null, "example.org");
+		uri.setParameter("transport", "ws");
+		
+		Locator locator = new Locator(Collections.singletonList("UDP"), resolver);
+		locator.locate(uri);
+	}
+	
 	@Test
 	public void testShouldUseUdpIfNumericAndIsInsecure() throws ParseException, IOException {
 		replay(resolver);
@@ -400,6 +455,240 @@ public class LocatorTest {
 		assertThat(hops.poll().getHost(), is("127.0.0.2"));
 	}
 
+	@Test
+	public void testShouldMoveSlowHopsDownWithinPriority() throws ParseException, IOException {
+		List<SRVRecord> services = new ArrayList<SRVRecord>();
+		services.add(new SRVRecord(new Name("_sip._udp.example.org."), DClass.IN, 1000L, 0, 0, 5060, new Name("a.example.org.")));
+		services.add(new SRVRecord(new Name("_sip._udp.example.org."), DClass.IN, 1000L, 0, 0, 5060, new Name("b.example.org.")));
+		services.add(new SRVRecord(new Name("_sip._udp.example.org."), DClass.IN, 1000L, 1, 0, 5060, new Name("c.example.org.")));
+
+		expect(resolver.lookupNAPTRRecords(new Name("example.org."))).andReturn(Collections.<NAPTRRecord>emptyList());
+		expect(resolver.lookupSRVRecords(new Name("_sip._udp.example.org."))).andReturn(services);
+		for (String host : Arrays.asList("a", "b", "c")) {
+			Set<ARecord> addresses = new HashSet<ARecord>();
+			addresses.add(new ARecord(new Name(host + ".example.org."), DClass.IN, 1000L, InetAddress.getByName("127.0.0." + (host.charAt(0) - 'a' + 1))));
+			expect(resolver.lookupARecords(new Name(host + ".example.org."))).andReturn(addresses);
+			expect(resolver.lookupAAAARecords(new Name(host + ".example.org."))).andReturn(Collections.<AAAARecord>emptySet());
+		}
+		replay(resolver);
+
+		RoundTripTimeHopSorter hopSorter = new RoundTripTimeHopSorter();
+		for (int i = 0; i < RoundTripTimeHopSorter.DEFAULT_MIN_SAMPLES; i++) {
+			hopSorter.recordRtt(new HopImpl("127.0.0.1", 5060, "UDP"), 10000000L);
+			hopSorter.recordRtt(new HopImpl("127.0.0.2", 5060, "UDP"), 1000000L);
+			hopSorter.recordRtt(new HopImpl("127.0.0.3", 5060, "UDP"), 100000L);
+		}
+
+		SipURI uri = addressFactory.createSipURI(null, "example.org");
+		Locator locator = new Locator(Collections.singletonList("UDP"), resolver, new ServiceRecordDeterministicWeightSorter(new ServiceRecordDeterministicComparator()), hopSorter, null, null);
+		Queue<Hop> hops = locator.locate(uri);
+
+		// 127.0.0.3 is fastest, but is at a lower priority
+		assertThat(hops.poll().getHost(), is("127.0.0.2"));
+		assertThat(hops.poll().getHost(), is("127.0.0.1"));
+		assertThat(hops.poll().getHost(), is("127.0.0.3"));
+	}
+
+	@Test
+	public void testResultShouldExpireWithShortestTTL() throws ParseException, IOException {
+		List<SRVRecord> services = new ArrayList<SRVRecord>();
+		services.add(new SRVRecord(new Name("_sip._udp.example.org."), DClass.IN, 300L, 0, 0, 5060, new Name("a.example.org.")));
+		Set<ARecord> addresses = new HashSet<ARecord>();
+		addresses.add(new ARecord(new Name("a.example.org."), DClass.IN, 60L, InetAddress.getByName("127.0.0.1")));
+
+		expect(resolver.lookupNAPTRRecords(new Name("example.org."))).andReturn(Collections.<NAPTRRecord>emptyList());
+		expect(resolver.lookupSRVRecords(new Name("_sip._udp.example.org."))).andReturn(services);
+		expect(resolver.lookupARecords(new Name("a.example.org."))).andReturn(addresses);
+		expect(resolver.lookupAAAARecords(new Name("a.example.org."))).andReturn(Collections.<AAAARecord>emptySet());
+		replay(resolver);
+
+		SipURI uri = addressFactory.createSipURI(null, "example.org");
+		Locator locator = new Locator(Collections.singletonList("UDP"), resolver);
+		long before = System.currentTimeMillis();
+		LocateResult result = locator.resolve(uri);
+		long after = System.currentTimeMillis();
+
+		assertTrue(result.getExpires() >= before + 60000L);
+		assertTrue(result.getExpires() <= after + 60000L);
+		assertThat(result.getHops().poll().getHost(), is("127.0.0.1"));
+		// Each call returns a new queue
+		assertThat(result.getHops().size(), is(1));
+	}
+
+	@Test
+	public void testNumericResultShouldNotExpire() throws ParseException, IOException {
+		replay(resolver);
+
+		SipURI uri = addressFactory.createSipURI(null, "127.0.0.1");
+		Locator locator = new Locator(Collections.singletonList("UDP"), resolver);
+		LocateResult result = locator.resolve(uri);
+
+		assertThat(result.getExpires(), is(LocateResult.NEVER));
+		assertFalse(result.isExpired(System.currentTimeMillis()));
+	}
+
+	@Test
+	public void testShouldNotLookupAAAAForIPv4OnlyStack() throws ParseException, IOException {
+		Set<ARecord> addresses = new HashSet<ARecord>();
+		addresses.add(new ARecord(new Name("example.org."), DClass.IN, 1000L, InetAddress.getByName("127.0.0.1")));
+		expect(resolver.lookupARecords(new Name("example.org."))).andReturn(addresses);
+		replay(resolver);
+
+		SipURI uri = addressFactory.createSipURI(null, "example.org");
+		uri.setPort(5060);
+		Locator locator = new Locator(Collections.singletonList("UDP"), resolver, new ServiceRecordDeterministicWeightSorter(new ServiceRecordDeterministicComparator()), null, EnumSet.of(AddressFamily.IPV4), null);
+		Queue<Hop> hops = locator.locate(uri);
+
+		verify(resolver);
+		assertThat(hops.size(), is(1));
+	}
+
+	@Test
+	public void testShouldNotLookupAForIPv6OnlyStack() throws ParseException, IOException {
+		Set<AAAARecord> addresses = new HashSet<AAAARecord>();
+		addresses.add(new AAAARecord(new Name("example.org."), DClass.IN, 1000L, InetAddress.getByName("::1")));
+		expect(resolver.lookupAAAARecords(new Name("example.org."))).andReturn(addresses);
+		replay(resolver);
+
+		SipURI uri = addressFactory.createSipURI(null, "example.org");
+		uri.setPort(5060);
+		Locator locator = new Locator(Collections.singletonList("UDP"), resolver, new ServiceRecordDeterministicWeightSorter(new ServiceRecordDeterministicComparator()), null, EnumSet.of(AddressFamily.IPV6), null);
+		Queue<Hop> hops = locator.locate(uri);
+
+		verify(resolver);
+		assertThat(hops.poll().getHost(), is("0:0:0:0:0:0:0:1"));
+	}
+
+	@Test
+	public void testShouldLookupSharedTargetOnce() throws ParseException, IOException {
+		List<SRVRecord> udpServices = new ArrayList<SRVRecord>();
+		udpServices.add(new SRVRecord(new Name("_sip._udp.example.org."), DClass.IN, 1000L, 0, 0, 5060, new Name("a.example.org.")));
+		List<SRVRecord> tcpServices = new ArrayList<SRVRecord>();
+		tcpServices.add(new SRVRecord(new Name("_sip._tcp.example.org."), DClass.IN, 1000L, 0, 0, 5060, new Name("a.example.org.")));
+		Set<ARecord> addresses = new HashSet<ARecord>();
+		addresses.add(new ARecord(new Name("a.example.org."), DClass.IN, 1000L, InetAddress.getByName("127.0.0.1")));
+
+		expect(resolver.lookupNAPTRRecords(new Name("example.org."))).andReturn(Collections.<NAPTRRecord>emptyList());
+		expect(resolver.lookupSRVRecords(new Name("_sip._udp.example.org."))).andReturn(udpServices);
+		expect(resolver.lookupSRVRecords(new Name("_sip._tcp.example.org."))).andReturn(tcpServices);
+		// Once each, although two SRV records name the host
+		expect(resolver.lookupARecords(new Name("a.example.org."))).andReturn(addresses);
+		expect(resolver.lookupAAAARecords(new Name("a.example.org."))).andReturn(Collections.<AAAARecord>emptySet());
+		replay(resolver);
+
+		SipURI uri = addressFactory.createSipURI(null, "example.org");
+		Locator locator = new Locator(Arrays.asList("UDP", "TCP"), resolver);
+		Queue<Hop> hops = locator.locate(uri);
+
+		verify(resolver);
+		assertEquals(new HopImpl("127.0.0.1", 5060, "UDP"), hops.poll());
+		assertEquals(new HopImpl("127.0.0.1", 5060, "TCP"), hops.poll());
+	}
+
+	@Test
+	public void testListenerShouldSeePathAndHops() throws ParseException, IOException {
+		List<SRVRecord> services = new ArrayList<SRVRecord>();
+		services.add(new SRVRecord(new Name("_sip._udp.example.org."), DClass.IN, 1000L, 0, 0, 5060, new Name("a.example.org.")));
+		Set<ARecord> addresses = new HashSet<ARecord>();
+		addresses.add(new ARecord(new Name("a.example.org."), DClass.IN, 1000L, InetAddress.getByName("127.0.0.1")));
+
+		expect(resolver.lookupNAPTRRecords(new Name("example.org."))).andReturn(Collections.<NAPTRRecord>emptyList());
+		expect(resolver.lookupSRVRecords(new Name("_sip._udp.example.org."))).andReturn(services);
+		expect(resolver.lookupARecords(new Name("a.example.org."))).andReturn(addresses);
+		expect(resolver.lookupAAAARecords(new Name("a.example.org."))).andReturn(Collections.<AAAARecord>emptySet());
+		replay(resolver);
+
+		LocateStatistics statistics = new LocateStatistics();
+		Locator locator = new Locator(Collections.singletonList("UDP"), resolver, new ServiceRecordDeterministicWeightSorter(new ServiceRecordDeterministicComparator()), null, EnumSet.allOf(AddressFamily.class), statistics);
+		locator.locate(addressFactory.createSipURI(null, "example.org"));
+		locator.locate(addressFactory.createSipURI(null, "127.0.0.1"));
+
+		assertEquals(2, statistics.getLocates());
+		assertEquals(1, statistics.getLocates(LocatePath.SRV));
+		assertEquals(1, statistics.getLocates(LocatePath.NUMERIC));
+		assertEquals(2, statistics.getHops());
+		assertEquals(0, statistics.getEmptyLocates());
+	}
+
+	@Test
+	public void testListenerShouldSeeAddressFallback() throws ParseException, IOException {
+		expect(resolver.lookupNAPTRRecords(new Name("example.org."))).andReturn(Collections.<NAPTRRecord>emptyList());
+		expect(resolver.lookupSRVRecords(new Name("_sip._udp.example.org."))).andReturn(Collections.<SRVRecord>emptyList());
+		expect(resolver.lookupARecords(new Name("example.org."))).andReturn(Collections.<ARecord>emptySet());
+		expect(resolver.lookupAAAARecords(new Name("example.org."))).andReturn(Collections.<AAAARecord>emptySet());
+		replay(resolver);
+
+		LocateStatistics statistics = new LocateStatistics();
+		Locator locator = new Locator(Collections.singletonList("UDP"), resolver, new ServiceRecordDeterministicWeightSorter(new ServiceRecordDeterministicComparator()), null, EnumSet.allOf(AddressFamily.class), statistics);
+		locator.locate(addressFactory.createSipURI(null, "example.org"));
+
+		assertEquals(1, statistics.getLocates(LocatePath.A_FALLBACK));
+		assertEquals(1, statistics.getEmptyLocates());
+	}
+
+	@Test
+	public void testListenerShouldSeeFailure() throws ParseException, IOException {
+		replay(resolver);
+
+		LocateStatistics statistics = new LocateStatistics();
+		Locator locator = new Locator(Collections.singletonList("UDP"), resolver, new ServiceRecordDeterministicWeightSorter(new ServiceRecordDeterministicComparator()), null, EnumSet.allOf(AddressFamily.class), statistics);
+		SipURI uri = addressFactory.createSipURI(null, "example.org");
+		uri.setParameter("transport", "ws");
+		try {
+			locator.locate(uri);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected: no default port for an unknown transport
+		}
+
+		assertEquals(1, statistics.getLocates());
+		assertEquals(1, statistics.getFailedLocates());
+		assertEquals(0, statistics.getEmptyLocates());
+	}
+
+	@Test
+	public void testListenerShouldSeeInvalidDomain() throws ParseException {
+		replay(resolver);
+
+		LocateStatistics statistics = new LocateStatistics();
+		Locator locator = new Locator(Collections.singletonList("UDP"), resolver, new ServiceRecordDeterministicWeightSorter(new ServiceRecordDeterministicComparator()), null, EnumSet.allOf(AddressFamily.class), statistics);
+		SipURI uri = addressFactory.createSipURI(null, "bad..example.com");
+		try {
+			locator.locate(uri);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			// expected: the domain cannot be parsed
+		}
+
+		assertEquals(1, statistics.getFailedLocates());
+		assertEquals(1, statistics.getLocates(LocatePath.A_FALLBACK));
+	}
+
+	@Test
+	public void testOutstandingRequestsShouldFollowResolvedHopTarget() throws ParseException, IOException {
+		replay(resolver);
+
+		List<Record> records = new ArrayList<Record>();
+		records.add(new SRVRecord(new Name("_sip._udp.example.org."), DClass.IN, 1000L, 0, 10, 5060, new Name("a.example.org.")));
+		records.add(new SRVRecord(new Name("_sip._udp.example.org."), DClass.IN, 1000L, 0, 10, 5060, new Name("b.example.org.")));
+		records.add(new ARecord(new Name("a.example.org."), DClass.IN, 1000L, InetAddress.getByName("192.0.2.1")));
+		records.add(new ARecord(new Name("b.example.org."), DClass.IN, 1000L, InetAddress.getByName("192.0.2.2")));
+		OutstandingRequestRegistry registry = new OutstandingRequestRegistry();
+		Locator locator = new Locator(Collections.singletonList("UDP"), new InMemoryResolver(records), new ServiceRecordLeastOutstandingWeightSorter(registry));
+		SipURI uri = addressFactory.createSipURI(null, "example.org");
+
+		Hop first = locator.locate(uri).peek();
+		assertThat(first.getHost(), is("192.0.2.1"));
+
+		// A transaction in flight to the chosen hop's target moves it down
+		Name target = ((ResolvedHop) first).getTarget();
+		registry.increment(target);
+		assertThat(locator.locate(uri).peek().getHost(), is("192.0.2.2"));
+
+		registry.decrement(target);
+		assertThat(locator.locate(uri).peek().getHost(), is("192.0.2.1"));
+	}
+
 	private Queue<Hop> locateMultipleIpv4AndIpv4Hops() throws ParseException, IOException {
 		List<SRVRecord> services = new ArrayList<SRVRecord>();
 		services.add(new SRVRecord(new Name("_sip._udp.example.org."), DClass.IN, 1000L, 0, 0, 5060, new Name("example.org.")));
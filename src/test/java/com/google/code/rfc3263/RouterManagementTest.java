@@ -0,0 +1,152 @@
+package com.google.code.rfc3263;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import javax.sip.SipFactory;
+import javax.sip.SipStack;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+
+import com.google.code.rfc3263.dns.CachingResolver;
+import com.google.code.rfc3263.dns.InMemoryResolver;
+import com.google.code.rfc3263.sorter.CompositeHopSorter;
+import com.google.code.rfc3263.sorter.HopSorter;
+import com.google.code.rfc3263.sorter.RoundTripTimeHopSorter;
+
+public class RouterManagementTest {
+	private final RoundTripTimeHopSorter rttSorter = new RoundTripTimeHopSorter();
+	private SipStack stack;
+	private CachingResolver cache;
+	private RouterManagement management;
+
+	@Before
+	public void setUp() throws Exception {
+		final Properties properties = new Properties();
+		properties.put("javax.sip.STACK_NAME", "Test");
+		stack = SipFactory.getInstance().createSipStack(properties);
+
+		final Record record = new ARecord(new Name("sip.example.org."), DClass.IN, 3600, InetAddress.getByName("192.0.2.10"));
+		cache = new CachingResolver(new InMemoryResolver(Collections.singleton(record)));
+		final DefaultRouter router = new DefaultRouter(stack, null, cache) {
+			@Override
+			protected List<String> getSupportedTransports() {
+				return Collections.singletonList("UDP");
+			}
+
+			@Override
+			protected HopSorter getHopSorter() {
+				return new CompositeHopSorter(Collections.<HopSorter>singletonList(rttSorter));
+			}
+		};
+		management = new RouterManagement(router, cache);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		management.unregister();
+		stack.stop();
+	}
+
+	@Test
+	public void testPrewarmShouldFillCache() {
+		assertEquals(1, management.prewarm(new String[] {"sip:sip.example.org", "sip:unknown.example.org", "tel:+15551234567", "not a uri"}));
+
+		// Every query is a miss, and every answer is cached, empty or not.
+		assertTrue(management.getCacheSize() > 0);
+		assertEquals(management.getCacheSize(), management.getCacheMisses());
+		assertEquals(0, management.getCacheHits());
+		assertEquals(0, management.getInFlightQueries());
+	}
+
+	@Test
+	public void testFlushShouldRemoveCachedAnswers() {
+		management.prewarm(new String[] {"sip:sip.example.org", "sip:unknown.example.org"});
+
+		final int size = management.getCacheSize();
+		final int flushed = management.flushDomain("sip.example.org");
+		assertTrue(flushed > 0);
+		assertEquals(size - flushed, management.getCacheSize());
+		assertEquals(size - flushed, management.flushSuffix("example.org."));
+		assertEquals(0, management.getCacheSize());
+	}
+
+	@Test
+	public void testRatesShouldCountEachLookup() {
+		management.prewarm(new String[] {"sip:sip.example.org", "sip:sip.example.org"});
+
+		// The second locate is answered from the cache, with and without records.
+		assertTrue(management.getCacheHitRate() > 0);
+		assertTrue(management.getCacheNegativeHitRate() > 0);
+		assertEquals(0.5, management.getCacheMissRate(), 0);
+		assertEquals(1, management.getCacheHitRate() + management.getCacheNegativeHitRate() + management.getCacheMissRate(), 1e-9);
+
+		management.resetCacheStatistics();
+		assertEquals(0, management.getCacheHitRate(), 0);
+	}
+
+	@Test
+	public void testHopHealthShouldShowRoundTripTimes() {
+		rttSorter.recordRtt(new HopImpl("192.0.2.10", 5060, "UDP"), 2500000L);
+
+		assertEquals(Collections.singletonMap("192.0.2.10:5060/UDP", "2.500 ms"), management.getHopHealth());
+
+		management.resetHopHealth();
+		assertTrue(management.getHopHealth().isEmpty());
+	}
+
+	@Test
+	public void testHopSorterShouldBeLookedUpOnce() {
+		final AtomicInteger calls = new AtomicInteger();
+		final DefaultRouter router = new DefaultRouter(stack, null, cache) {
+			@Override
+			protected HopSorter getHopSorter() {
+				calls.incrementAndGet();
+				return rttSorter;
+			}
+		};
+		final RouterManagement management = new RouterManagement(router, cache);
+		rttSorter.recordRtt(new HopImpl("192.0.2.10", 5060, "UDP"), 1000000L);
+		management.getHopHealth();
+		management.resetHopHealth();
+
+		assertEquals(1, calls.get());
+		assertTrue(management.getHopHealth().isEmpty());
+	}
+
+	@Test
+	public void testRegisteredBeanShouldBeVisibleOverJmx() throws Exception {
+		final ObjectName name = management.register("test");
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		rttSorter.recordRtt(new HopImpl("192.0.2.10", 5060, "UDP"), 1000000L);
+
+		assertEquals(new ObjectName("com.google.code.rfc3263:type=Router,name=\"test\""), name);
+		assertArrayEquals(new String[] {"UDP"}, (String[]) server.getAttribute(name, "Transports"));
+		assertEquals(1, ((TabularData) server.getAttribute(name, "HopHealth")).size());
+		assertEquals(1, server.invoke(name, "prewarm", new Object[] {new String[] {"sip:sip.example.org"}}, new String[] {String[].class.getName()}));
+		assertTrue((Integer) server.getAttribute(name, "CacheSize") > 0);
+		server.invoke(name, "flushAll", new Object[0], new String[0]);
+		assertEquals(0, server.getAttribute(name, "CacheSize"));
+
+		management.unregister();
+		assertFalse(server.isRegistered(name));
+	}
+}
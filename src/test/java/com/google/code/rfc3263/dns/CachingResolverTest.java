@@ -0,0 +1,212 @@
+package com.google.code.rfc3263.dns;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.Type;
+
+public class CachingResolverTest {
+	@Test
+	public void testAnswerShouldBeCached() throws Exception {
+		Name target = new Name("sip.example.org.");
+		Set<ARecord> records = Collections.singleton(new ARecord(target, DClass.IN, 300L, InetAddress.getByName("192.0.2.1")));
+		Resolver resolver = EasyMock.createMock(Resolver.class);
+		expect(resolver.lookupARecords(target)).andReturn(records).once();
+		replay(resolver);
+
+		CachingResolver cache = new CachingResolver(resolver);
+		assertEquals(records, cache.lookupARecords(target));
+		assertEquals(records, cache.lookupARecords(target));
+		verify(resolver);
+
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0, cache.getNegativeHits());
+		assertEquals(0, cache.getInFlight());
+	}
+
+	@Test
+	public void testEmptyAnswerShouldBeCachedAsNegative() throws Exception {
+		Name serviceId = new Name("_sip._udp.example.org.");
+		Resolver resolver = EasyMock.createMock(Resolver.class);
+		expect(resolver.lookupSRVRecords(serviceId)).andReturn(Collections.<SRVRecord>emptyList()).once();
+		replay(resolver);
+
+		CachingResolver cache = new CachingResolver(resolver);
+		assertTrue(cache.lookupSRVRecords(serviceId).isEmpty());
+		assertTrue(cache.lookupSRVRecords(serviceId).isEmpty());
+		verify(resolver);
+
+		assertEquals(1, cache.getNegativeHits());
+		assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	public void testTimeoutShouldNotBeCached() throws Exception {
+		Name target = new Name("sip.example.org.");
+		Set<ARecord> records = Collections.singleton(new ARecord(target, DClass.IN, 300L, InetAddress.getByName("192.0.2.1")));
+		ReportingResolver resolver = EasyMock.createMock(ReportingResolver.class);
+		expect(resolver.lookupARecords(target)).andReturn(Collections.<ARecord>emptySet()).once();
+		expect(resolver.getLastOutcome()).andReturn(LookupOutcome.TIMEOUT).once();
+		expect(resolver.lookupARecords(target)).andReturn(records).once();
+		replay(resolver);
+
+		CachingResolver cache = new CachingResolver(resolver);
+		assertTrue(cache.lookupARecords(target).isEmpty());
+		assertEquals(0, cache.size());
+		assertEquals(records, cache.lookupARecords(target));
+		assertEquals(records, cache.lookupARecords(target));
+		verify(resolver);
+
+		assertEquals(1, cache.getHits());
+		assertEquals(0, cache.getNegativeHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testTimeoutBehindDecoratorShouldNotBeCached() throws Exception {
+		Name serviceId = new Name("_sip._udp.example.org.");
+		ReportingResolver resolver = EasyMock.createMock(ReportingResolver.class);
+		expect(resolver.lookupSRVRecords(serviceId)).andReturn(Collections.<SRVRecord>emptyList()).times(2);
+		expect(resolver.getLastOutcome()).andReturn(LookupOutcome.TIMEOUT).anyTimes();
+		replay(resolver);
+
+		MetricsResolver metrics = new MetricsResolver(resolver);
+		CachingResolver cache = new CachingResolver(metrics);
+		assertTrue(cache.lookupSRVRecords(serviceId).isEmpty());
+		assertTrue(cache.lookupSRVRecords(serviceId).isEmpty());
+		verify(resolver);
+
+		assertEquals(0, cache.size());
+		assertEquals(2, metrics.getOutcomes(Type.SRV, LookupOutcome.TIMEOUT));
+	}
+
+	@Test
+	public void testNonExistentDomainShouldBeCachedAsNegative() throws Exception {
+		Name target = new Name("sip.example.org.");
+		ReportingResolver resolver = EasyMock.createMock(ReportingResolver.class);
+		expect(resolver.lookupAAAARecords(target)).andReturn(Collections.<AAAARecord>emptySet()).once();
+		expect(resolver.getLastOutcome()).andReturn(LookupOutcome.NXDOMAIN).once();
+		replay(resolver);
+
+		CachingResolver cache = new CachingResolver(resolver);
+		assertTrue(cache.lookupAAAARecords(target).isEmpty());
+		assertTrue(cache.lookupAAAARecords(target).isEmpty());
+		verify(resolver);
+
+		assertEquals(1, cache.getNegativeHits());
+	}
+
+	@Test
+	public void testCachedRecordsShouldHaveRemainingTtl() throws Exception {
+		Name target = new Name("sip.example.org.");
+		ARecord record = new ARecord(target, DClass.IN, 300L, InetAddress.getByName("192.0.2.1"));
+		CachingResolver cache = new CachingResolver(new InMemoryResolver(Collections.<Record>singleton(record)));
+		assertEquals(300L, cache.lookupARecords(target).iterator().next().getTTL());
+
+		Thread.sleep(1100);
+		ARecord aged = cache.lookupARecords(target).iterator().next();
+		assertEquals(record.getAddress(), aged.getAddress());
+		assertTrue(aged.getTTL() < 300L);
+		assertTrue(aged.getTTL() >= 298L);
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testAgedRecordsShouldKeepNameCase() throws Exception {
+		Name serviceId = new Name("_sip._udp.example.org.");
+		SRVRecord record = new SRVRecord(serviceId, DClass.IN, 300L, 0, 0, 5060, new Name("Sip.Example.ORG."));
+		CachingResolver cache = new CachingResolver(new InMemoryResolver(Collections.<Record>singleton(record)));
+		cache.lookupSRVRecords(serviceId);
+
+		Thread.sleep(1100);
+		SRVRecord aged = cache.lookupSRVRecords(serviceId).get(0);
+		assertEquals("Sip.Example.ORG.", aged.getTarget().toString());
+		assertEquals(5060, aged.getPort());
+		assertTrue(aged.getTTL() < 300L);
+		// Rebuilt once per second, not on every hit
+		assertSame(aged, cache.lookupSRVRecords(serviceId).get(0));
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNullResolverShouldBeRejected() {
+		new CachingResolver(null);
+	}
+
+	@Test
+	public void testZeroTtlShouldNotBeCached() throws Exception {
+		Name target = new Name("sip.example.org.");
+		Set<AAAARecord> records = Collections.singleton(new AAAARecord(target, DClass.IN, 0L, InetAddress.getByName("2001:db8::1")));
+		Resolver resolver = EasyMock.createMock(Resolver.class);
+		expect(resolver.lookupAAAARecords(target)).andReturn(records).times(2);
+		expect(resolver.lookupARecords(target)).andReturn(Collections.<ARecord>emptySet()).times(2);
+		replay(resolver);
+
+		CachingResolver cache = new CachingResolver(resolver, 10, 0, TimeUnit.SECONDS);
+		cache.lookupAAAARecords(target);
+		cache.lookupAAAARecords(target);
+		cache.lookupARecords(target);
+		cache.lookupARecords(target);
+		verify(resolver);
+
+		assertEquals(0, cache.size());
+		assertEquals(4, cache.getMisses());
+	}
+
+	@Test
+	public void testFullCacheShouldEvict() throws Exception {
+		CachingResolver cache = new CachingResolver(new InMemoryResolver(Collections.<Record>emptyList()), 2, 60, TimeUnit.SECONDS);
+		cache.lookupARecords(new Name("a.example.org."));
+		cache.lookupARecords(new Name("b.example.org."));
+		cache.lookupARecords(new Name("c.example.org."));
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+	}
+
+	@Test
+	public void testFlushShouldRemoveDomainOrSuffix() throws Exception {
+		CachingResolver cache = new CachingResolver(new InMemoryResolver(Collections.<Record>emptyList()));
+		Name domain = new Name("example.org.");
+		cache.lookupNAPTRRecords(domain);
+		cache.lookupARecords(domain);
+		cache.lookupSRVRecords(new Name("_sip._udp.example.org."));
+		cache.lookupARecords(new Name("example.net."));
+
+		assertEquals(2, cache.flush(domain));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.flushSuffix(domain));
+		assertEquals(1, cache.size());
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testCachedAnswerShouldBeCopied() throws Exception {
+		Name domain = new Name("example.org.");
+		CachingResolver cache = new CachingResolver(new InMemoryResolver(Collections.<Record>emptyList()));
+		List<SRVRecord> first = cache.lookupSRVRecords(domain);
+		first.add(new SRVRecord(domain, DClass.IN, 300L, 0, 0, 5060, domain));
+
+		assertTrue(cache.lookupSRVRecords(domain).isEmpty());
+	}
+}
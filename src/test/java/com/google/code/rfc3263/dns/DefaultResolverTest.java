@@ -0,0 +1,97 @@
+package com.google.code.rfc3263.dns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.SimpleResolver;
+
+public class DefaultResolverTest {
+	private Name domain;
+	private Name serviceId;
+	private Name target;
+	private StubDnsServer server;
+	private DefaultResolver resolver;
+
+	@Before
+	public void setUp() throws Exception {
+		domain = new Name("example.org.");
+		serviceId = new Name("_sip._udp.example.org.");
+		target = new Name("sip.example.org.");
+		List<Record> records = new ArrayList<Record>();
+		records.add(new NAPTRRecord(domain, DClass.IN, 300L, 50, 50, "s", "SIP+D2U", "", serviceId));
+		records.add(new SRVRecord(serviceId, DClass.IN, 300L, 0, 10, 5060, target));
+		// Enough addresses that the answer does not fit in 512 bytes.
+		for (int i = 1; i <= 40; i++) {
+			records.add(new ARecord(target, DClass.IN, 300L, InetAddress.getByName("192.0.2." + i)));
+		}
+		records.add(new AAAARecord(target, DClass.IN, 300L, InetAddress.getByName("2001:db8::1")));
+		server = new StubDnsServer(records);
+
+		SimpleResolver stub = server.getResolver();
+		stub.setTimeout(2);
+		resolver = new DefaultResolver(stub, null);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+	}
+
+	@Test
+	public void testLookupsShouldBeAnsweredOverUdp() throws Exception {
+		assertEquals(1, resolver.lookupNAPTRRecords(domain).size());
+		assertEquals(1, resolver.lookupSRVRecords(serviceId).size());
+		assertEquals(1, resolver.lookupAAAARecords(target).size());
+		assertTrue(resolver.lookupAAAARecords(domain).isEmpty());
+		assertTrue(resolver.lookupSRVRecords(new Name("_sip._tcp.example.org.")).isEmpty());
+		assertEquals(5, server.getUdpQueries());
+		assertEquals(0, server.getTcpQueries());
+	}
+
+	@Test
+	public void testLargeAnswerShouldBeRetriedOverTcp() throws Exception {
+		assertEquals(40, resolver.lookupARecords(target).size());
+		assertEquals(1, server.getTcpQueries());
+	}
+
+	@Test
+	public void testTruncatedAnswerShouldBeRetriedOverTcp() throws Exception {
+		server.setTruncate(true);
+
+		assertEquals(1, resolver.lookupNAPTRRecords(domain).size());
+		assertEquals(1, server.getUdpQueries());
+		assertEquals(1, server.getTcpQueries());
+	}
+
+	@Test
+	public void testNullCacheShouldSendEveryLookup() throws Exception {
+		resolver.lookupNAPTRRecords(domain);
+		resolver.lookupNAPTRRecords(domain);
+
+		assertEquals(2, server.getUdpQueries());
+	}
+
+	@Test
+	public void testAnswersShouldBeDelayed() throws Exception {
+		server.setDelay(50, TimeUnit.MILLISECONDS);
+
+		long start = System.nanoTime();
+		resolver.lookupNAPTRRecords(domain);
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+	}
+}
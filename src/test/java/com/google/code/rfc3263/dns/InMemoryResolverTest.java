@@ -0,0 +1,48 @@
+package com.google.code.rfc3263.dns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+
+public class InMemoryResolverTest {
+	@Test
+	public void testLookupByNameAndType() throws Exception {
+		Name domain = new Name("example.org.");
+		Name serviceId = new Name("_sip._udp.example.org.");
+		List<Record> records = new ArrayList<Record>();
+		records.add(new NAPTRRecord(domain, DClass.IN, 300L, 50, 50, "s", "SIP+D2U", "", serviceId));
+		records.add(new SRVRecord(serviceId, DClass.IN, 300L, 0, 0, 5060, domain));
+		records.add(new ARecord(domain, DClass.IN, 300L, InetAddress.getByName("192.0.2.1")));
+		InMemoryResolver resolver = new InMemoryResolver(records);
+
+		assertEquals(2, resolver.size());
+		assertEquals(1, resolver.lookupNAPTRRecords(new Name("EXAMPLE.org.")).size());
+		assertEquals(1, resolver.lookupSRVRecords(serviceId).size());
+		assertEquals(1, resolver.lookupARecords(domain).size());
+		assertTrue(resolver.lookupAAAARecords(domain).isEmpty());
+		assertTrue(resolver.lookupSRVRecords(domain).isEmpty());
+		assertTrue(resolver.lookupARecords(new Name("example.net.")).isEmpty());
+	}
+
+	@Test
+	public void testAnswersAreCopies() throws Exception {
+		Name domain = new Name("example.org.");
+		List<Record> records = new ArrayList<Record>();
+		records.add(new NAPTRRecord(domain, DClass.IN, 300L, 50, 50, "s", "SIP+D2U", "", new Name("_sip._udp.example.org.")));
+		InMemoryResolver resolver = new InMemoryResolver(records);
+
+		resolver.lookupNAPTRRecords(domain).clear();
+		assertEquals(1, resolver.lookupNAPTRRecords(domain).size());
+	}
+}
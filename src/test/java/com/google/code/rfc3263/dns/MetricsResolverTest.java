@@ -0,0 +1,72 @@
+package com.google.code.rfc3263.dns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SimpleResolver;
+import org.xbill.DNS.Type;
+
+public class MetricsResolverTest {
+	@Test
+	public void testShouldCountAnswersAndEmptyLookups() throws Exception {
+		Name target = new Name("sip.example.org.");
+		List<Record> records = new ArrayList<Record>();
+		records.add(new ARecord(target, DClass.IN, 300L, InetAddress.getByName("192.0.2.1")));
+		MetricsResolver resolver = new MetricsResolver(new InMemoryResolver(records));
+
+		resolver.lookupARecords(target);
+		resolver.lookupARecords(target);
+		resolver.lookupAAAARecords(target);
+
+		assertEquals(2, resolver.getQueries(Type.A));
+		assertEquals(2, resolver.getOutcomes(Type.A, LookupOutcome.ANSWER));
+		assertEquals(1, resolver.getOutcomes(Type.AAAA, LookupOutcome.EMPTY));
+		assertEquals(0, resolver.getQueries(Type.SRV));
+		assertEquals(2, resolver.getLatency(Type.A).getCount());
+
+		resolver.reset();
+		assertEquals(0, resolver.getQueries(Type.A));
+		assertEquals(0, resolver.getLatency(Type.A).getCount());
+	}
+
+	@Test
+	public void testShouldCountReportedOutcomes() throws Exception {
+		Name target = new Name("sip.example.org.");
+		StubDnsServer server = new StubDnsServer(Collections.singleton(new ARecord(target, DClass.IN, 300L, InetAddress.getByName("192.0.2.1"))));
+		try {
+			SimpleResolver stub = server.getResolver();
+			stub.setTimeout(0, 200);
+			MetricsResolver resolver = new MetricsResolver(new DefaultResolver(stub, null));
+
+			resolver.lookupARecords(target);
+			resolver.lookupAAAARecords(target);
+			resolver.lookupSRVRecords(new Name("_sip._udp.example.org."));
+			server.setDelay(1, TimeUnit.SECONDS);
+			resolver.lookupNAPTRRecords(target);
+
+			assertEquals(1, resolver.getOutcomes(Type.A, LookupOutcome.ANSWER));
+			assertEquals(1, resolver.getOutcomes(Type.AAAA, LookupOutcome.NODATA));
+			assertEquals(1, resolver.getOutcomes(Type.SRV, LookupOutcome.NXDOMAIN));
+			assertEquals(1, resolver.getOutcomes(Type.NAPTR, LookupOutcome.TIMEOUT));
+			assertTrue(resolver.getLatency(Type.NAPTR).getMax() >= TimeUnit.MILLISECONDS.toNanos(200));
+		} finally {
+			server.close();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedTypeShouldBeRejected() throws Exception {
+		new MetricsResolver(new InMemoryResolver(Collections.<Record>emptyList())).getQueries(Type.MX);
+	}
+}
@@ -0,0 +1,130 @@
+package com.google.code.rfc3263.dns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.NAPTRRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+
+public class ReplayResolverTest {
+	@Test
+	public void testReplayShouldServeRecordedAnswers() throws Exception {
+		Name domain = new Name("example.org.");
+		Name serviceId = new Name("_sip._udp.example.org.");
+		Name target = new Name("sip.example.org.");
+		List<Record> records = new ArrayList<Record>();
+		records.add(new NAPTRRecord(domain, DClass.IN, 300L, 50, 50, "s", "SIP+D2U", "", serviceId));
+		records.add(new SRVRecord(serviceId, DClass.IN, 600L, 0, 10, 5060, target));
+		records.add(new ARecord(target, DClass.IN, 900L, InetAddress.getByName("192.0.2.1")));
+		records.add(new AAAARecord(target, DClass.IN, 1200L, InetAddress.getByName("2001:db8::1")));
+		InMemoryResolver zone = new InMemoryResolver(records);
+
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		RecordingResolver recorder = new RecordingResolver(zone, log);
+		recorder.lookupNAPTRRecords(domain);
+		recorder.lookupSRVRecords(serviceId);
+		recorder.lookupARecords(target);
+		recorder.lookupAAAARecords(target);
+		recorder.lookupARecords(domain);
+		recorder.close();
+
+		ReplayResolver replay = new ReplayResolver(new ByteArrayInputStream(log.toByteArray()), 0);
+		assertEquals(5, replay.size());
+		assertEquals(zone.lookupNAPTRRecords(domain), replay.lookupNAPTRRecords(domain));
+		assertEquals(zone.lookupSRVRecords(serviceId), replay.lookupSRVRecords(serviceId));
+		assertEquals(zone.lookupARecords(target), replay.lookupARecords(target));
+		assertEquals(zone.lookupAAAARecords(target), replay.lookupAAAARecords(target));
+		assertTrue(replay.lookupARecords(domain).isEmpty());
+		assertEquals(600L, replay.lookupSRVRecords(serviceId).get(0).getTTL());
+		assertEquals(0, replay.getMisses());
+
+		assertTrue(replay.lookupAAAARecords(domain).isEmpty());
+		assertEquals(1, replay.getMisses());
+	}
+
+	@Test
+	public void testRepeatedQueriesShouldBeServedInTurn() throws Exception {
+		final Name target = new Name("sip.example.org.");
+		final ARecord first = new ARecord(target, DClass.IN, 300L, InetAddress.getByName("192.0.2.1"));
+		final ARecord second = new ARecord(target, DClass.IN, 300L, InetAddress.getByName("192.0.2.2"));
+
+		final Resolver rotating = new InMemoryResolver(Collections.<Record>emptyList()) {
+			private boolean rotated;
+
+			@Override
+			public Set<ARecord> lookupARecords(Name domain) {
+				rotated = !rotated;
+				return new HashSet<ARecord>(Arrays.asList(rotated ? first : second));
+			}
+		};
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		RecordingResolver recorder = new RecordingResolver(rotating, log);
+		recorder.lookupARecords(target);
+		recorder.lookupARecords(target);
+		recorder.close();
+
+		ReplayResolver replay = new ReplayResolver(new ByteArrayInputStream(log.toByteArray()), 0);
+		assertEquals(new HashSet<ARecord>(Arrays.asList(first)), replay.lookupARecords(target));
+		assertEquals(new HashSet<ARecord>(Arrays.asList(second)), replay.lookupARecords(target));
+		assertEquals(new HashSet<ARecord>(Arrays.asList(first)), replay.lookupARecords(target));
+	}
+
+	@Test
+	public void testReplayShouldKeepRecordedLatency() throws Exception {
+		final Name target = new Name("sip.example.org.");
+		final Resolver slow = new InMemoryResolver(Collections.<Record>emptyList()) {
+			@Override
+			public Set<ARecord> lookupARecords(Name domain) {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.lookupARecords(domain);
+			}
+		};
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		RecordingResolver recorder = new RecordingResolver(slow, log);
+		recorder.lookupARecords(target);
+		recorder.close();
+
+		ReplayResolver replay = new ReplayResolver(new ByteArrayInputStream(log.toByteArray()));
+		long start = System.nanoTime();
+		replay.lookupARecords(target);
+		assertTrue(System.nanoTime() - start >= 50000000L);
+	}
+
+	@Test(expected = IOException.class)
+	public void testNonLogShouldBeRejected() throws Exception {
+		new ReplayResolver(new ByteArrayInputStream("not a log".getBytes("US-ASCII")));
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedLogShouldBeRejected() throws Exception {
+		Name target = new Name("sip.example.org.");
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		RecordingResolver recorder = new RecordingResolver(new InMemoryResolver(Collections.singleton(new ARecord(target, DClass.IN, 300L, InetAddress.getByName("192.0.2.1")))), log);
+		recorder.lookupARecords(target);
+		recorder.close();
+
+		byte[] bytes = log.toByteArray();
+		new ReplayResolver(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 2)));
+	}
+}
@@ -4,12 +4,17 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.google.code.rfc3263.dns.sorter.ServiceRecordDeterministicWeightSorter;
+import com.google.code.rfc3263.dns.sorter.OutstandingRequestRegistry;
+import com.google.code.rfc3263.dns.sorter.ServiceRecordLeastOutstandingWeightSorter;
 import com.google.code.rfc3263.dns.sorter.ServiceRecordLoadBalanceWeightSorter;
+import com.google.code.rfc3263.dns.sorter.ServiceRecordRendezvousWeightSorter;
 import org.junit.Test;
 import org.xbill.DNS.DClass;
 import org.xbill.DNS.Name;
@@ -120,6 +125,118 @@ public class ServiceRecordSelectorTest {
 		assertTrue(cPositionCount.getCount(2) > 8500);
 	}
 
+	/**
+	 * Tests that the same key always yields the same order, whatever the input order.
+	 * @throws TextParseException
+	 */
+	@Test
+	public void testSelectByRendezvousIsStableForKey() throws TextParseException {
+		SRVRecord a = new SRVRecord(new Name("_sip._tcp.example.org."), DClass.IN, 1000L, 1, 10, 5060, new Name("a.sip.example.org."));
+		SRVRecord b = new SRVRecord(new Name("_sip._tcp.example.org."), DClass.IN, 1000L, 1, 10, 5060, new Name("b.sip.example.org."));
+		SRVRecord c = new SRVRecord(new Name("_sip._tcp.example.org."), DClass.IN, 1000L, 1, 10, 5060, new Name("c.sip.example.org."));
+		SRVRecord d = new SRVRecord(new Name("_sip._tcp.example.org."), DClass.IN, 1000L, 1, 0, 5060, new Name("d.sip.example.org."));
+
+		for (int i = 0; i < 100; i++) {
+			ServiceRecordRendezvousWeightSorter sorter = new ServiceRecordRendezvousWeightSorter("call-" + i);
+
+			List<SRVRecord> forward = new ArrayList<SRVRecord>(Arrays.asList(a, b, c, d));
+			List<SRVRecord> reverse = new ArrayList<SRVRecord>(Arrays.asList(d, c, b, a));
+
+			List<SRVRecord> forwardSorted = new ServiceRecordSelector(forward, sorter).select();
+			List<SRVRecord> reverseSorted = new ServiceRecordSelector(reverse, sorter).select();
+
+			assertEquals(forwardSorted, reverseSorted);
+			assertEquals(forwardSorted, new ServiceRecordSelector(forward, new ServiceRecordRendezvousWeightSorter("call-" + i)).select());
+			// Zero weight records are always last
+			assertEquals(d, forwardSorted.get(3));
+		}
+	}
+
+	/**
+	 * Tests that removing a target only remaps the keys which preferred that target.
+	 * @throws TextParseException
+	 */
+	@Test
+	public void testSelectByRendezvousRemapsOnlyRemovedTarget() throws TextParseException {
+		SRVRecord a = new SRVRecord(new Name("_sip._tcp.example.org."), DClass.IN, 1000L, 1, 10, 5060, new Name("a.sip.example.org."));
+		SRVRecord b = new SRVRecord(new Name("_sip._tcp.example.org."), DClass.IN, 1000L, 1, 20, 5060, new Name("b.sip.example.org."));
+		SRVRecord c = new SRVRecord(new Name("_sip._tcp.example.org."), DClass.IN, 1000L, 1, 30, 5060, new Name("c.sip.example.org."));
+
+		int remapped = 0;
+		for (int i = 0; i < 10000; i++) {
+			ServiceRecordRendezvousWeightSorter sorter = new ServiceRecordRendezvousWeightSorter("sip:user" + i + "@example.org");
+
+			SRVRecord before = new ServiceRecordSelector(Arrays.asList(a, b, c), sorter).select().get(0);
+			SRVRecord after = new ServiceRecordSelector(Arrays.asList(a, b), sorter).select().get(0);
+
+			if (before != c) {
+				assertEquals(before, after);
+			} else {
+				remapped++;
+			}
+		}
+
+		// c has half of the total weight
+		assertTrue(remapped > 4500);
+		assertTrue(remapped < 5500);
+	}
+
+	/**
+	 * Tests that busy targets move down in proportion to their weight.
+	 * @throws TextParseException
+	 */
+	@Test
+	public void testSelectByLeastOutstanding() throws TextParseException {
+		SRVRecord a = new SRVRecord(new Name("_sip._tcp.example.org."), DClass.IN, 1000L, 1, 10, 5060, new Name("a.sip.example.org."));
+		SRVRecord b = new SRVRecord(new Name("_sip._tcp.example.org."), DClass.IN, 1000L, 1, 20, 5060, new Name("b.sip.example.org."));
+		SRVRecord c = new SRVRecord(new Name("_sip._tcp.example.org."), DClass.IN, 1000L, 1, 0, 5060, new Name("c.sip.example.org."));
+
+		OutstandingRequestRegistry registry = new OutstandingRequestRegistry();
+		ServiceRecordLeastOutstandingWeightSorter sorter = new ServiceRecordLeastOutstandingWeightSorter(registry);
+
+		// Idle: heaviest first, zero weight last
+		assertEquals(Arrays.asList(b, a, c), new ServiceRecordSelector(Arrays.asList(c, a, b), sorter).select());
+
+		// b: (1 + 1) / 20 == a: (0 + 1) / 10, so heaviest first
+		registry.increment(new Name("b.sip.example.org."));
+		assertEquals(Arrays.asList(b, a, c), new ServiceRecordSelector(Arrays.asList(c, a, b), sorter).select());
+
+		// b: (2 + 1) / 20 > a: (0 + 1) / 10
+		registry.increment(new Name("B.SIP.EXAMPLE.ORG."));
+		assertEquals(Arrays.asList(a, b, c), new ServiceRecordSelector(Arrays.asList(c, a, b), sorter).select());
+
+		registry.decrement(new Name("b.sip.example.org."));
+		assertEquals(1, registry.getOutstanding(new Name("b.sip.example.org.")));
+		assertEquals(Arrays.asList(b, a, c), new ServiceRecordSelector(Arrays.asList(c, a, b), sorter).select());
+	}
+
+	/**
+	 * Tests that a record set too large for the scratch arrays is ordered the
+	 * same way whatever its initial order.
+	 * @throws TextParseException
+	 */
+	@Test
+	public void testSelectByRendezvousLargeSetIsStable() throws TextParseException {
+		List<SRVRecord> records = new ArrayList<SRVRecord>();
+		for (int i = 0; i < 40; i++) {
+			records.add(new SRVRecord(new Name("_sip._tcp.example.org."), DClass.IN, 1000L, 1, i % 4, 5060, new Name("sip" + i + ".example.org.")));
+		}
+		ServiceRecordRendezvousWeightSorter sorter = new ServiceRecordRendezvousWeightSorter("a84b4c76e66710");
+		List<SRVRecord> forward = new ArrayList<SRVRecord>(records);
+		sorter.sort(forward);
+		List<SRVRecord> reverse = new ArrayList<SRVRecord>(records);
+		Collections.reverse(reverse);
+		sorter.sort(reverse);
+
+		assertEquals(forward, reverse);
+		assertEquals(0, forward.get(39).getWeight());
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testLeastOutstandingRejectsNullRegistry() {
+		new ServiceRecordLeastOutstandingWeightSorter(null);
+	}
+
 	private static class PositionCount {
 		Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
 
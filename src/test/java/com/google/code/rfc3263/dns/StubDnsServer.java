@@ -0,0 +1,296 @@
+package com.google.code.rfc3263.dns;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.OPTRecord;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.SimpleResolver;
+
+/**
+ * This class is a minimal authoritative DNS server on the loopback interface,
+ * answering UDP and TCP queries on the same port from a fixed set of records.
+ * It lets tests and benchmarks exercise {@link DefaultResolver} and dnsjava
+ * over real sockets, without network access.
+ * <p>
+ * Names with no records are answered with NXDOMAIN, and names without records
+ * of the queried type with an empty answer.  UDP answers larger than the
+ * client's limit are truncated, and truncation of every UDP answer can be
+ * forced, so that the client retries over TCP.  A delay can be added before
+ * each answer.  Queries are answered concurrently, so a delay does not hold
+ * up other clients.
+ */
+@ThreadSafe
+public final class StubDnsServer implements Closeable {
+	private static final int UDP_LIMIT = 512;
+
+	private final Map<Name, List<Record>> records = new HashMap<Name, List<Record>>();
+	private final DatagramSocket udp;
+	private final ServerSocket tcp;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final AtomicLong udpQueries = new AtomicLong();
+	private final AtomicLong tcpQueries = new AtomicLong();
+	private volatile long delayNanos;
+	private volatile boolean truncate;
+
+	/**
+	 * Creates a new server for the given records, and starts it on a free port.
+	 *
+	 * @param records the records to serve.
+	 * @throws IOException if the server cannot be started.
+	 */
+	public StubDnsServer(Collection<? extends Record> records) throws IOException {
+		for (Record record : records) {
+			List<Record> list = this.records.get(record.getName());
+			if (list == null) {
+				list = new ArrayList<Record>();
+				this.records.put(record.getName(), list);
+			}
+			list.add(record);
+		}
+
+		final InetAddress loopback = InetAddress.getByName("127.0.0.1");
+		// Take a free UDP port, then the same port for TCP, trying again if
+		// the TCP port is already taken.
+		DatagramSocket udp = null;
+		ServerSocket tcp = null;
+		for (int attempt = 0; tcp == null; attempt++) {
+			udp = new DatagramSocket(new InetSocketAddress(loopback, 0));
+			try {
+				tcp = new ServerSocket(udp.getLocalPort(), 50, loopback);
+			} catch (BindException e) {
+				udp.close();
+				if (attempt == 10) {
+					throw e;
+				}
+			}
+		}
+		this.udp = udp;
+		this.tcp = tcp;
+
+		executor.execute(new Runnable() {
+			public void run() {
+				serveUdp();
+			}
+		});
+		executor.execute(new Runnable() {
+			public void run() {
+				serveTcp();
+			}
+		});
+	}
+
+	/**
+	 * Returns the port the server listens on, for both UDP and TCP.
+	 *
+	 * @return the port.
+	 */
+	public int getPort() {
+		return udp.getLocalPort();
+	}
+
+	/**
+	 * Returns a dnsjava resolver which sends queries to this server.
+	 *
+	 * @return the resolver.
+	 * @throws IOException if the resolver cannot be created.
+	 */
+	public SimpleResolver getResolver() throws IOException {
+		final SimpleResolver resolver = new SimpleResolver("127.0.0.1");
+		resolver.setPort(getPort());
+		return resolver;
+	}
+
+	/**
+	 * Sets the delay before each answer.
+	 *
+	 * @param delay the delay.
+	 * @param unit the unit of the delay.
+	 */
+	public void setDelay(long delay, TimeUnit unit) {
+		this.delayNanos = unit.toNanos(delay);
+	}
+
+	/**
+	 * Sets whether every UDP answer is truncated, forcing the client to retry
+	 * over TCP.
+	 *
+	 * @param truncate <code>true</code> to truncate every UDP answer.
+	 */
+	public void setTruncate(boolean truncate) {
+		this.truncate = truncate;
+	}
+
+	/**
+	 * Returns the number of queries received over UDP.
+	 *
+	 * @return the number of UDP queries.
+	 */
+	public long getUdpQueries() {
+		return udpQueries.get();
+	}
+
+	/**
+	 * Returns the number of queries received over TCP.
+	 *
+	 * @return the number of TCP queries.
+	 */
+	public long getTcpQueries() {
+		return tcpQueries.get();
+	}
+
+	/**
+	 * Stops the server.
+	 */
+	public void close() throws IOException {
+		udp.close();
+		tcp.close();
+		executor.shutdownNow();
+	}
+
+	private void serveUdp() {
+		while (udp.isClosed() == false) {
+			final DatagramPacket packet = new DatagramPacket(new byte[UDP_LIMIT * 8], UDP_LIMIT * 8);
+			try {
+				udp.receive(packet);
+			} catch (IOException e) {
+				return;
+			}
+			udpQueries.incrementAndGet();
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						final Message query = new Message(packet.getData());
+						final OPTRecord opt = query.getOPT();
+						final int limit = opt == null ? UDP_LIMIT : Math.max(UDP_LIMIT, opt.getPayloadSize());
+						final byte[] answer = answer(query, truncate, limit);
+						if (answer != null) {
+							udp.send(new DatagramPacket(answer, answer.length, packet.getSocketAddress()));
+						}
+					} catch (IOException e) {
+						// Drop malformed queries, as a real server would.
+					}
+				}
+			});
+		}
+	}
+
+	private void serveTcp() {
+		while (tcp.isClosed() == false) {
+			final Socket socket;
+			try {
+				socket = tcp.accept();
+			} catch (IOException e) {
+				return;
+			}
+			executor.execute(new Runnable() {
+				public void run() {
+					serveConnection(socket);
+				}
+			});
+		}
+	}
+
+	private void serveConnection(Socket socket) {
+		try {
+			final DataInputStream in = new DataInputStream(socket.getInputStream());
+			final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			while (true) {
+				final byte[] bytes = new byte[in.readUnsignedShort()];
+				in.readFully(bytes);
+				tcpQueries.incrementAndGet();
+				final byte[] answer = answer(new Message(bytes), false, Message.MAXLENGTH);
+				if (answer == null) {
+					return;
+				}
+				out.writeShort(answer.length);
+				out.write(answer);
+				out.flush();
+			}
+		} catch (EOFException e) {
+			// The client closed the connection.
+		} catch (SocketException e) {
+			// The connection was reset, or the server closed.
+		} catch (IOException e) {
+			// Drop the connection on a malformed query.
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Nothing more to do.
+			}
+		}
+	}
+
+	/**
+	 * Returns the answer to the query, or <code>null</code> if the server is
+	 * interrupted while delaying it.
+	 */
+	private byte[] answer(Message query, boolean truncate, int limit) {
+		// Park rather than sleep, which may round up to a whole millisecond.
+		final long deadline = System.nanoTime() + delayNanos;
+		for (long remaining = delayNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+			LockSupport.parkNanos(remaining);
+			if (Thread.interrupted()) {
+				return null;
+			}
+		}
+
+		final Message response = new Message(query.getHeader().getID());
+		response.getHeader().setFlag(Flags.QR);
+		response.getHeader().setFlag(Flags.AA);
+		if (query.getHeader().getFlag(Flags.RD)) {
+			response.getHeader().setFlag(Flags.RD);
+		}
+		final Record question = query.getQuestion();
+		if (question == null) {
+			response.getHeader().setRcode(Rcode.FORMERR);
+			return response.toWire();
+		}
+		response.addRecord(question, Section.QUESTION);
+
+		if (truncate) {
+			response.getHeader().setFlag(Flags.TC);
+			return response.toWire();
+		}
+		final List<Record> owned = records.get(question.getName());
+		if (owned == null) {
+			response.getHeader().setRcode(Rcode.NXDOMAIN);
+		} else {
+			for (Record record : owned) {
+				if (record.getType() == question.getType()) {
+					response.addRecord(record, Section.ANSWER);
+				}
+			}
+		}
+		return response.toWire(limit);
+	}
+}
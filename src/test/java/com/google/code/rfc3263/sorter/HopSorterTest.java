@@ -0,0 +1,209 @@
+package com.google.code.rfc3263.sorter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sip.address.Hop;
+
+import org.junit.Test;
+import org.xbill.DNS.Name;
+
+import com.google.code.rfc3263.HopImpl;
+import com.google.code.rfc3263.ResolvedHop;
+import com.google.code.rfc3263.util.AddressFamily;
+import com.google.code.rfc3263.util.Transport;
+
+public class HopSorterTest {
+	@Test
+	public void testInterleaveFamilies() {
+		List<Hop> hops = hops("192.0.2.1", "192.0.2.2", "192.0.2.3", "2001:db8::1", "2001:db8::2");
+		new AddressFamilyInterleavingHopSorter().sort(hops);
+
+		assertEquals(hosts("2001:db8::1", "192.0.2.1", "2001:db8::2", "192.0.2.2", "192.0.2.3"), hosts(hops));
+	}
+
+	@Test
+	public void testInterleaveFamiliesWithFirstFamilyCount() {
+		List<Hop> hops = hops("192.0.2.1", "192.0.2.2", "2001:db8::1", "2001:db8::2", "2001:db8::3");
+		new AddressFamilyInterleavingHopSorter(AddressFamily.IPV4, 2).sort(hops);
+
+		assertEquals(hosts("192.0.2.1", "192.0.2.2", "2001:db8::1", "2001:db8::2", "2001:db8::3"), hosts(hops));
+	}
+
+	@Test
+	public void testInterleaveSingleFamilyKeepsOrder() {
+		List<Hop> hops = hops("192.0.2.2", "192.0.2.1");
+		new AddressFamilyInterleavingHopSorter().sort(hops);
+
+		assertEquals(hosts("192.0.2.2", "192.0.2.1"), hosts(hops));
+	}
+
+	@Test
+	public void testInterleaveTargets() throws Exception {
+		List<Hop> hops = new ArrayList<Hop>();
+		hops.add(resolved("192.0.2.1", "a.example.org."));
+		hops.add(resolved("192.0.2.2", "a.example.org."));
+		hops.add(resolved("192.0.2.3", "a.example.org."));
+		hops.add(resolved("198.51.100.1", "b.example.org."));
+		hops.add(resolved("203.0.113.1", "c.example.org."));
+		hops.add(resolved("203.0.113.2", "c.example.org."));
+		new ServiceTargetInterleavingHopSorter().sort(hops);
+
+		assertEquals(hosts("192.0.2.1", "198.51.100.1", "203.0.113.1", "192.0.2.2", "203.0.113.2", "192.0.2.3"), hosts(hops));
+	}
+
+	@Test
+	public void testInterleaveTargetsWithCap() throws Exception {
+		List<Hop> hops = new ArrayList<Hop>();
+		hops.add(resolved("192.0.2.1", "a.example.org."));
+		hops.add(resolved("192.0.2.2", "a.example.org."));
+		hops.add(resolved("192.0.2.3", "a.example.org."));
+		hops.add(resolved("198.51.100.1", "b.example.org."));
+		new ServiceTargetInterleavingHopSorter(2).sort(hops);
+
+		assertEquals(hosts("192.0.2.1", "198.51.100.1", "192.0.2.2"), hosts(hops));
+	}
+
+	@Test
+	public void testCompositeAppliesSortersInOrder() throws Exception {
+		List<Hop> hops = new ArrayList<Hop>();
+		hops.add(resolved("192.0.2.1", "a.example.org."));
+		hops.add(resolved("2001:db8::1", "a.example.org."));
+		hops.add(resolved("192.0.2.2", "a.example.org."));
+		hops.add(resolved("198.51.100.1", "b.example.org."));
+		new CompositeHopSorter(new ServiceTargetInterleavingHopSorter(2), new AddressFamilyInterleavingHopSorter()).sort(hops);
+
+		assertEquals(hosts("2001:db8:0:0:0:0:0:1", "192.0.2.1", "198.51.100.1"), hosts(hops));
+	}
+
+	@Test
+	public void testDestinationPrefersSameSubnet() throws Exception {
+		List<Hop> hops = new ArrayList<Hop>();
+		hops.add(resolved("198.51.100.1", "a.example.org."));
+		hops.add(resolved("192.0.2.1", "a.example.org."));
+		hops.add(resolved("203.0.113.1", "b.example.org."));
+		hops.add(resolved("192.0.2.2", "b.example.org."));
+		DestinationAddressHopSorter sorter = new DestinationAddressHopSorter(Arrays.asList(InetAddress.getByName("192.0.2.100")));
+		sorter.sort(hops);
+
+		// Each target keeps its positions
+		assertEquals(hosts("192.0.2.1", "198.51.100.1", "192.0.2.2", "203.0.113.1"), hosts(hops));
+	}
+
+	@Test
+	public void testDestinationAvoidsUnusableFamily() throws Exception {
+		List<Hop> hops = new ArrayList<Hop>();
+		hops.add(resolved("2001:db8::1", "a.example.org."));
+		hops.add(resolved("192.0.2.1", "a.example.org."));
+		new DestinationAddressHopSorter(Arrays.asList(InetAddress.getByName("198.51.100.100"))).sort(hops);
+
+		assertEquals(hosts("192.0.2.1", "2001:db8:0:0:0:0:0:1"), hosts(hops));
+	}
+
+	@Test
+	public void testDestinationPrefersMatchingScope() throws Exception {
+		List<Hop> hops = new ArrayList<Hop>();
+		hops.add(resolved("2001:db8::1", "a.example.org."));
+		hops.add(resolved("fe80::1", "a.example.org."));
+		new DestinationAddressHopSorter(Arrays.asList(InetAddress.getByName("fe80::2"))).sort(hops);
+
+		assertEquals(hosts("fe80:0:0:0:0:0:0:1", "2001:db8:0:0:0:0:0:1"), hosts(hops));
+	}
+
+	@Test
+	public void testDestinationPrefersHigherPrecedence() throws Exception {
+		List<Hop> hops = new ArrayList<Hop>();
+		hops.add(resolved("192.0.2.1", "a.example.org."));
+		hops.add(resolved("2a00::1", "a.example.org."));
+		new DestinationAddressHopSorter(Arrays.asList(InetAddress.getByName("198.51.100.100"), InetAddress.getByName("2a01::1"))).sort(hops);
+
+		assertEquals(hosts("2a00:0:0:0:0:0:0:1", "192.0.2.1"), hosts(hops));
+	}
+
+	@Test
+	public void testDestinationComparesPrefixWithinFamilyOnly() throws Exception {
+		List<Hop> hops = new ArrayList<Hop>();
+		hops.add(resolved("192.0.2.1", "a.example.org."));
+		hops.add(resolved("2a00::1", "a.example.org."));
+		hops.add(resolved("2001:db8::1", "a.example.org."));
+		new DestinationAddressHopSorter(Arrays.asList(InetAddress.getByName("192.0.2.100"), InetAddress.getByName("2001:db8::100"))).sort(hops);
+
+		// The IPv4 address shares the longest prefix, but only the IPv6 addresses are compared on it
+		assertEquals(hosts("2001:db8:0:0:0:0:0:1", "2a00:0:0:0:0:0:0:1", "192.0.2.1"), hosts(hops));
+	}
+
+	@Test
+	public void testRoundTripTimeMovesSlowHopDown() {
+		RoundTripTimeHopSorter sorter = new RoundTripTimeHopSorter(1, 2, 1);
+		sorter.recordRtt(new HopImpl("192.0.2.1", 5060, "UDP"), 10000000L);
+		sorter.recordRtt(new HopImpl("192.0.2.2", 5060, "UDP"), 1000000L);
+		List<Hop> hops = hops("192.0.2.1", "192.0.2.2");
+		sorter.sort(hops);
+
+		assertEquals(hosts("192.0.2.2", "192.0.2.1"), hosts(hops));
+	}
+
+	@Test
+	public void testRoundTripTimeExpiresSlowHop() throws Exception {
+		RoundTripTimeHopSorter sorter = new RoundTripTimeHopSorter(1, 2, 1, 50, TimeUnit.MILLISECONDS, 10);
+		sorter.recordRtt(new HopImpl("192.0.2.1", 5060, "UDP"), 10000000L);
+		sorter.recordRtt(new HopImpl("192.0.2.2", 5060, "UDP"), 1000000L);
+		Thread.sleep(100);
+		List<Hop> hops = hops("192.0.2.1", "192.0.2.2");
+		sorter.sort(hops);
+
+		// The slow hop is probed again in DNS order
+		assertEquals(hosts("192.0.2.1", "192.0.2.2"), hosts(hops));
+		assertTrue(sorter.getRtts().isEmpty());
+
+		// and starts a new estimate from its next sample
+		sorter.recordRtt(new HopImpl("192.0.2.1", 5060, "UDP"), 2000000L);
+		assertEquals(2000000.0, sorter.getRtt(new HopImpl("192.0.2.1", 5060, "UDP")), 0);
+	}
+
+	@Test
+	public void testRoundTripTimeKeepsAtMostMaxHops() {
+		RoundTripTimeHopSorter sorter = new RoundTripTimeHopSorter(1, 2, 1, 60, TimeUnit.SECONDS, 2);
+		sorter.recordRtt(new HopImpl("192.0.2.1", 5060, "UDP"), 1000000L);
+		sorter.recordRtt(new HopImpl("192.0.2.2", 5060, "UDP"), 1000000L);
+		sorter.recordRtt(new HopImpl("192.0.2.3", 5060, "UDP"), 1000000L);
+
+		assertEquals(2, sorter.getRtts().size());
+		assertEquals(1000000.0, sorter.getRtt(new HopImpl("192.0.2.3", 5060, "UDP")), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRoundTripTimeRejectsNegativeMinSamples() {
+		new RoundTripTimeHopSorter(0.5, 2, -1);
+	}
+
+	static Hop resolved(String address, String target) throws Exception {
+		return new ResolvedHop(InetAddress.getByName(address), 5060, Transport.UDP, 300, new Name(target));
+	}
+
+	static List<Hop> hops(String... hosts) {
+		List<Hop> hops = new ArrayList<Hop>();
+		for (String host : hosts) {
+			hops.add(new HopImpl(host, 5060, "UDP"));
+		}
+		return hops;
+	}
+
+	static List<String> hosts(String... hosts) {
+		return Arrays.asList(hosts);
+	}
+
+	static List<String> hosts(List<Hop> hops) {
+		List<String> hosts = new ArrayList<String>();
+		for (Hop hop : hops) {
+			hosts.add(hop.getHost());
+		}
+		return hosts;
+	}
+}
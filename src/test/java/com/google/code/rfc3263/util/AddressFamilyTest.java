@@ -0,0 +1,32 @@
+package com.google.code.rfc3263.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+public class AddressFamilyTest {
+	@Test
+	public void testIPv4AddressReachesIPv4() {
+		assertEquals(EnumSet.of(AddressFamily.IPV4), AddressFamily.fromLocalAddress("192.0.2.1"));
+		assertEquals(EnumSet.of(AddressFamily.IPV4), AddressFamily.fromLocalAddress("0.0.0.0"));
+	}
+
+	@Test
+	public void testIPv6AddressReachesIPv6() {
+		assertEquals(EnumSet.of(AddressFamily.IPV6), AddressFamily.fromLocalAddress("2001:db8::1"));
+		assertEquals(EnumSet.of(AddressFamily.IPV6), AddressFamily.fromLocalAddress("[::1]"));
+	}
+
+	@Test
+	public void testIPv6WildcardReachesBoth() {
+		assertEquals(EnumSet.allOf(AddressFamily.class), AddressFamily.fromLocalAddress("::"));
+		assertEquals(EnumSet.allOf(AddressFamily.class), AddressFamily.fromLocalAddress("0:0:0:0:0:0:0:0"));
+	}
+
+	@Test
+	public void testHostNameReachesBoth() {
+		assertEquals(EnumSet.allOf(AddressFamily.class), AddressFamily.fromLocalAddress("localhost"));
+	}
+}
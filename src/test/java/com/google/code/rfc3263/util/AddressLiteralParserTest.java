@@ -0,0 +1,104 @@
+package com.google.code.rfc3263.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class AddressLiteralParserTest {
+	// The regular expressions previously used by LocatorUtils
+	private static final String IPV4_ADDRESS = "\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}";
+	private static final String HEX4 = "[0-9A-F]{1,4}";
+	private static final String HEXSEQ = HEX4 + "(:" + HEX4 + ")*";
+	private static final String HEXPART = "(" + HEXSEQ + "|" + HEXSEQ + "::(" + HEXSEQ + ")?|::(" + HEXSEQ + ")?)";
+	private static final Pattern IPV4_PATTERN = Pattern.compile(IPV4_ADDRESS);
+	private static final Pattern IPV6_PATTERN = Pattern.compile("\\[" + HEXPART + "(:" + IPV4_ADDRESS + ")?\\]", Pattern.CASE_INSENSITIVE);
+
+	@Test
+	public void testIsIPv4Address() {
+		assertTrue(AddressLiteralParser.isIPv4Address("192.168.0.1"));
+		assertTrue(AddressLiteralParser.isIPv4Address("999.999.999.999"));
+		assertFalse(AddressLiteralParser.isIPv4Address("192.168.0"));
+		assertFalse(AddressLiteralParser.isIPv4Address("192.168.0.1."));
+		assertFalse(AddressLiteralParser.isIPv4Address("192.168..1"));
+		assertFalse(AddressLiteralParser.isIPv4Address("1924.168.0.1"));
+		assertFalse(AddressLiteralParser.isIPv4Address(""));
+	}
+
+	@Test
+	public void testIsIPv6Reference() {
+		assertTrue(AddressLiteralParser.isIPv6Reference("[::]"));
+		assertTrue(AddressLiteralParser.isIPv6Reference("[::1]"));
+		assertTrue(AddressLiteralParser.isIPv6Reference("[2001:DB8::1]"));
+		assertTrue(AddressLiteralParser.isIPv6Reference("[::ffff:192.0.2.128]"));
+		assertFalse(AddressLiteralParser.isIPv6Reference("::1"));
+		assertFalse(AddressLiteralParser.isIPv6Reference("[]"));
+		assertFalse(AddressLiteralParser.isIPv6Reference("[1::2::3]"));
+		assertFalse(AddressLiteralParser.isIPv6Reference("[12345::]"));
+		assertFalse(AddressLiteralParser.isIPv6Reference("[::g]"));
+	}
+
+	@Test
+	public void testMatchesRegularExpressions() {
+		final char[] alphabet = "0123456789abcdefABCDEFg:.[]".toCharArray();
+		final Random random = new Random(3263);
+		for (int i = 0; i < 200000; i++) {
+			final StringBuilder builder = new StringBuilder();
+			final int length = random.nextInt(24);
+			if (random.nextBoolean()) {
+				builder.append('[');
+			}
+			for (int j = 0; j < length; j++) {
+				builder.append(alphabet[random.nextInt(alphabet.length)]);
+			}
+			if (random.nextBoolean()) {
+				builder.append(']');
+			}
+			final String host = builder.toString();
+
+			assertEquals(host, IPV4_PATTERN.matcher(host).matches(), AddressLiteralParser.isIPv4Address(host));
+			assertEquals(host, IPV6_PATTERN.matcher(host).matches(), AddressLiteralParser.isIPv6Reference(host));
+		}
+	}
+
+	@Test
+	public void testParseIPv4Address() throws Exception {
+		final byte[] address = new byte[AddressLiteralParser.IPV4_LENGTH];
+		assertTrue(AddressLiteralParser.parseIPv4Address("192.168.0.255", address));
+		assertArrayEquals(InetAddress.getByName("192.168.0.255").getAddress(), address);
+
+		assertFalse(AddressLiteralParser.parseIPv4Address("192.168.0.256", address));
+		assertFalse(AddressLiteralParser.parseIPv4Address("example.org", address));
+	}
+
+	@Test
+	public void testParseIPv6Reference() throws Exception {
+		final String[] hosts = {
+			"::", "::1", "1::", "2001:db8::8a2e:370:7334", "2001:0db8:85a3:0000:0000:8a2e:0370:7334",
+			"::1:192.0.2.128", "1:2:3:4:5:6:192.0.2.128", "fe80:0:0:0:0:0:c0a8:1",
+			"1:2:3:4:5:6:7::", "::2:3:4:5:6:7:8"
+		};
+		final byte[] address = new byte[AddressLiteralParser.IPV6_LENGTH];
+		for (String host : hosts) {
+			assertTrue(host, AddressLiteralParser.parseIPv6Reference("[" + host + "]", address));
+			assertArrayEquals(host, InetAddress.getByName(host).getAddress(), address);
+		}
+
+		// InetAddress converts IPv4-mapped addresses to IPv4
+		assertTrue(AddressLiteralParser.parseIPv6Reference("[::ffff:192.0.2.128]", address));
+		assertArrayEquals(new byte[] {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff, (byte) 192, 0, 2, (byte) 128}, address);
+
+		// Grammatically valid, but not addresses
+		assertFalse(AddressLiteralParser.parseIPv6Reference("[1]", address));
+		assertFalse(AddressLiteralParser.parseIPv6Reference("[1:2:3:4:5:6:7:8:9]", address));
+		assertFalse(AddressLiteralParser.parseIPv6Reference("[1:2:3:4::5:6:7:8]", address));
+		assertFalse(AddressLiteralParser.parseIPv6Reference("[1:::192.0.2.128]", address));
+		assertFalse(AddressLiteralParser.parseIPv6Reference("[::ffff:192.0.2.256]", address));
+	}
+}
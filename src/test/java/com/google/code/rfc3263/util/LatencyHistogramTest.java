@@ -0,0 +1,87 @@
+package com.google.code.rfc3263.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+	@Test
+	public void testEmptyHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(99), 0);
+		assertEquals(0, histogram.getMean(), 0);
+	}
+
+	@Test
+	public void testSmallValuesShouldBeExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < LatencyHistogram.SUB_BUCKETS; i++) {
+			histogram.record(i);
+		}
+
+		assertEquals(LatencyHistogram.SUB_BUCKETS, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(0));
+		assertEquals(7, histogram.getPercentile(50));
+		assertEquals(LatencyHistogram.SUB_BUCKETS - 1, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void testPercentilesShouldBeWithinBucketError() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 100000; i++) {
+			histogram.record(i * 1000);
+		}
+
+		assertBetween(50000000L, histogram.getPercentile(50), 0.07);
+		assertBetween(99000000L, histogram.getPercentile(99), 0.07);
+		assertEquals(100000000L, histogram.getPercentile(100));
+		assertEquals(100000000L, histogram.getMax());
+		assertEquals(50000500L, histogram.getMean(), 1);
+	}
+
+	@Test
+	public void testNegativeValuesShouldCountAsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+
+		assertEquals(1, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+
+	@Test
+	public void testAddShouldMergeCountsAndMax() {
+		LatencyHistogram first = new LatencyHistogram();
+		first.record(10);
+		LatencyHistogram second = new LatencyHistogram();
+		second.record(1000);
+		second.record(2000);
+		first.add(second);
+
+		assertEquals(3, first.getCount());
+		assertEquals(3010, first.getTotal());
+		assertEquals(2000, first.getMax());
+	}
+
+	@Test
+	public void testResetShouldDiscardValues() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(1000);
+		histogram.reset();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getTotal());
+		assertEquals(0, histogram.getMax());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPercentileOutOfRange() {
+		new LatencyHistogram().getPercentile(101);
+	}
+
+	private static void assertBetween(long expected, long actual, double error) {
+		assertTrue(actual + " not within " + error + " of " + expected, actual >= expected && actual <= expected * (1 + error));
+	}
+}
@@ -0,0 +1,45 @@
+package com.google.code.rfc3263.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.xbill.DNS.Name;
+
+public class NameCacheTest {
+	@Test
+	public void testGetNameIsAbsolute() throws IOException {
+		NameCache cache = new NameCache();
+		assertEquals(new Name("example.org."), cache.getName("example.org"));
+		assertEquals(new Name("example.org."), cache.getName("example.org."));
+	}
+
+	@Test
+	public void testGetNameIsCached() throws IOException {
+		NameCache cache = new NameCache();
+		assertSame(cache.getName("example.org"), cache.getName("example.org"));
+	}
+
+	@Test
+	public void testGetServiceIdentifierIsCached() throws IOException {
+		NameCache cache = new NameCache();
+		Name domain = cache.getName("example.org");
+		for (Transport transport : Transport.values()) {
+			Name serviceId = cache.getServiceIdentifier(transport, domain);
+			assertEquals(LocatorUtils.getServiceIdentifier(transport.toString(), domain), serviceId);
+			assertSame(serviceId, cache.getServiceIdentifier(transport, new Name("example.org.")));
+		}
+	}
+
+	@Test
+	public void testCacheIsBounded() throws IOException {
+		NameCache cache = new NameCache(10);
+		for (int i = 0; i < 100; i++) {
+			cache.getName("host" + i + ".example.org");
+		}
+		assertTrue(cache.size() <= 10);
+	}
+}